@@ -0,0 +1,126 @@
+package com.bdl.auto;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Factories for the classes generated for {@link com.bdl.auto.impl.AutoImpl} and
+ * {@link com.bdl.auto.delegate.AutoDelegate} types, keyed by the annotated type.
+ *
+ * <p>The processors write an {@link Index} of their generated classes when run with the
+ * {@code auto.registry} option. Each index registers a factory that calls the generated
+ * constructor directly, so the only lookup at runtime is a {@link ServiceLoader} pass over the
+ * indexes, done once on first use. Only classes that can be created from nothing (for
+ * implementations) or from the delegate alone (for delegates) are registered.
+ *
+ * @author Ben Leitner
+ */
+public final class AutoRegistry {
+
+  /** Creates instances of a generated implementation. */
+  public interface ImplFactory<T> {
+    T create();
+  }
+
+  /** Creates instances of a generated delegate around the given delegate. */
+  public interface DelegateFactory<T, D> {
+    T create(D delegate);
+  }
+
+  /** Registers generated classes. Implementations are generated, and found as services. */
+  public interface Index {
+    void register(AutoRegistry registry);
+  }
+
+  private final Map<Class<?>, ImplFactory<?>> impls = new HashMap<>();
+  private final Map<Class<?>, DelegateFactory<?, ?>> delegates = new HashMap<>();
+
+  private AutoRegistry() {}
+
+  /** Returns the registry of the indexes visible to {@code classLoader}. */
+  public static AutoRegistry load(ClassLoader classLoader) {
+    AutoRegistry registry = new AutoRegistry();
+    for (Index index : ServiceLoader.load(Index.class, classLoader)) {
+      index.register(registry);
+    }
+    return registry;
+  }
+
+  /**
+   * Returns the factory for the generated implementation of {@code type}, from the indexes visible
+   * to this class's loader.
+   *
+   * @throws IllegalArgumentException if no implementation of {@code type} is registered
+   */
+  public static <T> ImplFactory<T> implFactory(Class<T> type) {
+    return Loaded.REGISTRY.findImplFactory(type);
+  }
+
+  /**
+   * Returns the factory for the generated delegate of {@code type}, from the indexes visible to
+   * this class's loader. {@code D} is the type of the delegate field, or the target if set.
+   *
+   * @throws IllegalArgumentException if no delegate of {@code type} is registered
+   */
+  public static <T, D> DelegateFactory<T, D> delegateFactory(Class<T> type) {
+    return Loaded.REGISTRY.findDelegateFactory(type);
+  }
+
+  /** Registers the factory for the generated implementation of {@code type}. */
+  public <T> void registerImpl(Class<T> type, ImplFactory<? extends T> factory) {
+    impls.put(type, factory);
+  }
+
+  /** Registers the factory for the generated delegate of {@code type}. */
+  public <T, D> void registerDelegate(Class<T> type, DelegateFactory<? extends T, D> factory) {
+    delegates.put(type, factory);
+  }
+
+  /** The annotated types that have an implementation factory. */
+  public Set<Class<?>> implTypes() {
+    return Collections.unmodifiableSet(impls.keySet());
+  }
+
+  /** The annotated types that have a delegate factory. */
+  public Set<Class<?>> delegateTypes() {
+    return Collections.unmodifiableSet(delegates.keySet());
+  }
+
+  /**
+   * Returns the factory for the generated implementation of {@code type}.
+   *
+   * @throws IllegalArgumentException if no implementation of {@code type} is registered
+   */
+  @SuppressWarnings("unchecked") // Registered with a factory of the type's subtypes.
+  public <T> ImplFactory<T> findImplFactory(Class<T> type) {
+    ImplFactory<?> factory = impls.get(type);
+    if (factory == null) {
+      throw new IllegalArgumentException(
+          String.format("No generated implementation of %s is registered", type.getName()));
+    }
+    return (ImplFactory<T>) factory;
+  }
+
+  /**
+   * Returns the factory for the generated delegate of {@code type}.
+   *
+   * @throws IllegalArgumentException if no delegate of {@code type} is registered
+   */
+  @SuppressWarnings("unchecked") // The caller names the delegate type.
+  public <T, D> DelegateFactory<T, D> findDelegateFactory(Class<T> type) {
+    DelegateFactory<?, ?> factory = delegates.get(type);
+    if (factory == null) {
+      throw new IllegalArgumentException(
+          String.format("No generated delegate of %s is registered", type.getName()));
+    }
+    return (DelegateFactory<T, D>) factory;
+  }
+
+  /** Holds the registry for this class's loader, loaded on first use. */
+  private static final class Loaded {
+    static final AutoRegistry REGISTRY = load(AutoRegistry.class.getClassLoader());
+  }
+}
@@ -0,0 +1,72 @@
+package com.bdl.auto.delegate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the calls of the asynchronous companions generated with {@link AutoDelegate#async}.
+ *
+ * @author Ben Leitner
+ */
+public final class AsyncCalls {
+
+  private AsyncCalls() {
+    // Utility class, no instantiation.
+  }
+
+  /**
+   * Returns the executor that companions use when none is given: one that starts a virtual thread
+   * per call if the running JDK has them, or a shared pool of daemon threads if it does not.
+   */
+  public static Executor defaultExecutor() {
+    return DefaultExecutor.INSTANCE;
+  }
+
+  /**
+   * Runs {@code call} on {@code executor}, returning a future that completes with its result or
+   * with the exception it threw. Cancelling the future does not interrupt the call.
+   */
+  public static <R> CompletableFuture<R> submit(Executor executor, final Callable<R> call) {
+    final CompletableFuture<R> future = new CompletableFuture<>();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (future.isDone()) {
+          return;
+        }
+        try {
+          future.complete(call.call());
+        } catch (Throwable ex) {
+          future.completeExceptionally(ex);
+        }
+      }
+    });
+    return future;
+  }
+
+  /** The default executor, created on first use. */
+  private static final class DefaultExecutor {
+    static final Executor INSTANCE = create();
+
+    private static Executor create() {
+      try {
+        // Looked up reflectively so that this compiles for, and runs on, JDKs before 21.
+        return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+        // No virtual threads, or only as a preview feature that isn't enabled.
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "auto-delegate-async");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      }
+    }
+  }
+}
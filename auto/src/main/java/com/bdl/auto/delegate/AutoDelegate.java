@@ -16,4 +16,97 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.CLASS)
 @Target(ElementType.TYPE)
 public @interface AutoDelegate {
+
+  /**
+   * The concrete class that the delegate will always be an instance of. When set, the generated
+   * class is final, its constructors take an instance of this class as the delegate, and methods
+   * are forwarded through a field of this type so that the JIT can inline straight through to it.
+   * <p>
+   * Must be a non-generic class that extends or implements the inherited type. Defaults to
+   * {@code Object}, meaning the delegate is called through the inherited type.
+   */
+  Class<?> target() default Object.class;
+
+  /**
+   * Whether the generated class should record the calls, errors and latency of each forwarded
+   * method in {@link MethodMetrics}. When set, the generated class has a public {@code snapshot()}
+   * method returning the {@link DelegateStats} so far.
+   */
+  boolean metrics() default false;
+
+  /**
+   * With {@link #metrics}, times only one in this many calls of each method, on average, chosen at
+   * random. Every call and error is still counted. Defaults to 1, timing every call.
+   */
+  int sampleEvery() default 1;
+
+  /**
+   * Whether to also generate an asynchronous companion, {@code Auto_[ClassName]_Async}, that wraps
+   * an instance of the annotated class. Each of its methods runs the wrapped method on an
+   * {@link java.util.concurrent.Executor} and returns a
+   * {@link java.util.concurrent.CompletableFuture} of the result. By default, the executor starts a
+   * virtual thread per call if the JDK has them; see {@link AsyncCalls#defaultExecutor()}.
+   */
+  boolean async() default false;
+
+  /**
+   * Whether the generated class should guard the delegate with a
+   * {@link java.util.concurrent.locks.StampedLock}, so that a delegate that isn't thread-safe can
+   * be shared between threads. Methods annotated {@link ReadOnly} may run concurrently, and every
+   * other method runs alone.
+   *
+   * <p><b>The lock is not reentrant.</b> A delegate that calls back into the generated instance
+   * from one of its methods (directly, or through a listener that does) deadlocks, unlike a
+   * {@code synchronized} wrapper. Such delegates need their own locking instead.
+   */
+  boolean threadSafe() default false;
+
+  /**
+   * Whether the generated class should create its delegate on the first forwarded call. Its
+   * constructors take a {@link java.util.function.Supplier} of the delegate in place of the
+   * delegate itself, and the {@code delegate} field of the annotated class is left {@code null}, so
+   * the annotated class may not implement any methods itself.
+   */
+  boolean lazy() default false;
+
+  /**
+   * Whether the generated class should let its delegate be replaced while it is in use, through
+   * generated {@code swap} and {@code compareAndSwap} methods. The {@code delegate} field of the
+   * annotated class keeps the delegate it was constructed with, so the annotated class may not
+   * implement any methods itself. See {@link DelegateSwitch}.
+   */
+  boolean swappable() default false;
+
+  /**
+   * Whether a {@link #swappable} generated class should count the calls in flight to each
+   * delegate, so that its generated {@code swapAndDrain} method can wait for the calls to a
+   * replaced delegate to return. Counting costs two atomic updates per call.
+   */
+  boolean drainable() default false;
+
+  /**
+   * Whether the generated class should call a {@link DelegateInterceptor} around each forwarded
+   * call. Its constructors take the interceptor after the delegate, and it gains an {@code ID_}
+   * constant for each forwarded method and a {@code METHODS} table describing them.
+   */
+  boolean intercepted() default false;
+
+  /**
+   * Whether, and how, the generated class should cap the number of calls in flight to the
+   * delegate: across all of its methods or for each method separately. Its constructors take a
+   * {@link ConcurrencyLimit} after the delegate (and the interceptor, if any), and calls beyond the
+   * limit fail with a {@link BulkheadFullException}. The {@link ConcurrencyLimiter}s are exposed
+   * through generated {@code concurrencyLimiter} methods; when limiting each method, they're
+   * looked up by the {@code ID_} constants, and a {@code METHODS} table describes the methods.
+   */
+  BulkheadScope bulkhead() default BulkheadScope.NONE;
+
+  /**
+   * Whether the generated class should record each forwarded call with a {@link CallRecorder}.
+   * Its constructors take the recorder after the delegate (and the interceptor and
+   * {@link ConcurrencyLimit}, if any), and it gains {@code ID_} constants and a {@code METHODS}
+   * table. A replayer, {@code Auto_[ClassName]_Replayer}, is generated as well, to make the calls
+   * in a {@link CallLog} again on any implementation of the inherited type.
+   */
+  boolean recorded() default false;
 }
@@ -0,0 +1,17 @@
+package com.bdl.auto.delegate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation used to mark an interface as needing a generated invoker,
+ * {@code Auto_[InterfaceName]_Invoker}, a {@link MethodInvoker} that calls the interface's methods
+ * by the IDs assigned to them at compile time, without reflection.
+ *
+ * @author Ben Leitner
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface AutoInvoker {}
@@ -0,0 +1,28 @@
+package com.bdl.auto.delegate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation used to mark a listener interface as needing a generated multicaster,
+ * {@code Auto_[InterfaceName]_Multicaster}, which implements the interface by calling each of a
+ * set of listeners in turn. Every method of the interface must return {@code void}.
+ *
+ * <p>Listeners are kept in a {@link ListenerArray}, so they may be added and removed while calls
+ * are being dispatched, and each call goes to the listeners that were present when it started.
+ *
+ * @author Ben Leitner
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface AutoMulticast {
+
+  /**
+   * Whether a {@link RuntimeException} thrown by one listener should still let the call reach the
+   * listeners after it. If set, the first such exception is rethrown once every listener has been
+   * called, with any later ones added to it as suppressed exceptions.
+   */
+  boolean isolateExceptions() default false;
+}
@@ -0,0 +1,40 @@
+package com.bdl.auto.delegate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the generated delegate should buffer calls to the annotated {@code void} method
+ * and send them to the delegate together through its bulk counterpart, named by {@link #value}.
+ * The method must be redeclared as abstract in the class annotated with {@link AutoDelegate}.
+ *
+ * <p>A method with one parameter is batched into a list, so its bulk method must take a
+ * {@code List}, {@code Collection} or {@code Iterable} of the parameter's type. A method with two
+ * parameters is batched into a map from the first to the second, keeping the last value for each
+ * key, so its bulk method must take a {@code Map}.
+ *
+ * <p>Buffered calls are sent when {@link #maxSize} have built up, when {@link #maxDelayMillis} has
+ * passed since the first of them, and from the generated class's {@code flushBatches()} and
+ * {@code shutdownBatches()} methods. Other methods are forwarded right away, so they do not see
+ * buffered calls until those are sent.
+ *
+ * @author Ben Leitner
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Batch {
+
+  /** The name of the delegate's bulk method. */
+  String value();
+
+  /** The number of buffered calls that are sent as soon as they have built up. */
+  int maxSize() default 100;
+
+  /**
+   * The longest a call is buffered before it is sent, or {@code 0} to send calls only once
+   * {@link #maxSize} have built up or they are flushed.
+   */
+  long maxDelayMillis() default 0;
+}
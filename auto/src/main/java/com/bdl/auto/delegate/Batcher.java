@@ -0,0 +1,147 @@
+package com.bdl.auto.delegate;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Buffers the calls to a {@link Batch} method and delivers them together to its bulk counterpart.
+ *
+ * <p>The thread whose call fills the buffer delivers the batch. A batch that is not full is
+ * delivered on a shared timer thread once it is {@code maxDelayMillis} old. If a delivery on the
+ * timer thread fails, the exception is thrown from the next call to the batcher instead. Batches
+ * are delivered one at a time, in the order they were filled.
+ *
+ * @param <B> the type of the buffer that calls are collected into
+ * @author Ben Leitner
+ */
+public abstract class Batcher<B> {
+
+  private final int maxSize;
+  private final long maxDelayMillis;
+  private final Object flushLock = new Object();
+  private final AtomicReference<RuntimeException> timerFailure = new AtomicReference<>();
+  private final Runnable timerFlush = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        flush();
+      } catch (RuntimeException ex) {
+        timerFailure.compareAndSet(null, ex);
+      }
+    }
+  };
+
+  /** Guards {@link #buffer} and the batcher's state. */
+  final Object lock = new Object();
+
+  /** The calls buffered since the last delivery. */
+  B buffer;
+
+  private boolean scheduled;
+  private boolean shutdown;
+
+  Batcher(int maxSize, long maxDelayMillis, B buffer) {
+    if (maxSize < 1 || maxDelayMillis < 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "maxSize must be positive and maxDelayMillis not negative, were %d and %d",
+              maxSize,
+              maxDelayMillis));
+    }
+    this.maxSize = maxSize;
+    this.maxDelayMillis = maxDelayMillis;
+    this.buffer = buffer;
+  }
+
+  /** Returns an empty buffer. */
+  abstract B newBuffer();
+
+  /** Returns the number of calls in {@code buffer}. */
+  abstract int size(B buffer);
+
+  /** Sends a batch of calls to the delegate's bulk method. */
+  protected abstract void deliver(B batch);
+
+  /**
+   * Checks that the batcher can accept a call. Subclasses call this while holding {@link #lock},
+   * before adding to the buffer.
+   */
+  void checkAccepting() {
+    RuntimeException failure = timerFailure.getAndSet(null);
+    if (failure != null) {
+      throw failure;
+    }
+    if (shutdown) {
+      throw new IllegalStateException("Batcher has been shut down");
+    }
+  }
+
+  /**
+   * Notes that a call was added to the buffer, returning whether the buffer is full and should be
+   * flushed. Subclasses call this while holding {@link #lock}, and flush after releasing it.
+   */
+  boolean added() {
+    int size = size(buffer);
+    if (size >= maxSize) {
+      return true;
+    }
+    if (size == 1 && maxDelayMillis > 0 && !scheduled) {
+      scheduled = true;
+      Timer.INSTANCE.schedule(timerFlush, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+    return false;
+  }
+
+  /** Delivers the buffered calls, if there are any, waiting for any earlier batch to finish. */
+  public void flush() {
+    synchronized (flushLock) {
+      B batch;
+      synchronized (lock) {
+        scheduled = false;
+        if (size(buffer) == 0) {
+          return;
+        }
+        batch = buffer;
+        buffer = newBuffer();
+      }
+      deliver(batch);
+    }
+  }
+
+  /**
+   * Rejects any further calls and delivers those already buffered. Calls to the batcher after this
+   * throw {@link IllegalStateException}.
+   */
+  public void shutdown() {
+    synchronized (lock) {
+      shutdown = true;
+    }
+    flush();
+    RuntimeException failure = timerFailure.getAndSet(null);
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** The timer thread shared by every batcher, started on first use. */
+  private static final class Timer {
+    static final ScheduledExecutorService INSTANCE = create();
+
+    private static ScheduledExecutorService create() {
+      ScheduledThreadPoolExecutor executor =
+          new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "auto-delegate-batcher");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+      executor.setRemoveOnCancelPolicy(true);
+      return executor;
+    }
+  }
+}
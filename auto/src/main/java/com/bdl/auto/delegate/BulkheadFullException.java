@@ -0,0 +1,32 @@
+package com.bdl.auto.delegate;
+
+/**
+ * Thrown in place of a call that a {@link ConcurrencyLimiter} rejected because as many calls as
+ * its limit allows were already in flight.
+ *
+ * <p>Rejections happen when the system is overloaded, so they're kept cheap: the exception has no
+ * stack trace, and its message is only formatted when asked for.
+ *
+ * @author Ben Leitner
+ */
+public class BulkheadFullException extends RuntimeException {
+
+  private final String name;
+  private final int limit;
+
+  public BulkheadFullException(String name, int limit) {
+    super(null, null, false, false);
+    this.name = name;
+    this.limit = limit;
+  }
+
+  @Override
+  public String getMessage() {
+    return String.format("%s already has %d calls in flight.", name, limit);
+  }
+
+  /** The limit that was reached. */
+  public int limit() {
+    return limit;
+  }
+}
@@ -0,0 +1,15 @@
+package com.bdl.auto.delegate;
+
+/**
+ * What a delegate generated with {@link AutoDelegate#bulkhead} limits the concurrent calls of.
+ *
+ * @author Ben Leitner
+ */
+public enum BulkheadScope {
+  /** Calls aren't limited. */
+  NONE,
+  /** All forwarded methods share one {@link ConcurrencyLimiter}. */
+  SHARED,
+  /** Each forwarded method has its own {@link ConcurrencyLimiter}. */
+  PER_METHOD
+}
@@ -0,0 +1,227 @@
+package com.bdl.auto.delegate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The calls in a file written by a {@link CallRecorder}, in the order they started, for replaying
+ * through a generated {@code Auto_[ClassName]_Replayer}.
+ *
+ * @author Ben Leitner
+ */
+public final class CallLog {
+
+  /** A recorded call. */
+  public static final class RecordedCall {
+    private final long sequence;
+    private final int methodId;
+    private final long startNanos;
+    private final long latencyNanos;
+    private final Object[] args;
+    private final boolean complete;
+
+    RecordedCall(
+        long sequence,
+        int methodId,
+        long startNanos,
+        long latencyNanos,
+        Object[] args,
+        boolean complete) {
+      this.sequence = sequence;
+      this.methodId = methodId;
+      this.startNanos = startNanos;
+      this.latencyNanos = latencyNanos;
+      this.args = args;
+      this.complete = complete;
+    }
+
+    /** The ID of the method called. */
+    public int methodId() {
+      return methodId;
+    }
+
+    /** When the call started, in nanoseconds since recording began. */
+    public long startNanos() {
+      return startNanos;
+    }
+
+    /** How long the call took. */
+    public long latencyNanos() {
+      return latencyNanos;
+    }
+
+    /**
+     * The call's arguments: boxed primitives, {@code String}s, and {@code null} for arguments of
+     * other types.
+     */
+    public Object[] args() {
+      return args.clone();
+    }
+
+    /** Whether all of the call's arguments fit in its slot. */
+    public boolean isComplete() {
+      return complete;
+    }
+  }
+
+  private final long originMillis;
+  private final List<RecordedCall> calls;
+
+  private CallLog(long originMillis, List<RecordedCall> calls) {
+    this.originMillis = originMillis;
+    this.calls = calls;
+  }
+
+  /** Reads the calls recorded in {@code file}. */
+  public static CallLog read(Path file) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.capacity() < CallRecorder.HEADER_SIZE
+        || buffer.getInt(0) != CallRecorder.MAGIC
+        || buffer.getInt(4) != CallRecorder.VERSION) {
+      throw new IOException(file + " is not a call log.");
+    }
+    int slotSize = buffer.getInt(8);
+    int slotCount = buffer.getInt(12);
+    List<RecordedCall> calls = new ArrayList<>();
+    for (int i = 0; i < slotCount; i++) {
+      RecordedCall call = readSlot(buffer, CallRecorder.HEADER_SIZE + i * slotSize, slotSize);
+      if (call != null) {
+        calls.add(call);
+      }
+    }
+    // Calls are numbered as they're recorded, once they've returned, so they're sorted by when
+    // they started instead, as replaying with the original timing needs.
+    Collections.sort(calls, new Comparator<RecordedCall>() {
+      @Override
+      public int compare(RecordedCall first, RecordedCall second) {
+        int byStart = Long.compare(first.startNanos, second.startNanos);
+        return byStart != 0 ? byStart : Long.compare(first.sequence, second.sequence);
+      }
+    });
+    return new CallLog(buffer.getLong(16), Collections.unmodifiableList(calls));
+  }
+
+  /** Returns the call in the slot, or {@code null} if the slot is empty or was never committed. */
+  private static RecordedCall readSlot(ByteBuffer buffer, int slot, int slotSize) {
+    long sequence = buffer.getLong(slot);
+    if (sequence <= 0) {
+      return null;
+    }
+    int argCount = buffer.getShort(slot + 12) & 0xFFFF;
+    Object[] args = new Object[argCount];
+    int at = slot + CallRecorder.SLOT_HEADER_SIZE;
+    int end = slot + slotSize;
+    int read = 0;
+    while (read < argCount && at < end) {
+      byte tag = buffer.get(at++);
+      switch (tag) {
+        case CallRecorder.BOOLEAN:
+          args[read] = buffer.get(at) != 0;
+          at += 1;
+          break;
+        case CallRecorder.BYTE:
+          args[read] = buffer.get(at);
+          at += 1;
+          break;
+        case CallRecorder.CHAR:
+          args[read] = buffer.getChar(at);
+          at += 2;
+          break;
+        case CallRecorder.SHORT:
+          args[read] = buffer.getShort(at);
+          at += 2;
+          break;
+        case CallRecorder.INT:
+          args[read] = buffer.getInt(at);
+          at += 4;
+          break;
+        case CallRecorder.LONG:
+          args[read] = buffer.getLong(at);
+          at += 8;
+          break;
+        case CallRecorder.FLOAT:
+          args[read] = buffer.getFloat(at);
+          at += 4;
+          break;
+        case CallRecorder.DOUBLE:
+          args[read] = buffer.getDouble(at);
+          at += 8;
+          break;
+        case CallRecorder.STRING:
+          int length = buffer.getInt(at);
+          at += 4;
+          char[] chars = new char[length];
+          for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(at);
+            at += 2;
+          }
+          args[read] = new String(chars);
+          break;
+        case CallRecorder.NULL:
+        case CallRecorder.UNSUPPORTED:
+          break;
+        default:
+          // END, or the arguments didn't fit.
+          at = end;
+          continue;
+      }
+      read++;
+    }
+    return new RecordedCall(sequence, buffer.getInt(slot + 8), buffer.getLong(slot + 16),
+        buffer.getLong(slot + 24), args, read == argCount);
+  }
+
+  /** When recording began, in epoch milliseconds. */
+  public long originMillis() {
+    return originMillis;
+  }
+
+  /** The recorded calls that are still in the file, in the order they started. */
+  public List<RecordedCall> calls() {
+    return calls;
+  }
+
+  /**
+   * Makes each complete recorded call again on {@code target}, through {@code invoker}, returning
+   * the number of calls that threw. If {@code originalRate} is set, each call is made as long after
+   * the first as it was originally; otherwise the calls are made one after another as fast as
+   * possible.
+   */
+  public <T> int replay(MethodInvoker<T> invoker, T target, boolean originalRate)
+      throws InterruptedException {
+    int failures = 0;
+    long replayStart = System.nanoTime();
+    long recordStart = calls.isEmpty() ? 0 : calls.get(0).startNanos;
+    for (RecordedCall call : calls) {
+      if (!call.complete) {
+        continue;
+      }
+      if (originalRate) {
+        long due = replayStart + (call.startNanos - recordStart);
+        for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+          LockSupport.parkNanos(wait);
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+      }
+      try {
+        invoker.invoke(target, call.methodId, call.args);
+      } catch (Exception ex) {
+        failures++;
+      }
+    }
+    return failures;
+  }
+}
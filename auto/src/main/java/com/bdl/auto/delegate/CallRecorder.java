@@ -0,0 +1,312 @@
+package com.bdl.auto.delegate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records calls to a ring of fixed size slots in a memory-mapped file, to be read back by a
+ * {@link CallLog}. Once the ring is full, each call overwrites the oldest.
+ *
+ * <p>A call is recorded by {@link #begin beginning} a slot, putting each argument into it in turn,
+ * and {@link #commit committing} it. Each step passes along a {@code long} cursor into the file,
+ * so recording allocates nothing. Slots are claimed with atomic updates, so recording takes no
+ * lock either. Arguments that don't fit in the rest of the slot are dropped, along with the ones
+ * after them, and a {@code String} that doesn't fit is cut short. A call whose slot is still being
+ * written by the call it would overwrite, one that began a whole ring of calls earlier, is dropped
+ * rather than mixed with it.
+ *
+ * <p>The file starts with a header of {@value #HEADER_SIZE} bytes: a magic number, the format
+ * version, the slot size and count, and the time recording began in epoch milliseconds. Each slot
+ * starts with the call's sequence number (plus one, and negated until the call is committed), its
+ * method ID, argument count, start time in nanoseconds since recording began, and latency in
+ * nanoseconds. Then come the arguments, each a tag byte followed by its value.
+ *
+ * @author Ben Leitner
+ */
+public final class CallRecorder implements Closeable {
+
+  static final int MAGIC = 0x41555452;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 64;
+  static final int SLOT_HEADER_SIZE = 32;
+
+  static final byte END = 0;
+  static final byte BOOLEAN = 'Z';
+  static final byte BYTE = 'B';
+  static final byte CHAR = 'C';
+  static final byte SHORT = 'S';
+  static final byte INT = 'I';
+  static final byte LONG = 'J';
+  static final byte FLOAT = 'F';
+  static final byte DOUBLE = 'D';
+  static final byte STRING = 's';
+  static final byte NULL = 'n';
+  static final byte UNSUPPORTED = '?';
+
+  /** The cursor of a dropped call, which every method ignores. */
+  static final long DROPPED = -1L;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int slotSize;
+  private final int slotCount;
+  private final long originNanos;
+  private final AtomicLong sequence = new AtomicLong();
+  // The sequence number of the call in each slot: positive while it's being written, negated once
+  // it's committed, so that a slot is only claimed once the call before it is done with it.
+  private final AtomicLongArray owners;
+  private final LongAdder dropped = new LongAdder();
+
+  private CallRecorder(FileChannel channel, MappedByteBuffer buffer, int slotSize, int slotCount) {
+    this.channel = channel;
+    this.buffer = buffer;
+    this.slotSize = slotSize;
+    this.slotCount = slotCount;
+    this.originNanos = System.nanoTime();
+    this.owners = new AtomicLongArray(slotCount);
+  }
+
+  /**
+   * Creates {@code file}, replacing any file already there, with room for the last
+   * {@code slotCount} calls in slots of {@code slotSize} bytes.
+   */
+  public static CallRecorder create(Path file, int slotCount, int slotSize) throws IOException {
+    if (slotSize < SLOT_HEADER_SIZE + 16 || slotCount < 1) {
+      throw new IllegalArgumentException(String.format(
+          "Need at least one slot of at least %d bytes: %d, %d",
+          SLOT_HEADER_SIZE + 16, slotCount, slotSize));
+    }
+    long size = HEADER_SIZE + (long) slotCount * slotSize;
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The file can't be more than 2GB: " + size);
+    }
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putInt(8, slotSize);
+    buffer.putInt(12, slotCount);
+    buffer.putLong(16, System.currentTimeMillis());
+    return new CallRecorder(channel, buffer, slotSize, slotCount);
+  }
+
+  /**
+   * Claims the next slot for a call to the method with the given ID, returning the cursor to put
+   * its {@code argCount} arguments at. If the slot is still being written, the call is dropped, and
+   * the cursor makes the other methods do nothing.
+   *
+   * @param startNanos when the call started, from {@link System#nanoTime()}
+   */
+  public long begin(int methodId, long startNanos, long latencyNanos, int argCount) {
+    long number = sequence.getAndIncrement() + 1;
+    int index = (int) ((number - 1) % slotCount);
+    long previous = owners.get(index);
+    if (previous > 0 || !owners.compareAndSet(index, previous, number)) {
+      dropped.increment();
+      return DROPPED;
+    }
+    int slot = HEADER_SIZE + index * slotSize;
+    buffer.putLong(slot, -number);
+    buffer.putInt(slot + 8, methodId);
+    buffer.putShort(slot + 12, (short) argCount);
+    buffer.putLong(slot + 16, startNanos - originNanos);
+    buffer.putLong(slot + 24, latencyNanos);
+    return slot + SLOT_HEADER_SIZE;
+  }
+
+  /** Marks the call whose arguments end at {@code cursor} as complete. */
+  public void commit(long cursor) {
+    if (cursor == DROPPED) {
+      return;
+    }
+    int slot = slot(cursor);
+    if (cursor < slot + slotSize) {
+      buffer.put((int) cursor, END);
+    }
+    // No other call can claim the slot until its owner is released below.
+    long number = -buffer.getLong(slot);
+    buffer.putLong(slot, number);
+    owners.set((slot - HEADER_SIZE) / slotSize, -number);
+  }
+
+  public long putBoolean(long cursor, boolean value) {
+    if (!fits(cursor, 2)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, BOOLEAN);
+    buffer.put((int) cursor + 1, value ? (byte) 1 : (byte) 0);
+    return cursor + 2;
+  }
+
+  public long putByte(long cursor, byte value) {
+    if (!fits(cursor, 2)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, BYTE);
+    buffer.put((int) cursor + 1, value);
+    return cursor + 2;
+  }
+
+  public long putChar(long cursor, char value) {
+    if (!fits(cursor, 3)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, CHAR);
+    buffer.putChar((int) cursor + 1, value);
+    return cursor + 3;
+  }
+
+  public long putShort(long cursor, short value) {
+    if (!fits(cursor, 3)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, SHORT);
+    buffer.putShort((int) cursor + 1, value);
+    return cursor + 3;
+  }
+
+  public long putInt(long cursor, int value) {
+    if (!fits(cursor, 5)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, INT);
+    buffer.putInt((int) cursor + 1, value);
+    return cursor + 5;
+  }
+
+  public long putLong(long cursor, long value) {
+    if (!fits(cursor, 9)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, LONG);
+    buffer.putLong((int) cursor + 1, value);
+    return cursor + 9;
+  }
+
+  public long putFloat(long cursor, float value) {
+    if (!fits(cursor, 5)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, FLOAT);
+    buffer.putFloat((int) cursor + 1, value);
+    return cursor + 5;
+  }
+
+  public long putDouble(long cursor, double value) {
+    if (!fits(cursor, 9)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, DOUBLE);
+    buffer.putDouble((int) cursor + 1, value);
+    return cursor + 9;
+  }
+
+  /** Puts a {@code String}, cut short to fit in the rest of the slot if need be. */
+  public long putString(long cursor, String value) {
+    if (value == null) {
+      return putNull(cursor);
+    }
+    long room = slot(cursor) + slotSize - cursor - 5;
+    if (cursor == DROPPED || room < 0) {
+      return full(cursor);
+    }
+    int length = (int) Math.min(value.length(), room / 2);
+    int at = (int) cursor;
+    buffer.put(at, STRING);
+    buffer.putInt(at + 1, length);
+    at += 5;
+    for (int i = 0; i < length; i++) {
+      buffer.putChar(at, value.charAt(i));
+      at += 2;
+    }
+    // Nothing after a string that was cut short could fit either.
+    return length < value.length() ? full(at) : at;
+  }
+
+  /**
+   * Puts a boxed primitive or {@code String} as its value, and any other object as an
+   * unsupported argument that replays as {@code null}.
+   */
+  public long putObject(long cursor, Object value) {
+    if (value == null) {
+      return putNull(cursor);
+    } else if (value instanceof String) {
+      return putString(cursor, (String) value);
+    } else if (value instanceof Integer) {
+      return putInt(cursor, (Integer) value);
+    } else if (value instanceof Long) {
+      return putLong(cursor, (Long) value);
+    } else if (value instanceof Double) {
+      return putDouble(cursor, (Double) value);
+    } else if (value instanceof Boolean) {
+      return putBoolean(cursor, (Boolean) value);
+    } else if (value instanceof Float) {
+      return putFloat(cursor, (Float) value);
+    } else if (value instanceof Short) {
+      return putShort(cursor, (Short) value);
+    } else if (value instanceof Byte) {
+      return putByte(cursor, (Byte) value);
+    } else if (value instanceof Character) {
+      return putChar(cursor, (Character) value);
+    }
+    if (!fits(cursor, 1)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, UNSUPPORTED);
+    return cursor + 1;
+  }
+
+  private long putNull(long cursor) {
+    if (!fits(cursor, 1)) {
+      return full(cursor);
+    }
+    buffer.put((int) cursor, NULL);
+    return cursor + 1;
+  }
+
+  /** The number of calls begun so far, including any overwritten or dropped since. */
+  public long recorded() {
+    return sequence.get();
+  }
+
+  /** The number of calls dropped because their slot was still being written. */
+  public long dropped() {
+    return dropped.sum();
+  }
+
+  /** Flushes the recorded calls to the file. */
+  @Override
+  public void close() throws IOException {
+    buffer.force();
+    channel.close();
+  }
+
+  /** Returns the offset of the slot {@code cursor} is in, which may be at its very end. */
+  private int slot(long cursor) {
+    return HEADER_SIZE + (int) ((cursor - HEADER_SIZE - 1) / slotSize) * slotSize;
+  }
+
+  private boolean fits(long cursor, int size) {
+    return cursor != DROPPED && cursor + size <= slot(cursor) + slotSize;
+  }
+
+  /** Ends the arguments at {@code cursor}, and returns a cursor that no argument will fit after. */
+  private long full(long cursor) {
+    if (cursor == DROPPED) {
+      return DROPPED;
+    }
+    long end = slot(cursor) + slotSize;
+    if (cursor < end) {
+      buffer.put((int) cursor, END);
+    }
+    return end;
+  }
+}
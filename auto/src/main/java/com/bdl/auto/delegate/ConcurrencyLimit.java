@@ -0,0 +1,78 @@
+package com.bdl.auto.delegate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many calls a {@link ConcurrencyLimiter} lets be in flight at once: either a fixed number, or
+ * one that adapts to the latency of the calls.
+ *
+ * <p>An adaptive limit is adjusted in the manner of TCP congestion control (additive increase,
+ * multiplicative decrease). Each call that completes within the target latency while the limiter
+ * is at least half full counts towards raising the limit by one, which takes as many such calls as
+ * the current limit. Each call that takes longer than the target cuts the limit by
+ * {@link #BACKOFF}, unless it started before the last cut, so that one slow spell cuts it once.
+ *
+ * @author Ben Leitner
+ */
+public final class ConcurrencyLimit {
+
+  /** The factor an adaptive limit is multiplied by when a call is slower than the target. */
+  public static final double BACKOFF = 0.9;
+
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final long targetNanos;
+
+  private ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long targetNanos) {
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.targetNanos = targetNanos;
+  }
+
+  /** Returns a limit that is always {@code limit}. */
+  public static ConcurrencyLimit fixed(int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Limit must be positive: " + limit);
+    }
+    return new ConcurrencyLimit(limit, limit, limit, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a limit that starts at {@code initialLimit} and stays between {@code minLimit} and
+   * {@code maxLimit}, backing off when calls take longer than {@code targetLatency}.
+   */
+  public static ConcurrencyLimit adaptive(
+      int initialLimit, int minLimit, int maxLimit, long targetLatency, TimeUnit unit) {
+    if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+      throw new IllegalArgumentException(String.format(
+          "Limits must satisfy 1 <= min <= initial <= max: %d, %d, %d",
+          minLimit, initialLimit, maxLimit));
+    }
+    if (targetLatency <= 0) {
+      throw new IllegalArgumentException("Target latency must be positive: " + targetLatency);
+    }
+    return new ConcurrencyLimit(initialLimit, minLimit, maxLimit, unit.toNanos(targetLatency));
+  }
+
+  /** Whether the limit adapts to latency. */
+  public boolean isAdaptive() {
+    return targetNanos != Long.MAX_VALUE;
+  }
+
+  /** Returns a new limiter with no calls in flight, that reports itself as {@code name}. */
+  public ConcurrencyLimiter newLimiter(String name) {
+    return new ConcurrencyLimiter(name, initialLimit, minLimit, maxLimit, targetNanos);
+  }
+
+  /** Returns a new limiter for each of {@code methods}, indexed by their IDs. */
+  public ConcurrencyLimiter[] newLimiters(List<MethodDescriptor> methods) {
+    ConcurrencyLimiter[] limiters = new ConcurrencyLimiter[methods.size()];
+    for (MethodDescriptor method : methods) {
+      limiters[method.id()] = newLimiter(method.signature());
+    }
+    return limiters;
+  }
+}
@@ -0,0 +1,109 @@
+package com.bdl.auto.delegate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of calls in flight at a {@link ConcurrencyLimit}, rejecting calls beyond it with
+ * a {@link BulkheadFullException} rather than queueing them.
+ *
+ * <p>Callers {@link #acquire()} a permit before the call and {@link #release} it after. Neither
+ * blocks or takes a lock: admission is a compare-and-set on the count of calls in flight.
+ *
+ * @author Ben Leitner
+ */
+public final class ConcurrencyLimiter {
+
+  private final String name;
+  private final int minLimit;
+  private final int maxLimit;
+  private final long targetNanos;
+  private final boolean adaptive;
+  private final AtomicInteger limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger sinceIncrease = new AtomicInteger();
+  private final LongAdder rejections = new LongAdder();
+  private volatile long lastDecrease;
+
+  ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, long targetNanos) {
+    this.name = name;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.targetNanos = targetNanos;
+    this.adaptive = targetNanos != Long.MAX_VALUE;
+    this.limit = new AtomicInteger(initialLimit);
+    this.lastDecrease = System.nanoTime();
+  }
+
+  /**
+   * Admits a call, returning the permit to {@link #release} once it completes.
+   *
+   * @throws BulkheadFullException if the limit has been reached
+   */
+  public long acquire() {
+    while (true) {
+      int current = inFlight.get();
+      int max = limit.get();
+      if (current >= max) {
+        rejections.increment();
+        throw new BulkheadFullException(name, max);
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        // Only an adaptive limit needs to know how long the call took.
+        return adaptive ? System.nanoTime() : 0L;
+      }
+    }
+  }
+
+  /** Records that the call admitted with {@code permit} has completed, however it completed. */
+  public void release(long permit) {
+    int current = inFlight.getAndDecrement();
+    if (adaptive) {
+      adapt(permit, System.nanoTime() - permit, current);
+    }
+  }
+
+  private void adapt(long start, long nanos, int inFlightAtEnd) {
+    int current = limit.get();
+    if (nanos > targetNanos) {
+      if (start - lastDecrease > 0 && current > minLimit) {
+        int decreased = Math.max(minLimit, (int) (current * ConcurrencyLimit.BACKOFF));
+        if (limit.compareAndSet(current, decreased)) {
+          lastDecrease = System.nanoTime();
+          sinceIncrease.set(0);
+        }
+      }
+    } else if (inFlightAtEnd * 2 >= current && current < maxLimit) {
+      // Only calls made while the limit is being used are evidence that it could be higher.
+      if (sinceIncrease.incrementAndGet() >= current && limit.compareAndSet(current, current + 1)) {
+        sinceIncrease.set(0);
+      }
+    }
+  }
+
+  /** The name the limiter reports itself as in rejections. */
+  public String name() {
+    return name;
+  }
+
+  /** The current limit. */
+  public int limit() {
+    return limit.get();
+  }
+
+  /** The number of calls in flight. */
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  /** The number of calls rejected so far. */
+  public long rejections() {
+    return rejections.sum();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d/%d in flight, %d rejected", name, inFlight(), limit(), rejections());
+  }
+}
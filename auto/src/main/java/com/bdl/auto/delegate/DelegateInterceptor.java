@@ -0,0 +1,28 @@
+package com.bdl.auto.delegate;
+
+/**
+ * Hooks called around each call forwarded by a delegate generated with
+ * {@link AutoDelegate#intercepted}.
+ *
+ * <p>Methods are identified by the IDs the generated class assigns them at compile time, which are
+ * its {@code ID_} constants and index its {@code METHODS} table of {@link MethodDescriptor}s. No
+ * arguments are passed, so calling the hooks allocates nothing.
+ *
+ * @author Ben Leitner
+ */
+public interface DelegateInterceptor {
+
+  /**
+   * Called before the call is forwarded. If this throws, the call isn't forwarded and
+   * {@link #after} isn't called.
+   */
+  void before(int methodId);
+
+  /**
+   * Called once the forwarded call returns or throws.
+   *
+   * @param nanos how long the call took, from just after {@link #before} returned
+   * @param error what the call threw, or {@code null} if it returned
+   */
+  void after(int methodId, long nanos, Throwable error);
+}
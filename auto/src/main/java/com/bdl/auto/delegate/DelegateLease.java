@@ -0,0 +1,58 @@
+package com.bdl.auto.delegate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A target installed in a {@link DelegateSwitch}, with a count of the calls in flight to it.
+ *
+ * <p>Forwarded calls {@linkplain DelegateSwitch#acquire() acquire} the current lease, call its
+ * {@link #target()}, and {@link #release()} it when they return.
+ *
+ * @param <T> the type of the target
+ * @author Ben Leitner
+ */
+public final class DelegateLease<T> {
+
+  private final T target;
+  // A single counter rather than a LongAdder, so that a drain reads a consistent count.
+  private final AtomicLong inFlight = new AtomicLong();
+  private volatile boolean retired;
+
+  DelegateLease(T target) {
+    this.target = target;
+  }
+
+  /** Returns the target to forward the call to. */
+  public T target() {
+    return target;
+  }
+
+  /** Records that a call to the target has returned. */
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  /**
+   * Counts a call in, returning {@code false} if the lease was retired meanwhile. The count is
+   * incremented before the flag is read, and {@link #retire()} sets the flag before counts are
+   * read, so a drain never misses a call that went ahead.
+   */
+  boolean enter() {
+    inFlight.incrementAndGet();
+    if (retired) {
+      inFlight.decrementAndGet();
+      return false;
+    }
+    return true;
+  }
+
+  /** Stops the lease from admitting calls, so that the ones in flight can be drained. */
+  void retire() {
+    retired = true;
+  }
+
+  /** Returns whether no calls are in flight. Only meaningful once the lease is retired. */
+  boolean drained() {
+    return inFlight.get() == 0;
+  }
+}
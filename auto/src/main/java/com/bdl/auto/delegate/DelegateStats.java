@@ -0,0 +1,81 @@
+package com.bdl.auto.delegate;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the {@link MethodStats} of every method forwarded by a delegate
+ * generated with {@link AutoDelegate#metrics}, as returned by its {@code snapshot()} method.
+ *
+ * @author Ben Leitner
+ */
+public final class DelegateStats {
+
+  private final Map<String, MethodStats> methods;
+
+  private DelegateStats(Map<String, MethodStats> methods) {
+    this.methods = methods;
+  }
+
+  /** Takes a snapshot of each of {@code metrics}. */
+  public static DelegateStats of(MethodMetrics... metrics) {
+    Map<String, MethodStats> methods = new LinkedHashMap<>();
+    for (MethodMetrics method : metrics) {
+      MethodStats stats = method.snapshot();
+      methods.put(stats.signature(), stats);
+    }
+    return new DelegateStats(Collections.unmodifiableMap(methods));
+  }
+
+  /** The stats of each forwarded method, keyed by signature, in declaration order. */
+  public Map<String, MethodStats> methods() {
+    return methods;
+  }
+
+  /**
+   * The stats of the method with the given signature, e.g. {@code bar(int)}.
+   *
+   * @throws IllegalArgumentException if the delegate does not forward such a method
+   */
+  public MethodStats method(String signature) {
+    MethodStats stats = methods.get(signature);
+    if (stats == null) {
+      throw new IllegalArgumentException(
+          String.format("No delegated method %s in %s", signature, methods.keySet()));
+    }
+    return stats;
+  }
+
+  /**
+   * Returns the stats of the calls counted in either this or {@code other}, such as the stats of
+   * another instance of the same delegate. Methods in only one of them are kept as they are.
+   */
+  public DelegateStats merge(DelegateStats other) {
+    Map<String, MethodStats> merged = new LinkedHashMap<>(methods);
+    for (MethodStats stats : other.methods.values()) {
+      MethodStats mine = merged.get(stats.signature());
+      merged.put(stats.signature(), mine == null ? stats : mine.merge(stats));
+    }
+    return new DelegateStats(Collections.unmodifiableMap(merged));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof DelegateStats && methods.equals(((DelegateStats) obj).methods);
+  }
+
+  @Override
+  public int hashCode() {
+    return methods.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("DelegateStats");
+    for (MethodStats stats : methods.values()) {
+      builder.append("\n  ").append(stats);
+    }
+    return builder.toString();
+  }
+}
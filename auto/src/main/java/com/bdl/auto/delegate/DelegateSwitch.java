@@ -0,0 +1,107 @@
+package com.bdl.auto.delegate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds the target of a delegate generated with {@link AutoDelegate#swappable}, which may be
+ * replaced while calls are being made.
+ *
+ * <p>Each call reads the current target once, with {@link #get()}, so a call never sees two
+ * different targets. Replacing the target takes no locks. Calls that instead
+ * {@linkplain #acquire() acquire} the current {@link DelegateLease} are counted, and
+ * {@link #swapAndDrain} waits until those still running on the old target have returned, so that
+ * it can be closed.
+ *
+ * @param <T> the type of the target
+ * @author Ben Leitner
+ */
+public final class DelegateSwitch<T> {
+
+  /** How long {@link #swapAndDrain} parks between checks of the old target's calls. */
+  private static final long DRAIN_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final AtomicReference<DelegateLease<T>> current;
+
+  public DelegateSwitch(T target) {
+    current = new AtomicReference<>(new DelegateLease<>(checkTarget(target)));
+  }
+
+  /** Returns the current target. */
+  public T get() {
+    return current.get().target();
+  }
+
+  /**
+   * Returns the lease of the current target, counting the caller in. The caller must
+   * {@linkplain DelegateLease#release() release} it once its call returns.
+   */
+  public DelegateLease<T> acquire() {
+    while (true) {
+      DelegateLease<T> lease = current.get();
+      if (lease.enter()) {
+        return lease;
+      }
+      // Lost a race with a swap: the new lease is already installed.
+    }
+  }
+
+  /** Installs {@code target}, returning the one it replaced. */
+  public T swap(T target) {
+    DelegateLease<T> old = current.getAndSet(new DelegateLease<>(checkTarget(target)));
+    old.retire();
+    return old.target();
+  }
+
+  /**
+   * Installs {@code target} if the current target is {@code expected}, returning whether it did.
+   * Targets are compared by identity.
+   */
+  public boolean compareAndSwap(T expected, T target) {
+    DelegateLease<T> replacement = new DelegateLease<>(checkTarget(target));
+    while (true) {
+      DelegateLease<T> old = current.get();
+      if (old.target() != expected) {
+        return false;
+      }
+      if (current.compareAndSet(old, replacement)) {
+        old.retire();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Installs {@code target}, then waits for the calls in flight to the target it replaced to
+   * return, and returns the replaced target. Only calls that {@linkplain #acquire() acquired} a
+   * lease are waited for.
+   *
+   * @throws TimeoutException if calls are still in flight after {@code timeout}; the new target
+   *     stays installed
+   */
+  public T swapAndDrain(T target, long timeout, TimeUnit unit)
+      throws InterruptedException, TimeoutException {
+    DelegateLease<T> old = current.getAndSet(new DelegateLease<>(checkTarget(target)));
+    old.retire();
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!old.drained()) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (System.nanoTime() - deadline >= 0) {
+        throw new TimeoutException("Calls to the replaced delegate are still in flight");
+      }
+      LockSupport.parkNanos(DRAIN_POLL_NANOS);
+    }
+    return old.target();
+  }
+
+  private static <T> T checkTarget(T target) {
+    if (target == null) {
+      throw new NullPointerException("The delegate must not be null");
+    }
+    return target;
+  }
+}
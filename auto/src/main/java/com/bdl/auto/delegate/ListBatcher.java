@@ -0,0 +1,40 @@
+package com.bdl.auto.delegate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Batcher} for a {@link Batch} method with one parameter, collecting the arguments into a
+ * list in the order they were passed.
+ *
+ * @author Ben Leitner
+ */
+public abstract class ListBatcher<E> extends Batcher<List<E>> {
+
+  protected ListBatcher(int maxSize, long maxDelayMillis) {
+    super(maxSize, maxDelayMillis, new ArrayList<E>());
+  }
+
+  /** Buffers a call, delivering the batch if it is full. */
+  public void add(E element) {
+    boolean full;
+    synchronized (lock) {
+      checkAccepting();
+      buffer.add(element);
+      full = added();
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+  @Override
+  List<E> newBuffer() {
+    return new ArrayList<>();
+  }
+
+  @Override
+  int size(List<E> buffer) {
+    return buffer.size();
+  }
+}
@@ -0,0 +1,90 @@
+package com.bdl.auto.delegate;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The listeners of a multicaster generated for an {@link AutoMulticast} interface, kept in a
+ * copy-on-write array.
+ *
+ * <p>Dispatching reads the current array once and loops over it, so it takes no locks and
+ * allocates nothing. Adding or removing a listener copies the array and installs the copy with a
+ * compare-and-set, retrying if another change got there first.
+ *
+ * @param <L> the listener type
+ * @author Ben Leitner
+ */
+public final class ListenerArray<L> {
+
+  private final AtomicReference<L[]> listeners;
+
+  /** Creates an empty array of listeners, starting from {@code empty}, which must have length 0. */
+  public ListenerArray(L[] empty) {
+    if (empty.length != 0) {
+      throw new IllegalArgumentException("Expected an empty array, had " + empty.length);
+    }
+    listeners = new AtomicReference<>(empty);
+  }
+
+  /** Returns the current listeners. The array must not be modified. */
+  public L[] get() {
+    return listeners.get();
+  }
+
+  /** Adds {@code listener} after the current listeners. A listener may be added more than once. */
+  public void add(L listener) {
+    if (listener == null) {
+      throw new NullPointerException("Listeners must not be null");
+    }
+    while (true) {
+      L[] current = listeners.get();
+      L[] updated = Arrays.copyOf(current, current.length + 1);
+      updated[current.length] = listener;
+      if (listeners.compareAndSet(current, updated)) {
+        return;
+      }
+    }
+  }
+
+  /** Removes the first occurrence of {@code listener}, returning whether there was one. */
+  public boolean remove(L listener) {
+    while (true) {
+      L[] current = listeners.get();
+      int index = indexOf(current, listener);
+      if (index < 0) {
+        return false;
+      }
+      L[] updated = Arrays.copyOf(current, current.length - 1);
+      System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+      if (listeners.compareAndSet(current, updated)) {
+        return true;
+      }
+    }
+  }
+
+  /** Returns the number of listeners. */
+  public int size() {
+    return listeners.get().length;
+  }
+
+  /**
+   * Returns {@code failure}, or {@code error} if there is no failure yet, adding {@code error} to
+   * it as a suppressed exception otherwise. Used by multicasters that isolate exceptions.
+   */
+  public static RuntimeException collect(RuntimeException failure, RuntimeException error) {
+    if (failure == null) {
+      return error;
+    }
+    failure.addSuppressed(error);
+    return failure;
+  }
+
+  private static int indexOf(Object[] listeners, Object listener) {
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i].equals(listener)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,53 @@
+package com.bdl.auto.delegate;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link MemoCache} for methods whose arguments can all be packed into a single {@code long}, so
+ * that keys are never boxed.
+ *
+ * @author Ben Leitner
+ */
+public final class LongKeyCache<V> extends MemoCache {
+
+  private final AtomicReferenceArray<Entry<V>> slots;
+
+  public LongKeyCache(String signature, int maxSize, long expireAfterWriteMillis) {
+    super(signature, maxSize, expireAfterWriteMillis);
+    slots = new AtomicReferenceArray<>(mask + 1);
+  }
+
+  /** Returns the result cached for {@code key}, or {@code null} if there is none. */
+  public V get(long key) {
+    Entry<V> entry = slots.get(spread(key) & mask);
+    if (entry != null && entry.key == key && isLive(entry.writeTime)) {
+      recordHit();
+      return entry.value;
+    }
+    recordMiss();
+    return null;
+  }
+
+  /** Caches {@code value} for {@code key}, replacing whatever was cached in its slot. */
+  public void put(long key, V value) {
+    if (value == null) {
+      return;
+    }
+    Entry<V> previous = slots.getAndSet(spread(key) & mask, new Entry<>(key, value, writeTime()));
+    if (previous != null && (previous.key != key || !isLive(previous.writeTime))) {
+      recordEviction();
+    }
+  }
+
+  private static final class Entry<V> {
+    final long key;
+    final V value;
+    final long writeTime;
+
+    Entry(long key, V value, long writeTime) {
+      this.key = key;
+      this.value = value;
+      this.writeTime = writeTime;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.bdl.auto.delegate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link Batcher} for a {@link Batch} method with two parameters, collecting the arguments into
+ * a map from the first to the second. A later call with the same key replaces the value of an
+ * earlier one that has not been delivered yet.
+ *
+ * @author Ben Leitner
+ */
+public abstract class MapBatcher<K, V> extends Batcher<Map<K, V>> {
+
+  protected MapBatcher(int maxSize, long maxDelayMillis) {
+    super(maxSize, maxDelayMillis, new LinkedHashMap<K, V>());
+  }
+
+  /** Buffers a call, delivering the batch if it is full. */
+  public void put(K key, V value) {
+    boolean full;
+    synchronized (lock) {
+      checkAccepting();
+      buffer.put(key, value);
+      full = added();
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+  @Override
+  Map<K, V> newBuffer() {
+    return new LinkedHashMap<>();
+  }
+
+  @Override
+  int size(Map<K, V> buffer) {
+    return buffer.size();
+  }
+}
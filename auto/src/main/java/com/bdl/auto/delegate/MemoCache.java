@@ -0,0 +1,93 @@
+package com.bdl.auto.delegate;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The common parts of the caches generated for {@link Memoize} methods.
+ *
+ * <p>Caches are direct mapped: each key hashes to one of a fixed number of slots, the maximum size
+ * rounded up to a power of two, and caching a result replaces whatever was in its slot.
+ * Slots are read and replaced atomically without locks, and looking up a cached result allocates
+ * nothing.
+ *
+ * @author Ben Leitner
+ */
+public abstract class MemoCache {
+
+  private final String signature;
+  private final long expireNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /** The most slots a cache has, the largest power of two an {@code int} holds. */
+  static final int MAX_SLOTS = 1 << 30;
+
+  /** The number of slots less one, for masking hashes to slot indices. */
+  final int mask;
+
+  MemoCache(String signature, int maxSize, long expireAfterWriteMillis) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException(
+          String.format("maxSize of %s must be positive, was %d", signature, maxSize));
+    }
+    if (expireAfterWriteMillis < 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "expireAfterWriteMillis of %s must not be negative, was %d",
+              signature,
+              expireAfterWriteMillis));
+    }
+    this.signature = signature;
+    this.expireNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterWriteMillis);
+    this.mask = (maxSize > MAX_SLOTS ? MAX_SLOTS : Integer.highestOneBit(maxSize * 2 - 1)) - 1;
+  }
+
+  /** The time to record as the write time of a newly cached result. */
+  long writeTime() {
+    return expireNanos == 0 ? 0 : System.nanoTime();
+  }
+
+  /** Whether a result written at {@code writeTime} has not expired. */
+  boolean isLive(long writeTime) {
+    return expireNanos == 0 || System.nanoTime() - writeTime < expireNanos;
+  }
+
+  void recordHit() {
+    hits.increment();
+  }
+
+  void recordMiss() {
+    misses.increment();
+  }
+
+  void recordEviction() {
+    evictions.increment();
+  }
+
+  /** Spreads the bits of {@code hash} so that nearby keys land in different slots. */
+  static int spread(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return (int) hash;
+  }
+
+  /** Returns the hits, misses and evictions so far. */
+  public MemoStats stats() {
+    return new MemoStats(signature, hits.sum(), misses.sum(), evictions.sum());
+  }
+
+  /** Returns the stats of each of {@code caches}, keyed by method signature, in order. */
+  public static Map<String, MemoStats> stats(MemoCache... caches) {
+    Map<String, MemoStats> stats = new LinkedHashMap<>();
+    for (MemoCache cache : caches) {
+      stats.put(cache.signature, cache.stats());
+    }
+    return Collections.unmodifiableMap(stats);
+  }
+}
@@ -0,0 +1,68 @@
+package com.bdl.auto.delegate;
+
+/**
+ * An immutable snapshot of the counters of the cache of one {@link Memoize} method.
+ *
+ * @author Ben Leitner
+ */
+public final class MemoStats {
+
+  private final String signature;
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+
+  MemoStats(String signature, long hits, long misses, long evictions) {
+    this.signature = signature;
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+  }
+
+  /** The method's name and parameter types, e.g. {@code bar(int)}. */
+  public String signature() {
+    return signature;
+  }
+
+  public long hits() {
+    return hits;
+  }
+
+  public long misses() {
+    return misses;
+  }
+
+  /** The number of cached results replaced by a result for a different key, or after expiring. */
+  public long evictions() {
+    return evictions;
+  }
+
+  /** The fraction of lookups that were hits, or {@code 0} if there were none. */
+  public double hitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof MemoStats)) {
+      return false;
+    }
+    MemoStats that = (MemoStats) obj;
+    return signature.equals(that.signature)
+        && hits == that.hits
+        && misses == that.misses
+        && evictions == that.evictions;
+  }
+
+  @Override
+  public int hashCode() {
+    return signature.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d hits, %d misses, %d evictions", signature, hits, misses, evictions);
+  }
+}
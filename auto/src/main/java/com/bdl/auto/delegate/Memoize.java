@@ -0,0 +1,28 @@
+package com.bdl.auto.delegate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the generated delegate should cache the results of the annotated method, keyed on
+ * its arguments, instead of calling the delegate every time. The method must be redeclared as
+ * abstract in the class annotated with {@link AutoDelegate} and must not return {@code void}.
+ *
+ * <p>{@code null} results are not cached. Concurrent calls with the same arguments may each call
+ * the delegate before the first result is cached, so only methods whose results depend solely on
+ * their arguments should be memoized.
+ *
+ * @author Ben Leitner
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Memoize {
+
+  /** The most results to keep at once, rounded up to a power of two. */
+  int maxSize() default 1024;
+
+  /** How long a result is kept after it is cached, or {@code 0} to keep it until it is evicted. */
+  long expireAfterWriteMillis() default 0;
+}
@@ -0,0 +1,93 @@
+package com.bdl.auto.delegate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes a method of a generated class by the ID it was assigned at compile time, for callers
+ * that are handed only the ID, such as a {@link DelegateInterceptor}.
+ *
+ * @author Ben Leitner
+ */
+public final class MethodDescriptor {
+
+  private final int id;
+  private final String signature;
+
+  private MethodDescriptor(int id, String signature) {
+    this.id = id;
+    this.signature = signature;
+  }
+
+  /**
+   * Returns the table of descriptors of the methods with the given signatures, e.g. {@code
+   * bar(int)}, each with its position in the table as its ID.
+   */
+  public static List<MethodDescriptor> table(String... signatures) {
+    List<MethodDescriptor> table = new ArrayList<>(signatures.length);
+    for (int i = 0; i < signatures.length; i++) {
+      table.add(new MethodDescriptor(i, signatures[i]));
+    }
+    return Collections.unmodifiableList(table);
+  }
+
+  /**
+   * Returns the IDs of the methods in {@code table}, keyed by their signatures, and also by their
+   * names for those methods that aren't overloaded.
+   */
+  public static Map<String, Integer> index(List<MethodDescriptor> table) {
+    Map<String, Integer> index = new HashMap<>();
+    Set<String> overloaded = new HashSet<>();
+    for (MethodDescriptor method : table) {
+      index.put(method.signature, method.id);
+      if (index.containsKey(method.name())) {
+        overloaded.add(method.name());
+      } else {
+        index.put(method.name(), method.id);
+      }
+    }
+    for (String name : overloaded) {
+      index.remove(name);
+    }
+    return Collections.unmodifiableMap(index);
+  }
+
+  /** The method's ID, which is also its index in its table. */
+  public int id() {
+    return id;
+  }
+
+  /** The method's name. */
+  public String name() {
+    return signature.substring(0, signature.indexOf('('));
+  }
+
+  /** The method's name and parameter types, e.g. {@code bar(int)}. */
+  public String signature() {
+    return signature;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof MethodDescriptor)) {
+      return false;
+    }
+    MethodDescriptor other = (MethodDescriptor) obj;
+    return id == other.id && signature.equals(other.signature);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * id + signature.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return id + ": " + signature;
+  }
+}
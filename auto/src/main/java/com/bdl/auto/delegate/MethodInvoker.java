@@ -0,0 +1,28 @@
+package com.bdl.auto.delegate;
+
+/**
+ * Calls the methods of {@code T} by ID, for dispatching calls that are only known at runtime, such
+ * as those decoded from an RPC or replayed from a log. Implementations are generated for
+ * interfaces annotated with {@link AutoInvoker}, and switch over the IDs rather than using
+ * reflection.
+ *
+ * @author Ben Leitner
+ */
+public interface MethodInvoker<T> {
+
+  /**
+   * Returns the ID of the method with the given signature, e.g. {@code bar(int)}, or with the given
+   * name if the method isn't overloaded, or -1 if there's no such method.
+   */
+  int methodId(String method);
+
+  /**
+   * Calls the method with the given ID on {@code target}, returning its result, boxed if it's
+   * primitive, or {@code null} if it's {@code void}.
+   *
+   * @throws IllegalArgumentException if there's no method with the ID
+   * @throws ClassCastException if the arguments aren't of the method's parameter types
+   * @throws Exception whatever the method throws
+   */
+  Object invoke(T target, int methodId, Object[] args) throws Exception;
+}
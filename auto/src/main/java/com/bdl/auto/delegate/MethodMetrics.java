@@ -0,0 +1,139 @@
+package com.bdl.auto.delegate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts, error counts and a latency histogram for one method of a delegate generated with
+ * {@link AutoDelegate#metrics}.
+ *
+ * <p>Recording is lock-free and does not allocate: counts are kept in striped {@link LongAdder}s
+ * and latencies in a fixed set of {@link #BUCKETS} buckets, where bucket {@code i} counts calls
+ * that took less than {@code 2^i} nanoseconds but at least {@code 2^(i-1)}.
+ *
+ * <p>Metrics may time only a sample of the calls, chosen at random from the calling thread's
+ * {@link ThreadLocalRandom}. Every call and error is still counted, but only the sampled calls'
+ * latencies are recorded, through {@link #sampleStart} and {@link #recordSampled}.
+ *
+ * @author Ben Leitner
+ */
+public final class MethodMetrics {
+
+  /** The number of latency buckets, enough for any non-negative {@code long} of nanoseconds. */
+  public static final int BUCKETS = 64;
+
+  private final String signature;
+  private final int sampleEvery;
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder sampled = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+  public MethodMetrics(String signature) {
+    this(signature, 1);
+  }
+
+  /** Creates metrics that time one in {@code sampleEvery} calls, on average. */
+  public MethodMetrics(String signature, int sampleEvery) {
+    if (sampleEvery < 1) {
+      throw new IllegalArgumentException("sampleEvery must be positive: " + sampleEvery);
+    }
+    this.signature = signature;
+    this.sampleEvery = sampleEvery;
+  }
+
+  /** Returns metrics for each of the given method signatures, in order. */
+  public static MethodMetrics[] forMethods(String... signatures) {
+    MethodMetrics[] metrics = new MethodMetrics[signatures.length];
+    for (int i = 0; i < signatures.length; i++) {
+      metrics[i] = new MethodMetrics(signatures[i]);
+    }
+    return metrics;
+  }
+
+  /**
+   * Returns metrics for each of the given method signatures, in order, that time one in
+   * {@code sampleEvery} calls.
+   */
+  public static MethodMetrics[] forMethods(int sampleEvery, String... signatures) {
+    MethodMetrics[] metrics = new MethodMetrics[signatures.length];
+    for (int i = 0; i < signatures.length; i++) {
+      metrics[i] = new MethodMetrics(signatures[i], sampleEvery);
+    }
+    return metrics;
+  }
+
+  /** Clears all of the counts of each of {@code metrics}. */
+  public static void resetAll(MethodMetrics... metrics) {
+    for (MethodMetrics method : metrics) {
+      method.reset();
+    }
+  }
+
+  /** Returns the bucket that a call taking {@code nanos} is counted in. */
+  public static int bucket(long nanos) {
+    return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+  }
+
+  /** Records a call, successful or not, that took {@code nanos}. */
+  public void record(long nanos) {
+    calls.increment();
+    sampled.increment();
+    totalNanos.add(nanos);
+    buckets.incrementAndGet(bucket(nanos));
+  }
+
+  /**
+   * Decides whether to time a call that is starting, returning the time it started from
+   * {@link System#nanoTime()} if so, or {@code 0} if not.
+   */
+  public long sampleStart() {
+    return ThreadLocalRandom.current().nextInt(sampleEvery) == 0 ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * Records a call, successful or not, that started at {@code start}, as returned by
+   * {@link #sampleStart}. Calls that weren't sampled are only counted.
+   */
+  public void recordSampled(long start) {
+    if (start == 0L) {
+      calls.increment();
+    } else {
+      record(System.nanoTime() - start);
+    }
+  }
+
+  /** Records that a call threw. The call itself is counted by {@link #record}. */
+  public void recordError() {
+    errors.increment();
+  }
+
+  /**
+   * Returns the counts recorded so far. Counts are read one at a time while calls may still be
+   * recorded, so they are not guaranteed to be consistent with each other.
+   */
+  public MethodStats snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return new MethodStats(
+        signature, calls.sum(), sampled.sum(), errors.sum(), totalNanos.sum(), counts);
+  }
+
+  /**
+   * Clears the counts. Calls recorded while the counts are being cleared may be partly cleared, so
+   * they are not guaranteed to be consistent with each other until those calls are done.
+   */
+  public void reset() {
+    calls.reset();
+    sampled.reset();
+    errors.reset();
+    totalNanos.reset();
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.bdl.auto.delegate;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the {@link MethodMetrics} of one delegated method.
+ *
+ * <p>Snapshots of the same method, such as those of several instances of a delegate, can be
+ * {@linkplain #merge merged}.
+ *
+ * @author Ben Leitner
+ */
+public final class MethodStats {
+
+  private final String signature;
+  private final long calls;
+  private final long sampled;
+  private final long errors;
+  private final long totalNanos;
+  private final long[] buckets;
+
+  MethodStats(
+      String signature, long calls, long sampled, long errors, long totalNanos, long[] buckets) {
+    this.signature = signature;
+    this.calls = calls;
+    this.sampled = sampled;
+    this.errors = errors;
+    this.totalNanos = totalNanos;
+    this.buckets = buckets;
+  }
+
+  /** The method's name and parameter types, e.g. {@code bar(int)}. */
+  public String signature() {
+    return signature;
+  }
+
+  public long calls() {
+    return calls;
+  }
+
+  /** The number of calls whose latency was recorded, which is all of them unless sampling. */
+  public long sampledCalls() {
+    return sampled;
+  }
+
+  public long errors() {
+    return errors;
+  }
+
+  /** The total latency of the sampled calls. */
+  public long totalNanos() {
+    return totalNanos;
+  }
+
+  /** The mean latency of the sampled calls, or {@code 0} if there were none. */
+  public double meanNanos() {
+    return sampled == 0 ? 0 : (double) totalNanos / sampled;
+  }
+
+  /** The number of calls counted in latency bucket {@code bucket}. */
+  public long bucketCount(int bucket) {
+    return buckets[bucket];
+  }
+
+  /** The exclusive upper bound, in nanoseconds, of latency bucket {@code bucket}. */
+  public static long bucketUpperBoundNanos(int bucket) {
+    return bucket >= MethodMetrics.BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+  }
+
+  /**
+   * An upper bound on the latency of the fastest {@code quantile} (between 0 and 1) of calls,
+   * accurate to within a factor of two, or {@code 0} if no calls were recorded.
+   */
+  public long quantileUpperBoundNanos(double quantile) {
+    long total = 0;
+    for (long count : buckets) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(quantile * total);
+    long seen = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      seen += buckets[i];
+      if (seen >= rank && seen > 0) {
+        return bucketUpperBoundNanos(i);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the stats of the calls counted in either this or {@code other}.
+   *
+   * @throws IllegalArgumentException if {@code other} is the stats of a different method
+   */
+  public MethodStats merge(MethodStats other) {
+    if (!signature.equals(other.signature)) {
+      throw new IllegalArgumentException(
+          String.format("Can't merge the stats of %s into %s", other.signature, signature));
+    }
+    long[] merged = new long[buckets.length];
+    for (int i = 0; i < merged.length; i++) {
+      merged[i] = buckets[i] + other.buckets[i];
+    }
+    return new MethodStats(signature, calls + other.calls, sampled + other.sampled,
+        errors + other.errors, totalNanos + other.totalNanos, merged);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof MethodStats)) {
+      return false;
+    }
+    MethodStats that = (MethodStats) obj;
+    return signature.equals(that.signature)
+        && calls == that.calls
+        && sampled == that.sampled
+        && errors == that.errors
+        && totalNanos == that.totalNanos
+        && Arrays.equals(buckets, that.buckets);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * signature.hashCode() + Arrays.hashCode(buckets);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d calls, %d errors, mean %.0fns, p50 < %dns, p99 < %dns",
+        signature,
+        calls,
+        errors,
+        meanNanos(),
+        quantileUpperBoundNanos(0.5),
+        quantileUpperBoundNanos(0.99));
+  }
+}
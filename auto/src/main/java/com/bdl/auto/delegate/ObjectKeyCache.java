@@ -0,0 +1,79 @@
+package com.bdl.auto.delegate;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link MemoCache} keyed on objects, for methods whose arguments do not fit in a {@code long}.
+ * Methods with several arguments are keyed on an array of them, see {@link #key(Object...)}. Keys
+ * that are {@code Object} arrays are hashed and compared element by element.
+ *
+ * @author Ben Leitner
+ */
+public final class ObjectKeyCache<V> extends MemoCache {
+
+  private static final Object NULL_KEY = new Object();
+
+  private final AtomicReferenceArray<Entry<V>> slots;
+
+  public ObjectKeyCache(String signature, int maxSize, long expireAfterWriteMillis) {
+    super(signature, maxSize, expireAfterWriteMillis);
+    slots = new AtomicReferenceArray<>(mask + 1);
+  }
+
+  /**
+   * Returns a key made of all of {@code arguments}, compared element by element. The array itself
+   * is the key, so nothing is allocated beyond the varargs array.
+   */
+  public static Object key(Object... arguments) {
+    return arguments;
+  }
+
+  /** Returns the result cached for {@code key}, or {@code null} if there is none. */
+  public V get(Object key) {
+    key = key == null ? NULL_KEY : key;
+    Entry<V> entry = slots.get(spread(hash(key)) & mask);
+    if (entry != null && matches(entry.key, key) && isLive(entry.writeTime)) {
+      recordHit();
+      return entry.value;
+    }
+    recordMiss();
+    return null;
+  }
+
+  /** Caches {@code value} for {@code key}, replacing whatever was cached in its slot. */
+  public void put(Object key, V value) {
+    if (value == null) {
+      return;
+    }
+    key = key == null ? NULL_KEY : key;
+    Entry<V> previous = slots.getAndSet(
+        spread(hash(key)) & mask, new Entry<>(key, value, writeTime()));
+    if (previous != null && (!matches(previous.key, key) || !isLive(previous.writeTime))) {
+      recordEviction();
+    }
+  }
+
+  private static int hash(Object key) {
+    return key instanceof Object[] ? Arrays.hashCode((Object[]) key) : key.hashCode();
+  }
+
+  private static boolean matches(Object cached, Object key) {
+    if (key instanceof Object[]) {
+      return cached instanceof Object[] && Arrays.equals((Object[]) cached, (Object[]) key);
+    }
+    return cached.equals(key);
+  }
+
+  private static final class Entry<V> {
+    final Object key;
+    final V value;
+    final long writeTime;
+
+    Entry(Object key, V value, long writeTime) {
+      this.key = key;
+      this.value = value;
+      this.writeTime = writeTime;
+    }
+  }
+}
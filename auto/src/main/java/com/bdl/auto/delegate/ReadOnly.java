@@ -0,0 +1,19 @@
+package com.bdl.auto.delegate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the annotated method doesn't change the state of the delegate, so a delegate
+ * generated with {@link AutoDelegate#threadSafe} may run it alongside other read-only calls. The
+ * method must be redeclared as abstract in the class annotated with {@link AutoDelegate}.
+ *
+ * <p>Read-only calls hold the read lock, so they never run alongside a call that isn't read-only.
+ *
+ * @author Ben Leitner
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface ReadOnly {}
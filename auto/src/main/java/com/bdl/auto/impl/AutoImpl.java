@@ -53,4 +53,12 @@ public @interface AutoImpl {
    * defaults to {@link #value()}.
    */
   ImplOption objectImpl() default ImplOption.USE_PARENT;
+
+  /**
+   * Whether the generated class should be a singleton, with a private constructor and a shared
+   * {@code INSTANCE} (or an {@code instance()} factory for generic types) in place of the public
+   * constructors. Only allowed on interfaces and on abstract classes with no fields and only no-arg
+   * constructors, and the generated class can no longer be extended.
+   */
+  boolean singleton() default false;
 }
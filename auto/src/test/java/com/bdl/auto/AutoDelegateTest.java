@@ -1,26 +1,56 @@
 package com.bdl.auto;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.testing.compile.CompilationRule;
 
 import com.bdl.annotation.processing.model.ClassMetadata;
 import com.bdl.auto.delegate.AutoDelegate;
+import com.bdl.auto.delegate.Batch;
+import com.bdl.auto.delegate.BulkheadFullException;
+import com.bdl.auto.delegate.BulkheadScope;
+import com.bdl.auto.delegate.CallLog;
+import com.bdl.auto.delegate.CallRecorder;
+import com.bdl.auto.delegate.ConcurrencyLimit;
+import com.bdl.auto.delegate.ConcurrencyLimiter;
+import com.bdl.auto.delegate.DelegateInterceptor;
+import com.bdl.auto.delegate.DelegateStats;
+import com.bdl.auto.delegate.MemoStats;
+import com.bdl.auto.delegate.Memoize;
+import com.bdl.auto.delegate.MethodStats;
+import com.bdl.auto.delegate.ReadOnly;
 import com.bdl.auto.delegate.processor.AutoDelegateWriter;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runners.JUnit4;
 
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 import javax.lang.model.element.TypeElement;
@@ -32,6 +62,9 @@ public class AutoDelegateTest {
   @Rule
   public final CompilationRule compilation = new CompilationRule();
 
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private Elements elements;
 
   @Before
@@ -69,6 +102,309 @@ public class AutoDelegateTest {
     verify(mock).foo();
   }
 
+  @Test
+  public void testMetrics() {
+    TestInterface mock = mock(TestInterface.class);
+    doThrow(new IllegalStateException()).when(mock).foo();
+    Auto_AutoDelegateTest_MeteredTestInterface_Delegate impl =
+        new Auto_AutoDelegateTest_MeteredTestInterface_Delegate(mock);
+
+    impl.bar(1);
+    impl.bar(2);
+    try {
+      impl.foo();
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+
+    DelegateStats stats = impl.snapshot();
+    assertThat(stats.method("bar(int)").calls()).isEqualTo(2L);
+    assertThat(stats.method("bar(int)").errors()).isEqualTo(0L);
+    assertThat(stats.method("foo()").calls()).isEqualTo(1L);
+    assertThat(stats.method("foo()").errors()).isEqualTo(1L);
+  }
+
+  @Test
+  public void testSampledMetrics() {
+    TestInterface mock = mock(TestInterface.class);
+    Auto_AutoDelegateTest_SampledTestInterface_Delegate impl =
+        new Auto_AutoDelegateTest_SampledTestInterface_Delegate(mock);
+
+    for (int i = 0; i < 1000; i++) {
+      impl.bar(i);
+    }
+
+    MethodStats bar = impl.snapshot().method("bar(int)");
+    assertThat(bar.calls()).isEqualTo(1000L);
+    assertThat(bar.sampledCalls()).isLessThan(1000L);
+    impl.resetStats();
+    assertThat(impl.snapshot().method("bar(int)").calls()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testMemoize() {
+    TestInterface mock = mock(TestInterface.class);
+    when(mock.bar(anyInt())).thenReturn(7);
+    Auto_AutoDelegateTest_MemoizedTestInterface_Delegate impl =
+        new Auto_AutoDelegateTest_MemoizedTestInterface_Delegate(mock);
+
+    assertThat(impl.bar(1)).isEqualTo(7);
+    assertThat(impl.bar(1)).isEqualTo(7);
+    assertThat(impl.bar(2)).isEqualTo(7);
+    verify(mock, times(1)).bar(1);
+    verify(mock, times(1)).bar(2);
+
+    MemoStats stats = impl.memoStats().get("bar(int)");
+    assertThat(stats.hits()).isEqualTo(1L);
+    assertThat(stats.misses()).isEqualTo(2L);
+  }
+
+  @Test
+  public void testThreadSafe() throws Exception {
+    final Pair pair = new Pair();
+    final TestInterface impl = new Auto_AutoDelegateTest_ThreadSafeTestInterface_Delegate(pair);
+    final int callsPerThread = 10000;
+    final boolean[] torn = new boolean[1];
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int call = 0; call < callsPerThread; call++) {
+            impl.foo();
+            if (impl.bar(0) != 0) {
+              torn[0] = true;
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(pair.first).isEqualTo(threads.length * callsPerThread);
+    assertThat(torn[0]).isFalse();
+  }
+
+  @Test
+  public void testLazy() {
+    final TestInterface mock = mock(TestInterface.class);
+    when(mock.bar(anyInt())).thenReturn(5);
+    final AtomicInteger created = new AtomicInteger();
+    Auto_AutoDelegateTest_LazyTestInterface_Delegate impl =
+        new Auto_AutoDelegateTest_LazyTestInterface_Delegate(new Supplier<TestInterface>() {
+          @Override
+          public TestInterface get() {
+            created.incrementAndGet();
+            return mock;
+          }
+        });
+
+    assertThat(impl.isDelegateInitialized()).isFalse();
+    assertThat(created.get()).isEqualTo(0);
+    assertThat(impl.bar(1)).isEqualTo(5);
+    impl.foo();
+    assertThat(impl.isDelegateInitialized()).isTrue();
+    assertThat(created.get()).isEqualTo(1);
+    verify(mock).foo();
+  }
+
+  @Test
+  public void testSwappable() {
+    TestInterface first = mock(TestInterface.class);
+    TestInterface second = mock(TestInterface.class);
+    when(first.bar(anyInt())).thenReturn(1);
+    when(second.bar(anyInt())).thenReturn(2);
+    Auto_AutoDelegateTest_SwappableTestInterface_Delegate impl =
+        new Auto_AutoDelegateTest_SwappableTestInterface_Delegate(first);
+
+    assertThat(impl.bar(0)).isEqualTo(1);
+    assertThat(impl.compareAndSwap(second, first)).isFalse();
+    assertThat(impl.swap(second)).isSameAs(first);
+    assertThat(impl.bar(0)).isEqualTo(2);
+    impl.foo();
+    verify(first, never()).foo();
+    verify(second).foo();
+  }
+
+  @Test
+  public void testDrainable() throws Exception {
+    TestInterface first = mock(TestInterface.class);
+    TestInterface second = mock(TestInterface.class);
+    when(first.bar(anyInt())).thenReturn(1);
+    when(second.bar(anyInt())).thenReturn(2);
+    Auto_AutoDelegateTest_DrainableTestInterface_Delegate impl =
+        new Auto_AutoDelegateTest_DrainableTestInterface_Delegate(first);
+
+    assertThat(impl.bar(0)).isEqualTo(1);
+    assertThat(impl.swapAndDrain(second, 1, TimeUnit.SECONDS)).isSameAs(first);
+    assertThat(impl.bar(0)).isEqualTo(2);
+  }
+
+  @Test
+  public void testIntercepted() {
+    TestInterface mock = mock(TestInterface.class);
+    when(mock.bar(anyInt())).thenReturn(4);
+    IllegalStateException error = new IllegalStateException();
+    doThrow(error).when(mock).foo();
+    final List<String> calls = new ArrayList<>();
+    final List<Throwable> errors = new ArrayList<>();
+    TestInterface impl = new Auto_AutoDelegateTest_InterceptedTestInterface_Delegate(mock,
+        new DelegateInterceptor() {
+          @Override
+          public void before(int methodId) {
+            calls.add("before " + methodId);
+          }
+
+          @Override
+          public void after(int methodId, long nanos, Throwable error) {
+            calls.add("after " + methodId);
+            errors.add(error);
+          }
+        });
+
+    assertThat(impl.bar(3)).isEqualTo(4);
+    try {
+      impl.foo();
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+
+    int bar = Auto_AutoDelegateTest_InterceptedTestInterface_Delegate.ID_BAR;
+    int foo = Auto_AutoDelegateTest_InterceptedTestInterface_Delegate.ID_FOO;
+    assertThat(calls)
+        .containsExactly("before " + bar, "after " + bar, "before " + foo, "after " + foo)
+        .inOrder();
+    assertThat(errors).containsExactly(null, error).inOrder();
+    assertThat(Auto_AutoDelegateTest_InterceptedTestInterface_Delegate.METHODS.get(bar).signature())
+        .isEqualTo("bar(int)");
+  }
+
+  @Test
+  public void testBulkhead() {
+    final List<TestInterface> self = new ArrayList<>();
+    final List<String> calls = new ArrayList<>();
+    TestInterface reentrant = new TestInterface() {
+      @Override
+      public void foo() {
+        calls.add("bar: " + self.get(0).bar(1));
+        try {
+          self.get(0).foo();
+          calls.add("foo");
+        } catch (BulkheadFullException ex) {
+          calls.add("rejected at " + ex.limit());
+        }
+      }
+
+      @Override
+      public int bar(int baz) {
+        return baz * 2;
+      }
+    };
+    Auto_AutoDelegateTest_BulkheadTestInterface_Delegate impl =
+        new Auto_AutoDelegateTest_BulkheadTestInterface_Delegate(
+            reentrant, ConcurrencyLimit.fixed(1));
+    self.add(impl);
+
+    // Each method has its own limit, so only the nested call to foo() is rejected.
+    impl.foo();
+
+    assertThat(calls).containsExactly("bar: 2", "rejected at 1").inOrder();
+    ConcurrencyLimiter foo =
+        impl.concurrencyLimiter(Auto_AutoDelegateTest_BulkheadTestInterface_Delegate.ID_FOO);
+    assertThat(foo.name()).isEqualTo("foo()");
+    assertThat(foo.rejections()).isEqualTo(1);
+    assertThat(foo.inFlight()).isEqualTo(0);
+    assertThat(impl.concurrencyLimiter(
+        Auto_AutoDelegateTest_BulkheadTestInterface_Delegate.ID_BAR).rejections()).isEqualTo(0);
+  }
+
+  @Test
+  public void testRecorded() throws Exception {
+    TestInterface mock = mock(TestInterface.class);
+    when(mock.bar(anyInt())).thenReturn(4);
+    Path file = temporaryFolder.newFile().toPath();
+    try (CallRecorder recorder = CallRecorder.create(file, 16, 64)) {
+      TestInterface impl = new Auto_AutoDelegateTest_RecordedTestInterface_Delegate(mock, recorder);
+      assertThat(impl.bar(3)).isEqualTo(4);
+      impl.foo();
+    }
+
+    CallLog log = CallLog.read(file);
+    assertThat(log.calls()).hasSize(2);
+    CallLog.RecordedCall bar = log.calls().get(0);
+    assertThat(bar.methodId())
+        .isEqualTo(Auto_AutoDelegateTest_RecordedTestInterface_Delegate.ID_BAR);
+    assertThat(bar.args()).asList().containsExactly(3);
+    assertThat(log.calls().get(1).methodId())
+        .isEqualTo(Auto_AutoDelegateTest_RecordedTestInterface_Delegate.ID_FOO);
+
+    TestInterface replayed = mock(TestInterface.class);
+    doThrow(new IllegalStateException()).when(replayed).foo();
+    assertThat(new Auto_AutoDelegateTest_RecordedTestInterface_Replayer()
+        .replay(log, replayed, false)).isEqualTo(1);
+    verify(replayed).bar(3);
+    verify(replayed).foo();
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    Lookup mock = mock(Lookup.class);
+    when(mock.name(3)).thenReturn("three");
+    IllegalStateException error = new IllegalStateException();
+    doThrow(error).when(mock).clear();
+    Auto_AutoDelegateTest_AsyncLookup_Async async = new Auto_AutoDelegateTest_AsyncLookup_Async(
+        new Auto_AutoDelegateTest_AsyncLookup_Delegate(mock), MoreExecutors.directExecutor());
+
+    assertThat(async.name(3).get()).isEqualTo("three");
+    try {
+      async.clear().get();
+      fail();
+    } catch (ExecutionException ex) {
+      assertThat(ex.getCause()).isSameAs(error);
+    }
+    for (Method method : Auto_AutoDelegateTest_AsyncLookup_Async.class.getDeclaredMethods()) {
+      assertThat(method.getName()).isNotEqualTo("of");
+    }
+  }
+
+  @Test
+  public void testBatch() {
+    RecordingStore store = new RecordingStore();
+    Auto_AutoDelegateTest_BatchedStore_Delegate impl =
+        new Auto_AutoDelegateTest_BatchedStore_Delegate(store);
+
+    impl.add(1);
+    impl.add(2);
+    assertThat(store.batches).isEmpty();
+    impl.add(3);
+    impl.add(4);
+    impl.put("a", 1L);
+    impl.put("a", 2L);
+    impl.put("b", 3L);
+    assertThat(store.batches).containsExactly(ImmutableList.of(1, 2, 3));
+
+    impl.flushBatches();
+    assertThat(store.batches).containsExactly(
+        ImmutableList.of(1, 2, 3), ImmutableList.of(4), ImmutableMap.of("a", 2L, "b", 3L))
+        .inOrder();
+
+    impl.add(5);
+    impl.shutdownBatches();
+    assertThat(store.batches).hasSize(4);
+    assertThat(store.batches.get(3)).isEqualTo(ImmutableList.of(5));
+    try {
+      impl.add(6);
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
   interface TestInterface {
     void foo();
 
@@ -88,4 +424,190 @@ public class AutoDelegateTest {
       return baz + 1;
     }
   }
+
+  @AutoDelegate(metrics = true)
+  abstract static class MeteredTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected MeteredTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  @AutoDelegate(metrics = true, sampleEvery = 16)
+  abstract static class SampledTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected SampledTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  @AutoDelegate
+  abstract static class MemoizedTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected MemoizedTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+
+    @Memoize(maxSize = 16)
+    @Override
+    public abstract int bar(int baz);
+  }
+
+  @AutoDelegate(threadSafe = true)
+  abstract static class ThreadSafeTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected ThreadSafeTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+
+    @ReadOnly
+    @Override
+    public abstract int bar(int baz);
+  }
+
+  @AutoDelegate(lazy = true)
+  abstract static class LazyTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected LazyTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  @AutoDelegate(swappable = true)
+  abstract static class SwappableTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected SwappableTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  @AutoDelegate(swappable = true, drainable = true)
+  abstract static class DrainableTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected DrainableTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  @AutoDelegate(intercepted = true)
+  abstract static class InterceptedTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected InterceptedTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  @AutoDelegate(bulkhead = BulkheadScope.PER_METHOD)
+  abstract static class BulkheadTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected BulkheadTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  @AutoDelegate(recorded = true)
+  abstract static class RecordedTestInterface implements TestInterface {
+    protected final TestInterface delegate;
+
+    protected RecordedTestInterface(TestInterface delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  interface Lookup {
+    String name(int id);
+
+    void clear();
+
+    static String of(int id) {
+      return "#" + id;
+    }
+  }
+
+  @AutoDelegate(async = true)
+  abstract static class AsyncLookup implements Lookup {
+    protected final Lookup delegate;
+
+    protected AsyncLookup(Lookup delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  interface Store {
+    void add(int value);
+
+    void addAll(List<Integer> values);
+
+    void put(String key, long value);
+
+    void putAll(Map<String, Long> values);
+  }
+
+  @AutoDelegate
+  abstract static class BatchedStore implements Store {
+    protected final Store delegate;
+
+    protected BatchedStore(Store delegate) {
+      this.delegate = delegate;
+    }
+
+    @Batch(value = "addAll", maxSize = 3)
+    @Override
+    public abstract void add(int value);
+
+    @Batch("putAll")
+    @Override
+    public abstract void put(String key, long value);
+  }
+
+  /** Keeps a copy of each batch it is sent. */
+  static class RecordingStore implements Store {
+    final List<Object> batches = new ArrayList<>();
+
+    @Override
+    public void add(int value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addAll(List<Integer> values) {
+      batches.add(ImmutableList.copyOf(values));
+    }
+
+    @Override
+    public void put(String key, long value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<String, Long> values) {
+      batches.add(ImmutableMap.copyOf(values));
+    }
+  }
+
+  /** Two counters that foo() moves together, without any synchronization of its own. */
+  static class Pair implements TestInterface {
+    int first;
+    int second;
+
+    @Override
+    public void foo() {
+      first++;
+      second++;
+    }
+
+    @Override
+    public int bar(int baz) {
+      return first - second + baz;
+    }
+  }
 }
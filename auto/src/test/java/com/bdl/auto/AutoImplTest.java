@@ -1,10 +1,12 @@
 package com.bdl.auto;
 
 import com.bdl.auto.impl.AutoImpl;
+import com.bdl.auto.impl.ImplOption;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 
 @RunWith(JUnit4.class)
@@ -28,6 +30,40 @@ public class AutoImplTest {
     }
   }
 
+  @Test
+  public void testSingleton() {
+    assertThat(Auto_AutoImplTest_QuietListener_Impl.INSTANCE)
+        .isSameAs(Auto_AutoImplTest_QuietListener_Impl.INSTANCE);
+    assertThat(Auto_AutoImplTest_QuietListener_Impl.INSTANCE.isNoOp()).isTrue();
+    assertThat(Auto_AutoImplTest_QuietListener_Impl.INSTANCE.onEvent("event")).isFalse();
+  }
+
+  @Test
+  public void testGenericSingleton() {
+    Auto_AutoImplTest_GenericListener_Impl<String> strings =
+        Auto_AutoImplTest_GenericListener_Impl.instance();
+    Auto_AutoImplTest_GenericListener_Impl<Integer> integers =
+        Auto_AutoImplTest_GenericListener_Impl.instance();
+
+    assertThat((Object) strings).isSameAs(integers);
+    assertThat(strings.isNoOp()).isFalse();
+    assertThat(strings.onEvent("event")).isNull();
+  }
+
+  @AutoImpl(value = ImplOption.RETURN_DEFAULT_VALUE, singleton = true)
+  interface QuietListener {
+    boolean onEvent(String event);
+  }
+
+  @AutoImpl(value = ImplOption.RETURN_DEFAULT_VALUE, singleton = true)
+  abstract static class GenericListener<T> {
+    abstract T onEvent(T event);
+
+    void onDone() {
+      System.out.println("done");
+    }
+  }
+
   @AutoImpl
   interface TestInterface {
     int foo();
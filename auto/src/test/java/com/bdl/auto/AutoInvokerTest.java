@@ -0,0 +1,111 @@
+package com.bdl.auto;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.bdl.auto.delegate.AutoInvoker;
+import com.bdl.auto.delegate.MethodInvoker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AutoInvokerTest {
+
+  @Test
+  public void testInvoke() throws Exception {
+    MethodInvoker<Store<String>> invoker = new Auto_AutoInvokerTest_Store_Invoker<>();
+    RecordingStore store = new RecordingStore();
+
+    assertThat(invoker.invoke(store, Auto_AutoInvokerTest_Store_Invoker.ID_PUT,
+        new Object[] {"key", 3})).isNull();
+    assertThat(invoker.invoke(store, Auto_AutoInvokerTest_Store_Invoker.ID_SIZE, new Object[0]))
+        .isEqualTo(1);
+    assertThat(invoker.invoke(store, Auto_AutoInvokerTest_Store_Invoker.ID_SIZE_2,
+        new Object[] {"k"})).isEqualTo(1);
+    assertThat(store.calls).containsExactly("put(key, 3)").inOrder();
+  }
+
+  @Test
+  public void testMethodId() {
+    MethodInvoker<Store<String>> invoker = new Auto_AutoInvokerTest_Store_Invoker<>();
+
+    assertThat(invoker.methodId("put")).isEqualTo(Auto_AutoInvokerTest_Store_Invoker.ID_PUT);
+    assertThat(invoker.methodId("put(T, int)"))
+        .isEqualTo(Auto_AutoInvokerTest_Store_Invoker.ID_PUT);
+    assertThat(invoker.methodId("size(String)"))
+        .isEqualTo(Auto_AutoInvokerTest_Store_Invoker.ID_SIZE_2);
+    // Overloaded, so only found by signature.
+    assertThat(invoker.methodId("size")).isEqualTo(-1);
+    assertThat(invoker.methodId("remove")).isEqualTo(-1);
+  }
+
+  @Test
+  public void testExceptionsPropagate() throws Exception {
+    MethodInvoker<Store<String>> invoker = new Auto_AutoInvokerTest_Store_Invoker<>();
+    RecordingStore store = new RecordingStore();
+    try {
+      invoker.invoke(store, Auto_AutoInvokerTest_Store_Invoker.ID_FLUSH, new Object[0]);
+      fail();
+    } catch (IOException ex) {
+      assertThat(ex).hasMessage("closed");
+    }
+  }
+
+  @Test
+  public void testUnknownId() throws Exception {
+    MethodInvoker<Store<String>> invoker = new Auto_AutoInvokerTest_Store_Invoker<>();
+    try {
+      invoker.invoke(new RecordingStore(), 42, new Object[0]);
+      fail();
+    } catch (IllegalArgumentException ex) {
+      assertThat(ex).hasMessage("No method with ID 42");
+    }
+  }
+
+  @AutoInvoker
+  interface Store<T> {
+    void flush() throws IOException;
+
+    void put(T key, int value);
+
+    int size();
+
+    int size(String prefix);
+  }
+
+  private static class RecordingStore implements Store<String> {
+    private final List<String> calls = new ArrayList<>();
+
+    @Override
+    public void flush() throws IOException {
+      throw new IOException("closed");
+    }
+
+    @Override
+    public void put(String key, int value) {
+      calls.add("put(" + key + ", " + value + ")");
+    }
+
+    @Override
+    public int size() {
+      return calls.size();
+    }
+
+    @Override
+    public int size(String prefix) {
+      int size = 0;
+      for (String call : calls) {
+        if (call.startsWith("put(" + prefix)) {
+          size++;
+        }
+      }
+      return size;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.bdl.auto;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.bdl.auto.delegate.AutoMulticast;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+
+@RunWith(JUnit4.class)
+public class AutoMulticastTest {
+
+  @Test
+  public void testMulticast() {
+    TestListener first = mock(TestListener.class);
+    TestListener second = mock(TestListener.class);
+    Auto_AutoMulticastTest_TestListener_Multicaster multicaster =
+        new Auto_AutoMulticastTest_TestListener_Multicaster();
+    multicaster.addListener(first);
+    multicaster.addListener(second);
+
+    multicaster.onEvent("started", 1);
+    assertThat(multicaster.removeListener(first)).isTrue();
+    multicaster.onDone();
+
+    InOrder order = inOrder(first, second);
+    order.verify(first).onEvent("started", 1);
+    order.verify(second).onEvent("started", 1);
+    verify(first, never()).onDone();
+    verify(second).onDone();
+    assertThat(multicaster.listenerCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFirstFailureStopsDispatch() {
+    TestListener first = mock(TestListener.class);
+    TestListener second = mock(TestListener.class);
+    doThrow(new IllegalStateException()).when(first).onDone();
+    Auto_AutoMulticastTest_TestListener_Multicaster multicaster =
+        new Auto_AutoMulticastTest_TestListener_Multicaster();
+    multicaster.addListener(first);
+    multicaster.addListener(second);
+
+    try {
+      multicaster.onDone();
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+    verify(second, never()).onDone();
+  }
+
+  @Test
+  public void testIsolatedExceptions() {
+    IsolatedListener first = mock(IsolatedListener.class);
+    IsolatedListener second = mock(IsolatedListener.class);
+    IsolatedListener third = mock(IsolatedListener.class);
+    IllegalStateException firstError = new IllegalStateException();
+    IllegalArgumentException secondError = new IllegalArgumentException();
+    doThrow(firstError).when(first).onDone();
+    doThrow(secondError).when(second).onDone();
+    Auto_AutoMulticastTest_IsolatedListener_Multicaster multicaster =
+        new Auto_AutoMulticastTest_IsolatedListener_Multicaster();
+    multicaster.addListener(first);
+    multicaster.addListener(second);
+    multicaster.addListener(third);
+
+    try {
+      multicaster.onDone();
+      fail();
+    } catch (IllegalStateException ex) {
+      assertThat(ex).isSameAs(firstError);
+      assertThat(ex.getSuppressed()).asList().containsExactly(secondError);
+    }
+    verify(third).onDone();
+  }
+
+  @Test
+  public void testParametersNamedLikeLocals() {
+    ClashingListener first = mock(ClashingListener.class);
+    ClashingListener second = mock(ClashingListener.class);
+    IllegalStateException error = new IllegalStateException();
+    Exception ex = new Exception();
+    doThrow(error).when(first).onError(ex);
+    Auto_AutoMulticastTest_ClashingListener_Multicaster multicaster =
+        new Auto_AutoMulticastTest_ClashingListener_Multicaster();
+    multicaster.addListener(first);
+    multicaster.addListener(second);
+
+    multicaster.onEvent("listener", "failure", "listeners");
+    try {
+      multicaster.onError(ex);
+      fail();
+    } catch (IllegalStateException thrown) {
+      assertThat(thrown).isSameAs(error);
+    }
+    verify(first).onEvent("listener", "failure", "listeners");
+    verify(second).onEvent("listener", "failure", "listeners");
+    verify(second).onError(ex);
+  }
+
+  @AutoMulticast
+  interface TestListener {
+    void onEvent(String name, int count);
+
+    void onDone();
+  }
+
+  @AutoMulticast(isolateExceptions = true)
+  interface IsolatedListener {
+    void onDone();
+  }
+
+  @AutoMulticast(isolateExceptions = true)
+  interface ClashingListener {
+    void onError(Exception ex);
+
+    void onEvent(Object listener, Object failure, Object listeners);
+  }
+}
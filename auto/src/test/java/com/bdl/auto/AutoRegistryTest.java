@@ -0,0 +1,64 @@
+package com.bdl.auto;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain AutoRegistry} class, against the index written for this module's
+ * tests.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class AutoRegistryTest {
+
+  @Test
+  public void testImplFactory() {
+    AutoImplTest.TestInterface impl =
+        AutoRegistry.implFactory(AutoImplTest.TestInterface.class).create();
+
+    assertThat(impl).isInstanceOf(Auto_AutoImplTest_TestInterface_Impl.class);
+    assertThat(AutoRegistry.implFactory(AutoImplTest.TestInterface.class).create())
+        .isNotSameAs(impl);
+  }
+
+  @Test
+  public void testSingletonImplFactory() {
+    assertThat(AutoRegistry.implFactory(AutoImplTest.QuietListener.class).create())
+        .isSameAs(Auto_AutoImplTest_QuietListener_Impl.INSTANCE);
+  }
+
+  @Test
+  public void testDelegateFactory() {
+    AutoDelegateTest.TestInterface mock = mock(AutoDelegateTest.TestInterface.class);
+    AutoRegistry.DelegateFactory<
+            AutoDelegateTest.DelegatingTestInterface, AutoDelegateTest.TestInterface> factory =
+        AutoRegistry.delegateFactory(AutoDelegateTest.DelegatingTestInterface.class);
+
+    AutoDelegateTest.DelegatingTestInterface impl = factory.create(mock);
+    assertThat(impl.bar(3)).isEqualTo(4);
+    impl.foo();
+    verify(mock).foo();
+  }
+
+  @Test
+  public void testOnlyDelegatesTakingTheDelegateAloneAreRegistered() {
+    AutoRegistry registry = AutoRegistry.load(AutoRegistryTest.class.getClassLoader());
+
+    assertThat(registry.delegateTypes()).contains(AutoDelegateTest.DelegatingTestInterface.class);
+    assertThat(registry.delegateTypes())
+        .doesNotContain(AutoDelegateTest.InterceptedTestInterface.class);
+    try {
+      registry.findDelegateFactory(AutoDelegateTest.LazyTestInterface.class);
+      fail();
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+}
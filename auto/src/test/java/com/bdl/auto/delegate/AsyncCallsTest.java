@@ -0,0 +1,73 @@
+package com.bdl.auto.delegate;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain AsyncCalls} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class AsyncCallsTest {
+
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  @Test
+  public void testSubmitCompletesWithResult() throws Exception {
+    CompletableFuture<String> future = AsyncCalls.submit(DIRECT, new Callable<String>() {
+      @Override
+      public String call() {
+        return "done";
+      }
+    });
+
+    assertThat(future.get()).isEqualTo("done");
+  }
+
+  @Test
+  public void testSubmitCompletesWithException() throws Exception {
+    final IOException thrown = new IOException("nope");
+    CompletableFuture<String> future = AsyncCalls.submit(DIRECT, new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        throw thrown;
+      }
+    });
+
+    try {
+      future.get();
+      fail("Expected an ExecutionException");
+    } catch (ExecutionException ex) {
+      assertThat(ex.getCause()).isSameAs(thrown);
+    }
+  }
+
+  @Test
+  public void testDefaultExecutor() throws Exception {
+    CompletableFuture<Thread> future =
+        AsyncCalls.submit(AsyncCalls.defaultExecutor(), new Callable<Thread>() {
+          @Override
+          public Thread call() {
+            return Thread.currentThread();
+          }
+        });
+
+    assertThat(future.get()).isNotSameAs(Thread.currentThread());
+    assertThat(AsyncCalls.defaultExecutor()).isSameAs(AsyncCalls.defaultExecutor());
+  }
+}
@@ -0,0 +1,100 @@
+package com.bdl.auto.delegate;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain Batcher} classes.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class BatcherTest {
+
+  private final List<Object> batches = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void testDeliversWhenFull() {
+    ListBatcher<String> batcher = listBatcher(3, 0);
+    batcher.add("a");
+    batcher.add("b");
+    assertThat(batches).isEmpty();
+
+    batcher.add("c");
+    batcher.add("d");
+    assertThat(batches).containsExactly(ImmutableList.of("a", "b", "c"));
+
+    batcher.flush();
+    batcher.flush();
+    assertThat(batches)
+        .containsExactly(ImmutableList.of("a", "b", "c"), ImmutableList.of("d"))
+        .inOrder();
+  }
+
+  @Test
+  public void testDeliversAfterDelay() throws Exception {
+    final CountDownLatch delivered = new CountDownLatch(1);
+    ListBatcher<String> batcher = new ListBatcher<String>(100, 5) {
+      @Override
+      protected void deliver(List<String> batch) {
+        batches.add(batch);
+        delivered.countDown();
+      }
+    };
+    batcher.add("a");
+
+    assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(batches).containsExactly(ImmutableList.of("a"));
+  }
+
+  @Test
+  public void testMapBatcherKeepsLastValue() {
+    MapBatcher<String, Integer> batcher = new MapBatcher<String, Integer>(10, 0) {
+      @Override
+      protected void deliver(Map<String, Integer> batch) {
+        batches.add(batch);
+      }
+    };
+    batcher.put("a", 1);
+    batcher.put("b", 2);
+    batcher.put("a", 3);
+    batcher.flush();
+
+    assertThat(batches).containsExactly(ImmutableMap.of("a", 3, "b", 2));
+  }
+
+  @Test
+  public void testShutdownDrainsAndRejects() {
+    ListBatcher<String> batcher = listBatcher(10, 0);
+    batcher.add("a");
+    batcher.shutdown();
+    assertThat(batches).containsExactly(ImmutableList.of("a"));
+
+    try {
+      batcher.add("b");
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
+  private ListBatcher<String> listBatcher(int maxSize, long maxDelayMillis) {
+    return new ListBatcher<String>(maxSize, maxDelayMillis) {
+      @Override
+      protected void deliver(List<String> batch) {
+        batches.add(batch);
+      }
+    };
+  }
+}
@@ -0,0 +1,130 @@
+package com.bdl.auto.delegate;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain CallRecorder} and {@linkplain CallLog} classes.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class CallRecorderTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testArguments() throws Exception {
+    Path file = temporaryFolder.newFile().toPath();
+    try (CallRecorder recorder = CallRecorder.create(file, 4, 128)) {
+      long cursor = recorder.begin(7, System.nanoTime(), 1234, 10);
+      cursor = recorder.putBoolean(cursor, true);
+      cursor = recorder.putByte(cursor, (byte) 1);
+      cursor = recorder.putChar(cursor, 'c');
+      cursor = recorder.putShort(cursor, (short) 2);
+      cursor = recorder.putInt(cursor, 3);
+      cursor = recorder.putLong(cursor, 4L);
+      cursor = recorder.putFloat(cursor, 5f);
+      cursor = recorder.putDouble(cursor, 6d);
+      cursor = recorder.putString(cursor, "seven");
+      cursor = recorder.putObject(cursor, new ArrayList<String>());
+      recorder.commit(cursor);
+    }
+
+    CallLog.RecordedCall call = CallLog.read(file).calls().get(0);
+    assertThat(call.methodId()).isEqualTo(7);
+    assertThat(call.latencyNanos()).isEqualTo(1234);
+    assertThat(call.isComplete()).isTrue();
+    assertThat(call.args()).asList()
+        .containsExactly(true, (byte) 1, 'c', (short) 2, 3, 4L, 5f, 6d, "seven", null)
+        .inOrder();
+  }
+
+  @Test
+  public void testArgumentsThatDoNotFit() throws Exception {
+    Path file = temporaryFolder.newFile().toPath();
+    try (CallRecorder recorder = CallRecorder.create(file, 2, 64)) {
+      // 32 bytes of arguments fit, so 11 characters of the string and nothing after it.
+      long cursor = recorder.begin(0, System.nanoTime(), 0, 3);
+      cursor = recorder.putInt(cursor, 1);
+      cursor = recorder.putString(cursor, "a string too long to fit");
+      cursor = recorder.putInt(cursor, 2);
+      recorder.commit(cursor);
+      // A long needs 9 bytes, so only three fit.
+      cursor = recorder.begin(1, System.nanoTime(), 0, 4);
+      for (long i = 0; i < 4; i++) {
+        cursor = recorder.putLong(cursor, i);
+      }
+      recorder.commit(cursor);
+    }
+
+    List<CallLog.RecordedCall> calls = CallLog.read(file).calls();
+    assertThat(calls.get(0).isComplete()).isFalse();
+    assertThat(calls.get(0).args()).asList().containsExactly(1, "a string to", null).inOrder();
+    assertThat(calls.get(1).isComplete()).isFalse();
+    assertThat(calls.get(1).args()).asList().containsExactly(0L, 1L, 2L, null).inOrder();
+  }
+
+  @Test
+  public void testRingKeepsLatestCalls() throws Exception {
+    Path file = temporaryFolder.newFile().toPath();
+    try (CallRecorder recorder = CallRecorder.create(file, 3, 64)) {
+      for (int i = 0; i < 5; i++) {
+        recorder.commit(recorder.begin(i, System.nanoTime(), 0, 0));
+      }
+      // Begun but never committed, so not read back.
+      recorder.begin(5, System.nanoTime(), 0, 0);
+      assertThat(recorder.recorded()).isEqualTo(6);
+    }
+
+    List<Integer> ids = new ArrayList<>();
+    for (CallLog.RecordedCall call : CallLog.read(file).calls()) {
+      ids.add(call.methodId());
+    }
+    assertThat(ids).containsExactly(3, 4).inOrder();
+  }
+
+  @Test
+  public void testCallsReadInOrderOfStart() throws Exception {
+    Path file = temporaryFolder.newFile().toPath();
+    try (CallRecorder recorder = CallRecorder.create(file, 4, 64)) {
+      // The second call started first, but returned, and so was recorded, last.
+      recorder.commit(recorder.begin(0, 2000, 0, 0));
+      recorder.commit(recorder.begin(1, 1000, 5000, 0));
+    }
+
+    List<Integer> ids = new ArrayList<>();
+    for (CallLog.RecordedCall call : CallLog.read(file).calls()) {
+      ids.add(call.methodId());
+    }
+    assertThat(ids).containsExactly(1, 0).inOrder();
+  }
+
+  @Test
+  public void testSlotStillBeingWrittenIsNotOverwritten() throws Exception {
+    Path file = temporaryFolder.newFile().toPath();
+    try (CallRecorder recorder = CallRecorder.create(file, 2, 64)) {
+      long slow = recorder.begin(0, System.nanoTime(), 0, 1);
+      recorder.commit(recorder.begin(1, System.nanoTime(), 0, 0));
+      // Laps the slow call, whose slot is still being written, so it's dropped.
+      long lapping = recorder.begin(2, System.nanoTime(), 0, 1);
+      recorder.commit(recorder.putInt(lapping, 2));
+      recorder.commit(recorder.putInt(slow, 1));
+      assertThat(recorder.dropped()).isEqualTo(1);
+    }
+
+    List<CallLog.RecordedCall> calls = CallLog.read(file).calls();
+    assertThat(calls).hasSize(2);
+    assertThat(calls.get(0).methodId()).isEqualTo(0);
+    assertThat(calls.get(0).args()).asList().containsExactly(1);
+    assertThat(calls.get(1).methodId()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,79 @@
+package com.bdl.auto.delegate;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain ConcurrencyLimiter} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class ConcurrencyLimiterTest {
+
+  @Test
+  public void testFixedLimit() {
+    ConcurrencyLimiter limiter = ConcurrencyLimit.fixed(2).newLimiter("test");
+    long first = limiter.acquire();
+    limiter.acquire();
+
+    try {
+      limiter.acquire();
+      fail();
+    } catch (BulkheadFullException ex) {
+      assertThat(ex).hasMessage("test already has 2 calls in flight.");
+      assertThat(ex.getStackTrace()).isEmpty();
+      assertThat(ex.limit()).isEqualTo(2);
+    }
+    limiter.release(first);
+    limiter.acquire();
+
+    assertThat(limiter.inFlight()).isEqualTo(2);
+    assertThat(limiter.limit()).isEqualTo(2);
+    assertThat(limiter.rejections()).isEqualTo(1);
+  }
+
+  @Test
+  public void testAdaptiveLimitBacksOffOncePerSlowSpell() throws Exception {
+    ConcurrencyLimiter limiter =
+        ConcurrencyLimit.adaptive(10, 2, 20, 1, TimeUnit.MILLISECONDS).newLimiter("test");
+    long first = limiter.acquire();
+    long second = limiter.acquire();
+    Thread.sleep(5);
+
+    limiter.release(first);
+    assertThat(limiter.limit()).isEqualTo(9);
+    // Started before the limit was cut, so it doesn't cut it again.
+    limiter.release(second);
+    assertThat(limiter.limit()).isEqualTo(9);
+  }
+
+  @Test
+  public void testAdaptiveLimitGrowsWhenUsed() {
+    ConcurrencyLimiter limiter =
+        ConcurrencyLimit.adaptive(2, 1, 4, 1, TimeUnit.HOURS).newLimiter("test");
+    for (int i = 0; i < 10; i++) {
+      long first = limiter.acquire();
+      limiter.release(limiter.acquire());
+      limiter.release(first);
+    }
+
+    assertThat(limiter.limit()).isEqualTo(4);
+  }
+
+  @Test
+  public void testAdaptiveLimitDoesNotGrowWhenIdle() {
+    ConcurrencyLimiter limiter =
+        ConcurrencyLimit.adaptive(4, 1, 8, 1, TimeUnit.HOURS).newLimiter("test");
+    for (int i = 0; i < 10; i++) {
+      limiter.release(limiter.acquire());
+    }
+
+    assertThat(limiter.limit()).isEqualTo(4);
+  }
+}
@@ -0,0 +1,98 @@
+package com.bdl.auto.delegate;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain DelegateSwitch} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class DelegateSwitchTest {
+
+  @Test
+  public void testSwap() {
+    DelegateSwitch<String> delegateSwitch = new DelegateSwitch<>("first");
+
+    assertThat(delegateSwitch.swap("second")).isEqualTo("first");
+    assertThat(delegateSwitch.get()).isEqualTo("second");
+  }
+
+  @Test
+  public void testCompareAndSwap() {
+    String first = "first";
+    DelegateSwitch<String> delegateSwitch = new DelegateSwitch<>(first);
+
+    assertThat(delegateSwitch.compareAndSwap(new String(first), "second")).isFalse();
+    assertThat(delegateSwitch.get()).isSameAs(first);
+    assertThat(delegateSwitch.compareAndSwap(first, "second")).isTrue();
+    assertThat(delegateSwitch.get()).isEqualTo("second");
+  }
+
+  @Test
+  public void testLeaseKeepsTargetAcrossSwap() {
+    DelegateSwitch<String> delegateSwitch = new DelegateSwitch<>("first");
+
+    DelegateLease<String> lease = delegateSwitch.acquire();
+    delegateSwitch.swap("second");
+    assertThat(lease.target()).isEqualTo("first");
+    lease.release();
+    assertThat(delegateSwitch.acquire().target()).isEqualTo("second");
+  }
+
+  @Test
+  public void testSwapAndDrainWaitsForCallsInFlight() throws Exception {
+    DelegateSwitch<String> delegateSwitch = new DelegateSwitch<>("first");
+    final DelegateLease<String> lease = delegateSwitch.acquire();
+    final AtomicBoolean released = new AtomicBoolean();
+    Thread caller = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        released.set(true);
+        lease.release();
+      }
+    });
+    caller.start();
+
+    assertThat(delegateSwitch.swapAndDrain("second", 10, TimeUnit.SECONDS)).isEqualTo("first");
+    assertThat(released.get()).isTrue();
+    caller.join();
+  }
+
+  @Test
+  public void testSwapAndDrainTimesOut() throws Exception {
+    DelegateSwitch<String> delegateSwitch = new DelegateSwitch<>("first");
+    delegateSwitch.acquire();
+
+    try {
+      delegateSwitch.swapAndDrain("second", 1, TimeUnit.MILLISECONDS);
+      fail("Expected a TimeoutException");
+    } catch (TimeoutException ex) {
+      // expected
+    }
+    assertThat(delegateSwitch.get()).isEqualTo("second");
+  }
+
+  @Test
+  public void testNullTarget() {
+    try {
+      new DelegateSwitch<String>(null);
+      fail("Expected a NullPointerException");
+    } catch (NullPointerException ex) {
+      // expected
+    }
+  }
+}
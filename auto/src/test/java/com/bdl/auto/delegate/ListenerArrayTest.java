@@ -0,0 +1,76 @@
+package com.bdl.auto.delegate;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain ListenerArray} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class ListenerArrayTest {
+
+  @Test
+  public void testAddAndRemove() {
+    ListenerArray<String> listeners = new ListenerArray<>(new String[0]);
+    listeners.add("a");
+    listeners.add("b");
+    listeners.add("a");
+    String[] before = listeners.get();
+
+    assertThat(listeners.remove("a")).isTrue();
+    assertThat(Arrays.asList(listeners.get())).containsExactly("b", "a").inOrder();
+    assertThat(listeners.remove("c")).isFalse();
+    assertThat(listeners.size()).isEqualTo(2);
+    assertThat(Arrays.asList(before)).containsExactly("a", "b", "a").inOrder();
+  }
+
+  @Test
+  public void testConcurrentAdds() throws Exception {
+    final ListenerArray<Integer> listeners = new ListenerArray<>(new Integer[0]);
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            listeners.add(j);
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(listeners.size()).isEqualTo(4000);
+  }
+
+  @Test
+  public void testCollect() {
+    RuntimeException first = new IllegalStateException();
+    RuntimeException second = new IllegalArgumentException();
+
+    assertThat(ListenerArray.collect(null, first)).isSameAs(first);
+    assertThat(ListenerArray.collect(first, second)).isSameAs(first);
+    assertThat(Arrays.asList(first.getSuppressed())).containsExactly(second);
+  }
+
+  @Test
+  public void testNullListener() {
+    ListenerArray<String> listeners = new ListenerArray<>(new String[0]);
+    try {
+      listeners.add(null);
+      fail("Expected a NullPointerException");
+    } catch (NullPointerException ex) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.bdl.auto.delegate;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain MemoCache} classes.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class MemoCacheTest {
+
+  @Test
+  public void testLongKeyCache() {
+    LongKeyCache<String> cache = new LongKeyCache<>("name(long)", 1, 0);
+    assertThat(cache.get(1L)).isNull();
+    cache.put(1L, "one");
+    assertThat(cache.get(1L)).isEqualTo("one");
+    cache.put(1L, "uno");
+    assertThat(cache.get(1L)).isEqualTo("uno");
+
+    // A single slot, so any other key evicts.
+    cache.put(2L, "two");
+    assertThat(cache.get(1L)).isNull();
+    assertThat(cache.get(2L)).isEqualTo("two");
+
+    assertThat(cache.stats()).isEqualTo(new MemoStats("name(long)", 3, 2, 1));
+  }
+
+  @Test
+  public void testObjectKeyCache() {
+    ObjectKeyCache<Integer> cache = new ObjectKeyCache<>("size(String, int)", 1024, 0);
+    cache.put(ObjectKeyCache.key("a", 1), 1);
+    cache.put(null, 0);
+    cache.put("ignored", null);
+
+    assertThat(cache.get(ObjectKeyCache.key("a", 1))).isEqualTo(1);
+    assertThat(cache.get(ObjectKeyCache.key("a", 2))).isNull();
+    assertThat(cache.get(null)).isEqualTo(0);
+    assertThat(cache.get("ignored")).isNull();
+    assertThat(cache.stats().hits()).isEqualTo(2L);
+    assertThat(cache.stats().misses()).isEqualTo(2L);
+  }
+
+  @Test
+  public void testObjectKeyCacheComparesArrayKeysByElement() {
+    ObjectKeyCache<Integer> cache = new ObjectKeyCache<>("size(String, int)", 16, 0);
+    cache.put(ObjectKeyCache.key("a", 1), 1);
+
+    assertThat(cache.get(new Object[] {"a", 1})).isEqualTo(1);
+    assertThat(cache.get(new Object[] {"a", 1, null})).isNull();
+  }
+
+  @Test
+  public void testSlotsRoundUpToPowerOfTwo() {
+    assertThat(new LongKeyCache<String>("one()", 1, 0).mask).isEqualTo(0);
+    assertThat(new LongKeyCache<String>("three()", 3, 0).mask).isEqualTo(3);
+    assertThat(new LongKeyCache<String>("thousand()", 1000, 0).mask).isEqualTo(1023);
+    assertThat(new LongKeyCache<String>("kibi()", 1024, 0).mask).isEqualTo(1023);
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    LongKeyCache<String> cache = new LongKeyCache<>("name(long)", 16, 1);
+    cache.put(1L, "one");
+    Thread.sleep(5);
+
+    assertThat(cache.get(1L)).isNull();
+    cache.put(1L, "one");
+    assertThat(cache.stats().evictions()).isEqualTo(1L);
+  }
+
+  @Test
+  public void testStats() {
+    LongKeyCache<String> first = new LongKeyCache<>("first()", 16, 0);
+    ObjectKeyCache<String> second = new ObjectKeyCache<>("second(String)", 16, 0);
+    first.get(0L);
+
+    assertThat(MemoCache.stats(first, second).keySet())
+        .containsExactly("first()", "second(String)").inOrder();
+    assertThat(MemoCache.stats(first, second).get("first()").hitRate()).isEqualTo(0.0);
+  }
+}
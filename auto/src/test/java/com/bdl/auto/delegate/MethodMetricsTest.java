@@ -0,0 +1,131 @@
+package com.bdl.auto.delegate;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain MethodMetrics} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class MethodMetricsTest {
+
+  @Test
+  public void testBuckets() {
+    assertThat(MethodMetrics.bucket(-5)).isEqualTo(0);
+    assertThat(MethodMetrics.bucket(0)).isEqualTo(0);
+    assertThat(MethodMetrics.bucket(1)).isEqualTo(1);
+    assertThat(MethodMetrics.bucket(3)).isEqualTo(2);
+    assertThat(MethodMetrics.bucket(4)).isEqualTo(3);
+    assertThat(MethodMetrics.bucket(1000)).isEqualTo(10);
+    assertThat(MethodMetrics.bucket(Long.MAX_VALUE)).isEqualTo(MethodMetrics.BUCKETS - 1);
+    assertThat(MethodStats.bucketUpperBoundNanos(10)).isEqualTo(1024L);
+  }
+
+  @Test
+  public void testSnapshot() {
+    MethodMetrics metrics = new MethodMetrics("bar(int)");
+    for (int i = 0; i < 98; i++) {
+      metrics.record(100);
+    }
+    metrics.record(5000);
+    metrics.recordError();
+    metrics.record(5000);
+
+    MethodStats stats = metrics.snapshot();
+    assertThat(stats.signature()).isEqualTo("bar(int)");
+    assertThat(stats.calls()).isEqualTo(100L);
+    assertThat(stats.errors()).isEqualTo(1L);
+    assertThat(stats.totalNanos()).isEqualTo(98 * 100L + 2 * 5000L);
+    assertThat(stats.bucketCount(7)).isEqualTo(98L);
+    assertThat(stats.bucketCount(13)).isEqualTo(2L);
+    assertThat(stats.quantileUpperBoundNanos(0.5)).isEqualTo(128L);
+    assertThat(stats.quantileUpperBoundNanos(0.99)).isEqualTo(8192L);
+
+    metrics.record(100);
+    assertThat(stats.calls()).isEqualTo(100L);
+    assertThat(metrics.snapshot()).isNotEqualTo(stats);
+  }
+
+  @Test
+  public void testDelegateStats() {
+    MethodMetrics foo = new MethodMetrics("foo()");
+    MethodMetrics bar = new MethodMetrics("bar(int)");
+    bar.record(10);
+
+    DelegateStats stats = DelegateStats.of(foo, bar);
+    assertThat(stats.methods().keySet()).containsExactly("foo()", "bar(int)").inOrder();
+    assertThat(stats.method("foo()").calls()).isEqualTo(0L);
+    assertThat(stats.method("bar(int)").calls()).isEqualTo(1L);
+    try {
+      stats.method("baz()");
+      fail();
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSampling() {
+    MethodMetrics metrics = new MethodMetrics("bar(int)", 8);
+    for (int i = 0; i < 8000; i++) {
+      metrics.recordSampled(metrics.sampleStart());
+    }
+
+    MethodStats stats = metrics.snapshot();
+    assertThat(stats.calls()).isEqualTo(8000L);
+    // About 1000 are sampled; this bound fails with negligible probability.
+    assertThat(stats.sampledCalls()).isGreaterThan(700L);
+    assertThat(stats.sampledCalls()).isLessThan(1300L);
+    long bucketed = 0;
+    for (int i = 0; i < MethodMetrics.BUCKETS; i++) {
+      bucketed += stats.bucketCount(i);
+    }
+    assertThat(bucketed).isEqualTo(stats.sampledCalls());
+  }
+
+  @Test
+  public void testReset() {
+    MethodMetrics metrics = new MethodMetrics("bar(int)");
+    metrics.record(100);
+    metrics.recordError();
+
+    MethodMetrics.resetAll(metrics);
+
+    assertThat(metrics.snapshot()).isEqualTo(new MethodMetrics("bar(int)").snapshot());
+  }
+
+  @Test
+  public void testMerge() {
+    MethodMetrics first = new MethodMetrics("bar(int)");
+    first.record(100);
+    first.recordError();
+    MethodMetrics second = new MethodMetrics("bar(int)");
+    second.record(5000);
+    second.recordSampled(0L);
+    MethodMetrics foo = new MethodMetrics("foo()");
+    foo.record(10);
+
+    DelegateStats merged = DelegateStats.of(first).merge(DelegateStats.of(second, foo));
+
+    MethodStats bar = merged.method("bar(int)");
+    assertThat(bar.calls()).isEqualTo(3L);
+    assertThat(bar.sampledCalls()).isEqualTo(2L);
+    assertThat(bar.errors()).isEqualTo(1L);
+    assertThat(bar.meanNanos()).isWithin(0.1).of(2550);
+    assertThat(bar.quantileUpperBoundNanos(0.5)).isEqualTo(128L);
+    assertThat(bar.quantileUpperBoundNanos(1)).isEqualTo(8192L);
+    assertThat(merged.method("foo()").calls()).isEqualTo(1L);
+    try {
+      bar.merge(merged.method("foo()"));
+      fail();
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.bdl.auto.benchmarks;
+
+import com.bdl.auto.delegate.AutoDelegate;
+import com.bdl.auto.delegate.ReadOnly;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a table that isn't thread-safe, shared between threads behind a hand-written
+ * {@code synchronized} wrapper and behind a delegate generated with
+ * {@link AutoDelegate#threadSafe}, at a mix of reads and writes.
+ *
+ * <p>JMH runs a benchmark at a single thread count, so {@link #main} runs this one at each of
+ * {@link #THREAD_COUNTS} in turn.
+ *
+ * @author Ben Leitner
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+  /** The thread counts {@link #main} runs the benchmark at. */
+  static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+  private static final int SLOTS = 1024;
+
+  /** The interface being delegated to. */
+  public interface Table {
+    int get(int slot);
+
+    void put(int slot, int value);
+  }
+
+  /** A table that isn't thread-safe. */
+  public static final class ArrayTable implements Table {
+    private final int[] values = new int[SLOTS];
+
+    @Override
+    public int get(int slot) {
+      return values[slot];
+    }
+
+    @Override
+    public void put(int slot, int value) {
+      values[slot] = value;
+    }
+  }
+
+  /** The hand-written wrapper, holding the table's monitor for every call. */
+  public static final class SynchronizedTable implements Table {
+    private final Table delegate;
+
+    public SynchronizedTable(Table delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized int get(int slot) {
+      return delegate.get(slot);
+    }
+
+    @Override
+    public synchronized void put(int slot, int value) {
+      delegate.put(slot, value);
+    }
+  }
+
+  /** The generated wrapper, letting reads run alongside each other. */
+  @AutoDelegate(threadSafe = true)
+  abstract static class StampedTable implements Table {
+    protected final Table delegate;
+
+    protected StampedTable(Table delegate) {
+      this.delegate = delegate;
+    }
+
+    @ReadOnly
+    @Override
+    public abstract int get(int slot);
+  }
+
+  @Param({"synchronized", "stamped"})
+  public String wrapper;
+
+  /** The percentage of calls that are writes. */
+  @Param({"0", "1", "10"})
+  public int writePercent;
+
+  private Table table;
+
+  @Setup
+  public void setUp() {
+    table = wrapper.equals("synchronized")
+        ? new SynchronizedTable(new ArrayTable())
+        : new Auto_ContentionBenchmark_StampedTable_Delegate(new ArrayTable());
+  }
+
+  @Benchmark
+  public int mixed() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int slot = random.nextInt(SLOTS);
+    if (random.nextInt(100) < writePercent) {
+      table.put(slot, slot);
+      return slot;
+    }
+    return table.get(slot);
+  }
+
+  /**
+   * Runs the benchmark at each of {@link #THREAD_COUNTS}, saving the results for each in the
+   * directory given as the first argument.
+   */
+  public static void main(String[] args) throws RunnerException {
+    String directory = args.length > 0 ? args[0] : ".";
+    for (int threads : THREAD_COUNTS) {
+      Options options = new OptionsBuilder()
+          .include(ContentionBenchmark.class.getName())
+          .threads(threads)
+          .resultFormat(ResultFormatType.JSON)
+          .result(directory + "/contention-" + threads + ".json")
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
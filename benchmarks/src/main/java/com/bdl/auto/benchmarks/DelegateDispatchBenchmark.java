@@ -0,0 +1,121 @@
+package com.bdl.auto.benchmarks;
+
+import com.bdl.auto.delegate.AutoDelegate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a call through a generated delegate that forwards through the inherited interface, as
+ * {@code @AutoDelegate} does by default, against one generated with a concrete
+ * {@link AutoDelegate#target}.
+ *
+ * <p>When {@link #polluted} is set, the interface typed delegate's forwarding call site is first
+ * warmed with several implementations, as it would be in an application that wraps more than one
+ * kind of {@link Counter}.
+ *
+ * @author Ben Leitner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DelegateDispatchBenchmark {
+
+  /** The number of calls made through each wrapped implementation to pollute the call site. */
+  private static final int POLLUTION_CALLS = 100000;
+
+  /** The interface being delegated to. */
+  public interface Counter {
+    long add(long value);
+  }
+
+  /** The implementation the benchmarked delegates wrap. */
+  public static final class Adder implements Counter {
+    private long total;
+
+    @Override
+    public long add(long value) {
+      return total += value;
+    }
+  }
+
+  /** Delegates through the {@link Counter} interface. */
+  @AutoDelegate
+  abstract static class Interfaced implements Counter {
+    protected final Counter delegate;
+
+    protected Interfaced(Counter delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  /** Delegates through a field of the concrete {@link Adder} type. */
+  @AutoDelegate(target = Adder.class)
+  abstract static class Targeted implements Counter {
+    protected final Counter delegate;
+
+    protected Targeted(Counter delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  @Param({"false", "true"})
+  public boolean polluted;
+
+  private Counter interfaced;
+  private Counter targeted;
+  private long value;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    if (polluted) {
+      pollute(blackhole, new Auto_DelegateDispatchBenchmark_Interfaced_Delegate(new Counter() {
+        @Override
+        public long add(long value) {
+          return value * 2;
+        }
+      }));
+      pollute(blackhole, new Auto_DelegateDispatchBenchmark_Interfaced_Delegate(new Counter() {
+        @Override
+        public long add(long value) {
+          return -value;
+        }
+      }));
+      pollute(blackhole, new Auto_DelegateDispatchBenchmark_Interfaced_Delegate(new Adder()));
+    }
+    interfaced = new Auto_DelegateDispatchBenchmark_Interfaced_Delegate(new Adder());
+    targeted = new Auto_DelegateDispatchBenchmark_Targeted_Delegate(new Adder());
+    value = 7;
+  }
+
+  @Benchmark
+  public long interfaceTyped() {
+    return interfaced.add(value);
+  }
+
+  @Benchmark
+  public long targetTyped() {
+    return targeted.add(value);
+  }
+
+  private static void pollute(Blackhole blackhole, Counter counter) {
+    for (int i = 0; i < POLLUTION_CALLS; i++) {
+      blackhole.consume(counter.add(i));
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package com.bdl.auto.benchmarks;
+
+import com.bdl.auto.delegate.AutoDelegate;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of calls forwarded to an implementation through a generated delegate, a
+ * {@link Proxy} whose handler calls the implementation reflectively, and a Mockito spy, with
+ * direct calls to the implementation as the baseline. Run with the gc profiler, as the {@code jmh}
+ * and {@code jmhForwarding} tasks do, to see the bytes allocated per call.
+ *
+ * <p>Each benchmark calls {@link #CALLS} wrappers in turn, around as many different
+ * implementations as {@link #callSite} calls for. A delegate or proxy is a single class whatever it
+ * wraps, so it sees the variety at the forwarding call inside it, while each spy is a subclass of
+ * the implementation it copies, so the benchmark's own call site sees as many classes as there are
+ * implementations.
+ *
+ * @author Ben Leitner
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ForwardingBenchmark {
+
+  /** The number of wrappers each benchmark calls per invocation. */
+  static final int CALLS = 16;
+
+  /** The shapes of call site benchmarked, by the number of implementations they see. */
+  public enum CallSite {
+    MONOMORPHIC(1),
+    BIMORPHIC(2),
+    MEGAMORPHIC(4);
+
+    private final int implementations;
+
+    CallSite(int implementations) {
+      this.implementations = implementations;
+    }
+  }
+
+  /** The interface being forwarded. */
+  public interface Counter {
+    long add(long value);
+  }
+
+  /** Adds to a total. Not final, so that Mockito can spy on it, as for the others. */
+  public static class Adder implements Counter {
+    private long total;
+
+    @Override
+    public long add(long value) {
+      return total += value;
+    }
+  }
+
+  /** Subtracts from a total. */
+  public static class Subtracter implements Counter {
+    private long total;
+
+    @Override
+    public long add(long value) {
+      return total -= value;
+    }
+  }
+
+  /** Keeps the largest value added. */
+  public static class Maximum implements Counter {
+    private long max;
+
+    @Override
+    public long add(long value) {
+      return max = Math.max(max, value);
+    }
+  }
+
+  /** Counts the values added. */
+  public static class Tally implements Counter {
+    private long count;
+
+    @Override
+    public long add(long value) {
+      return ++count;
+    }
+  }
+
+  /** Forwards every call to its delegate. */
+  @AutoDelegate
+  abstract static class Forwarding implements Counter {
+    protected final Counter delegate;
+
+    protected Forwarding(Counter delegate) {
+      this.delegate = delegate;
+    }
+  }
+
+  /** Forwards every call to its target reflectively, as a hand written dynamic proxy would. */
+  private static final class ForwardingHandler implements InvocationHandler {
+    private final Counter target;
+
+    private ForwardingHandler(Counter target) {
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException ex) {
+        throw ex.getCause();
+      }
+    }
+  }
+
+  @Param({"MONOMORPHIC", "BIMORPHIC", "MEGAMORPHIC"})
+  public CallSite callSite;
+
+  private final Counter[] direct = new Counter[CALLS];
+  private final Counter[] delegates = new Counter[CALLS];
+  private final Counter[] proxies = new Counter[CALLS];
+  private final Counter[] spies = new Counter[CALLS];
+  private long value;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < CALLS; i++) {
+      direct[i] = implementation(i % callSite.implementations);
+      delegates[i] = new Auto_ForwardingBenchmark_Forwarding_Delegate(
+          implementation(i % callSite.implementations));
+      proxies[i] = (Counter) Proxy.newProxyInstance(
+          Counter.class.getClassLoader(),
+          new Class<?>[] {Counter.class},
+          new ForwardingHandler(implementation(i % callSite.implementations)));
+      spies[i] = spy(implementation(i % callSite.implementations));
+    }
+    value = 7;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public long direct() {
+    return callAll(direct);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public long delegate() {
+    return callAll(delegates);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public long proxy() {
+    return callAll(proxies);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public long spy() {
+    return callAll(spies);
+  }
+
+  private long callAll(Counter[] counters) {
+    long sum = 0;
+    for (Counter counter : counters) {
+      sum += counter.add(value);
+    }
+    return sum;
+  }
+
+  /**
+   * Returns a spy of {@code counter}, as {@link Mockito#spy} does, but one that doesn't keep every
+   * call for verification, which would otherwise grow without bound over a benchmark run.
+   */
+  private static Counter spy(Counter counter) {
+    return Mockito.mock(counter.getClass(), Mockito.withSettings()
+        .spiedInstance(counter)
+        .defaultAnswer(Mockito.CALLS_REAL_METHODS)
+        .stubOnly());
+  }
+
+  private static Counter implementation(int index) {
+    switch (index) {
+      case 0:
+        return new Adder();
+      case 1:
+        return new Subtracter();
+      case 2:
+        return new Maximum();
+      default:
+        return new Tally();
+    }
+  }
+}
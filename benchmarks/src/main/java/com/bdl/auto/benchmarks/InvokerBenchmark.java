@@ -0,0 +1,121 @@
+package com.bdl.auto.benchmarks;
+
+import com.bdl.auto.delegate.AutoInvoker;
+import com.bdl.auto.delegate.MethodInvoker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of calling a method that is only known at runtime, by name and arguments, through a
+ * generated {@link MethodInvoker} against {@link Method#invoke} and
+ * {@link MethodHandle#invokeExact}, with a direct call as the baseline.
+ *
+ * <p>{@link #spreadHandle} takes its arguments as an {@code Object[]}, as the invoker and
+ * reflection do, while {@link #exactHandle} has the method's own type, which is only possible when
+ * the caller knows the method's signature at compile time.
+ *
+ * @author Ben Leitner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class InvokerBenchmark {
+
+  private static final Method METHOD;
+  private static final MethodHandle EXACT_HANDLE;
+  private static final MethodHandle SPREAD_HANDLE;
+
+  static {
+    try {
+      METHOD = Counter.class.getMethod("add", long.class);
+      EXACT_HANDLE = MethodHandles.publicLookup().unreflect(METHOD);
+      SPREAD_HANDLE = EXACT_HANDLE.asSpreader(Object[].class, 1)
+          .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  /** The interface whose method is called. */
+  @AutoInvoker
+  public interface Counter {
+    long add(long value);
+
+    void reset();
+  }
+
+  /** The implementation called. */
+  public static final class Adder implements Counter {
+    private long total;
+
+    @Override
+    public long add(long value) {
+      return total += value;
+    }
+
+    @Override
+    public void reset() {
+      total = 0;
+    }
+  }
+
+  private Counter counter;
+  private Object target;
+  private MethodInvoker<Counter> invoker;
+  private int methodId;
+  private Object[] args;
+  private long value;
+
+  @Setup
+  public void setUp() {
+    counter = new Adder();
+    target = counter;
+    invoker = new Auto_InvokerBenchmark_Counter_Invoker();
+    methodId = invoker.methodId("add");
+    value = 7;
+    args = new Object[] {value};
+  }
+
+  @Benchmark
+  public long direct() {
+    return counter.add(value);
+  }
+
+  @Benchmark
+  public Object invoker() throws Exception {
+    return invoker.invoke(counter, methodId, args);
+  }
+
+  @Benchmark
+  public Object reflection() throws Exception {
+    return METHOD.invoke(counter, args);
+  }
+
+  @Benchmark
+  public long exactHandle() throws Throwable {
+    return (long) EXACT_HANDLE.invokeExact(counter, value);
+  }
+
+  @Benchmark
+  public Object spreadHandle() throws Throwable {
+    return (Object) SPREAD_HANDLE.invokeExact(target, args);
+  }
+}
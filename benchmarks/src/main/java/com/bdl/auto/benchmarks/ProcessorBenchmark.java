@@ -0,0 +1,119 @@
+package com.bdl.auto.benchmarks;
+
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static org.truth0.Truth.ASSERT;
+
+import com.google.common.collect.ImmutableList;
+import com.google.testing.compile.JavaFileObjects;
+
+import com.bdl.auto.delegate.processor.AutoDelegateProcessor;
+import com.bdl.auto.impl.processor.AutoImplProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * End to end cost of running each processor through the in-process compiler used by
+ * compile-testing, over a generic interface hierarchy {@link #DEPTH} levels deep.
+ *
+ * @author Ben Leitner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessorBenchmark {
+
+  /** The number of interfaces in the hierarchy the annotated types inherit from. */
+  static final int DEPTH = 8;
+
+  private static final String PACKAGE = "bench";
+
+  @Param({"10", "100", "1000"})
+  public int methods;
+
+  private List<JavaFileObject> hierarchy;
+  private JavaFileObject implSource;
+  private JavaFileObject delegateSource;
+
+  @Setup
+  public void setUp() {
+    ImmutableList.Builder<JavaFileObject> levels = ImmutableList.builder();
+    for (int level = 0; level < DEPTH; level++) {
+      levels.add(level(level));
+    }
+    hierarchy = levels.build();
+    implSource = JavaFileObjects.forSourceLines(PACKAGE + ".Big",
+        "package " + PACKAGE + ";",
+        "",
+        "import com.bdl.auto.impl.AutoImpl;",
+        "",
+        "@AutoImpl",
+        "public interface Big extends Level" + (DEPTH - 1) + "<String> {}");
+    delegateSource = JavaFileObjects.forSourceLines(PACKAGE + ".BigDelegate",
+        "package " + PACKAGE + ";",
+        "",
+        "import com.bdl.auto.delegate.AutoDelegate;",
+        "",
+        "@AutoDelegate",
+        "public abstract class BigDelegate implements Level" + (DEPTH - 1) + "<String> {",
+        "  protected final Level" + (DEPTH - 1) + "<String> delegate;",
+        "",
+        "  protected BigDelegate(Level" + (DEPTH - 1) + "<String> delegate) {",
+        "    this.delegate = delegate;",
+        "  }",
+        "}");
+  }
+
+  @Benchmark
+  public void autoImpl() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.<JavaFileObject>builder().addAll(hierarchy).add(implSource).build())
+        .processedWith(new AutoImplProcessor())
+        .compilesWithoutError();
+  }
+
+  @Benchmark
+  public void autoDelegate() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.<JavaFileObject>builder().addAll(hierarchy).add(delegateSource).build())
+        .processedWith(new AutoDelegateProcessor())
+        .compilesWithoutError();
+  }
+
+  /** A level of the hierarchy, declaring its share of the methods. */
+  private JavaFileObject level(int level) {
+    StringBuilder source = new StringBuilder();
+    source.append("package ").append(PACKAGE).append(";\n\n")
+        .append("import java.util.List;\n")
+        .append("import java.util.Map;\n\n")
+        .append("public interface Level").append(level).append("<T>");
+    if (level > 0) {
+      source.append(" extends Level").append(level - 1).append("<T>");
+    }
+    source.append(" {\n");
+    for (int i = level; i < methods; i += DEPTH) {
+      source.append(i % 2 == 0
+          ? "  Map<String, List<T>> method" + i + "(T value, int count);\n"
+          : "  int method" + i + "(List<? extends T> values);\n");
+    }
+    source.append("}\n");
+    return JavaFileObjects.forSourceString(PACKAGE + ".Level" + level, source.toString());
+  }
+}
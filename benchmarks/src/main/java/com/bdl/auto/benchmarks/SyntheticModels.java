@@ -0,0 +1,165 @@
+package com.bdl.auto.benchmarks;
+
+import com.google.common.base.Function;
+import com.google.common.io.CharStreams;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.ConstructorMetadata;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.annotation.processing.model.Modifiers;
+import com.bdl.annotation.processing.model.ParameterMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+import com.bdl.annotation.processing.model.Visibility;
+
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Synthetic {@link ClassMetadata} models for driving the writers without a compiler.
+ *
+ * @author Ben Leitner
+ */
+public final class SyntheticModels {
+
+  /** The shape of the generated model. */
+  public enum Shape {
+    /** Methods over primitives, strings and simple generic types. */
+    FLAT,
+    /** A bounded type parameter threaded through deeply nested generic types in every method. */
+    DEEP_GENERICS,
+    /** Flat methods plus {@link #CONSTRUCTOR_COUNT} constructors of increasing arity. */
+    MANY_CONSTRUCTORS
+  }
+
+  /** How deeply generic types are nested in {@link Shape#DEEP_GENERICS} models. */
+  public static final int GENERIC_DEPTH = 6;
+
+  /** The number of constructors in {@link Shape#MANY_CONSTRUCTORS} models. */
+  public static final int CONSTRUCTOR_COUNT = 64;
+
+  private static final String PACKAGE = "com.bdl.auto.benchmarks.model";
+
+  private static final TypeMetadata PARAM_T = TypeMetadata.simpleTypeParam("T");
+
+  private static final TypeMetadata PARAM_T_EXTENDS_COMPARABLE = TypeMetadata.builder()
+      .setIsTypeParameter(true)
+      .setName("T")
+      .addBound(TypeMetadata.builder()
+          .setPackageName("java.lang")
+          .setName("Comparable")
+          .addParam(PARAM_T)
+          .build())
+      .build();
+
+  private static final TypeMetadata LIST_OF_STRING = generic(List.class, TypeMetadata.STRING);
+
+  private SyntheticModels() {
+    // Utility class, no instantiation.
+  }
+
+  /** Returns a writer function whose writers discard everything written to them. */
+  public static Function<String, Writer> discardingWriters() {
+    return new Function<String, Writer>() {
+      @Override
+      public Writer apply(String input) {
+        return CharStreams.nullWriter();
+      }
+    };
+  }
+
+  /**
+   * Returns an abstract class (or interface) named {@code name} with {@code methodCount} abstract
+   * methods, shaped as requested.
+   */
+  public static ClassMetadata model(
+      String name, ClassMetadata.Category category, Shape shape, int methodCount) {
+    TypeMetadata.Builder type = TypeMetadata.builder().setPackageName(PACKAGE).setName(name);
+    if (shape == Shape.DEEP_GENERICS) {
+      type.addParam(PARAM_T_EXTENDS_COMPARABLE);
+    }
+    TypeMetadata classType = type.build();
+
+    ClassMetadata.Builder clazz = ClassMetadata.builder()
+        .setCategory(category)
+        .setType(classType);
+    for (int i = 0; i < methodCount; i++) {
+      clazz.addMethod(shape == Shape.DEEP_GENERICS ? genericMethod(i) : flatMethod(i));
+    }
+    if (shape == Shape.MANY_CONSTRUCTORS) {
+      for (int i = 1; i <= CONSTRUCTOR_COUNT; i++) {
+        clazz.addConstructor(constructor(classType, i));
+      }
+    }
+    return clazz.build();
+  }
+
+  private static MethodMetadata flatMethod(int index) {
+    MethodMetadata.Builder method = MethodMetadata.builder()
+        .setModifiers(Modifiers.visibility(Visibility.PUBLIC).makeAbstract())
+        .setName("method" + index);
+    switch (index % 3) {
+      case 0:
+        method.setType(TypeMetadata.INT)
+            .addParameter(ParameterMetadata.of(TypeMetadata.INT, "first"))
+            .addParameter(ParameterMetadata.of(TypeMetadata.INT, "second"));
+        break;
+      case 1:
+        method.setType(TypeMetadata.STRING)
+            .addParameter(ParameterMetadata.of(TypeMetadata.STRING, "template"))
+            .addParameter(ParameterMetadata.of(TypeMetadata.INT, "times"));
+        break;
+      default:
+        method.setType(LIST_OF_STRING)
+            .addParameter(ParameterMetadata.of(LIST_OF_STRING, "values"));
+        break;
+    }
+    return method.build();
+  }
+
+  private static MethodMetadata genericMethod(int index) {
+    TypeMetadata nested = PARAM_T;
+    for (int depth = 0; depth < GENERIC_DEPTH; depth++) {
+      switch (depth % 3) {
+        case 0:
+          nested = generic(List.class, nested);
+          break;
+        case 1:
+          nested = generic(Set.class, nested);
+          break;
+        default:
+          nested = generic(Map.class, TypeMetadata.STRING, nested);
+          break;
+      }
+    }
+    return MethodMetadata.builder()
+        .setModifiers(Modifiers.visibility(Visibility.PUBLIC).makeAbstract())
+        .setType(nested)
+        .setName("method" + index)
+        .addParameter(ParameterMetadata.of(PARAM_T, "key"))
+        .addParameter(ParameterMetadata.of(nested, "values"))
+        .build();
+  }
+
+  private static ConstructorMetadata constructor(TypeMetadata type, int arity) {
+    ConstructorMetadata.Builder constructor = ConstructorMetadata.builder()
+        .type(type)
+        .visibility(Visibility.PUBLIC);
+    for (int i = 0; i < arity; i++) {
+      constructor.addParameter(
+          ParameterMetadata.of(i % 2 == 0 ? TypeMetadata.INT : TypeMetadata.STRING, "arg" + i));
+    }
+    return constructor.build();
+  }
+
+  private static TypeMetadata generic(Class<?> raw, TypeMetadata... params) {
+    TypeMetadata.Builder type = TypeMetadata.builder()
+        .setPackageName(raw.getPackage().getName())
+        .setName(raw.getSimpleName());
+    for (TypeMetadata param : params) {
+      type.addParam(param);
+    }
+    return type.build();
+  }
+}
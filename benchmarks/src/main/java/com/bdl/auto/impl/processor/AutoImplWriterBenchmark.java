@@ -0,0 +1,61 @@
+package com.bdl.auto.impl.processor;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.auto.benchmarks.SyntheticModels;
+import com.bdl.auto.processor.MetadataCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link AutoImplWriter} over synthetic models, from computing imports to writing
+ * the rendered source out.
+ *
+ * @author Ben Leitner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AutoImplWriterBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  public int methods;
+
+  @Param({"FLAT", "DEEP_GENERICS", "MANY_CONSTRUCTORS"})
+  public SyntheticModels.Shape shape;
+
+  private ClassMetadata model;
+  private AutoImplWriter writer;
+
+  @Setup
+  public void setUp() {
+    model = SyntheticModels.model("Synthetic", ClassMetadata.Category.CLASS, shape, methods);
+    writer = new AutoImplWriter(
+        SyntheticModels.discardingWriters(),
+        new AutoImplWriter.Recorder() {
+          @Override
+          public void record(String s) {}
+        },
+        MetadataCache.create());
+  }
+
+  @Benchmark
+  public void write() throws IOException {
+    writer.write(model);
+  }
+}
@@ -0,0 +1,53 @@
+package com.bdl.auto.delegate.processor;
+
+import com.bdl.annotation.processing.model.AnnotationMetadata;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.annotation.processing.model.ValueMetadata;
+
+import javax.annotation.Nullable;
+
+/**
+ * Utility class for reading the method annotations in {@code com.bdl.auto.delegate}.
+ *
+ * @author Ben Leitner
+ */
+final class AnnotationUtil {
+
+  private AnnotationUtil() {}
+
+  /** Returns the annotation on {@code method} with the given simple name, or {@code null}. */
+  @Nullable
+  static AnnotationMetadata annotation(MethodMetadata method, String name) {
+    for (AnnotationMetadata annotation : method.annotations()) {
+      if (annotation.type().packageName().equals("com.bdl.auto.delegate")
+          && annotation.type().name().equals(name)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the value of an {@code int} or {@code long} setting, or {@code defaultValue}. */
+  static long longValue(AnnotationMetadata annotation, String setting, long defaultValue) {
+    ValueMetadata value = annotation.values().get(setting);
+    if (value == null) {
+      return defaultValue;
+    }
+    String text = value.value();
+    return Long.parseLong(text.endsWith("L") || text.endsWith("l")
+        ? text.substring(0, text.length() - 1)
+        : text);
+  }
+
+  /** Returns the value of a {@code String} setting, or {@code defaultValue}. */
+  static String stringValue(AnnotationMetadata annotation, String setting, String defaultValue) {
+    ValueMetadata value = annotation.values().get(setting);
+    if (value == null) {
+      return defaultValue;
+    }
+    String text = value.value();
+    return text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")
+        ? text.substring(1, text.length() - 1)
+        : text;
+  }
+}
@@ -0,0 +1,216 @@
+package com.bdl.auto.delegate.processor;
+
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.Imports;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.annotation.processing.model.ParameterMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+import com.bdl.annotation.processing.model.Visibility;
+import com.bdl.auto.delegate.AsyncCalls;
+import com.bdl.auto.processor.ElementTiming;
+import com.bdl.auto.processor.SourceEmitter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Generated;
+
+/**
+ * Writes the asynchronous companion of a class annotated with
+ * {@link com.bdl.auto.delegate.AutoDelegate#async}: a class wrapping an instance of the annotated
+ * class, with a method for each of its public methods that makes the call on an executor and
+ * returns a {@link CompletableFuture} of the result.
+ *
+ * @author Ben Leitner
+ */
+final class AsyncCompanionWriter {
+
+  /** The public methods of {@code Object}, which companions don't wrap. */
+  private static final ImmutableSet<String> OBJECT_METHODS = ImmutableSet.of(
+      "equals", "hashCode", "toString", "getClass", "notify", "notifyAll", "wait");
+
+  private final Function<String, Writer> writerFunction;
+  private final SourceEmitter emitter = new SourceEmitter();
+  private ElementTiming timing = ElementTiming.untracked();
+  private Set<String> staticMethods = ImmutableSet.of();
+
+  AsyncCompanionWriter(Function<String, Writer> writerFunction) {
+    this.writerFunction = writerFunction;
+  }
+
+  /** Records the time spent in each phase of writing to {@code timing}. */
+  void setTiming(ElementTiming timing) {
+    this.timing = timing;
+  }
+
+  /**
+   * Sets the {@link #signature signatures} of the static methods of the class and its supertypes,
+   * which aren't wrapped.
+   */
+  void setStaticMethods(Set<String> staticMethods) {
+    this.staticMethods = staticMethods;
+  }
+
+  /**
+   * Returns the signature of the method {@code name} with parameters of the given types, as fully
+   * qualified names without type arguments.
+   */
+  static String signature(String name, List<String> parameterTypes) {
+    return name + "(" + Joiner.on(',').join(parameterTypes) + ")";
+  }
+
+  void write(ClassMetadata clazz) throws IOException {
+    Writer writer = open(clazz);
+    render(clazz);
+    flush(writer);
+  }
+
+  /** Opens the source file for the companion of {@code clazz}. */
+  Writer open(ClassMetadata clazz) {
+    TypeMetadata type = clazz.type();
+    long start = System.nanoTime();
+    Writer writer = writerFunction.apply(
+        type.packagePrefix() + "Auto_" + type.nestingPrefix("_") + type.name() + "_Async");
+    timing.addWrite(System.nanoTime() - start);
+    return writer;
+  }
+
+  /** Renders the companion of {@code clazz} into this writer's buffer. */
+  void render(ClassMetadata clazz) {
+    long start = System.nanoTime();
+    List<MethodMetadata> methods = publicMethods(clazz);
+    ImmutableSet.Builder<TypeMetadata> types = ImmutableSet.builder();
+    types.add(clazz.type());
+    types.add(TypeMetadata.from(Generated.class));
+    types.add(TypeMetadata.from(AsyncCalls.class));
+    types.add(TypeMetadata.from(Callable.class));
+    types.add(TypeMetadata.from(CompletableFuture.class));
+    types.add(TypeMetadata.from(Executor.class));
+    for (MethodMetadata method : methods) {
+      types.addAll(method.getAllTypes());
+    }
+
+    long importsStart = System.nanoTime();
+    Imports imports = Imports.create(clazz.type().packageName(), types.build());
+    long importsNanos = System.nanoTime() - importsStart;
+    emitter.reset();
+    writeClassOpening(clazz, imports);
+    for (MethodMetadata method : methods) {
+      writeMethod(imports, method);
+    }
+    emitter.line("}");
+    timing.addImports(importsNanos);
+    timing.addRender(System.nanoTime() - start - importsNanos);
+  }
+
+  /** Writes out the rendered class and closes the writer. */
+  void flush(Writer writer) throws IOException {
+    if (writer != null) {
+      long start = System.nanoTime();
+      emitter.writeTo(writer);
+      writer.close();
+      timing.addWrite(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Returns the public instance methods of {@code clazz} other than {@code Object}'s, one per
+   * signature.
+   */
+  private List<MethodMetadata> publicMethods(ClassMetadata clazz) {
+    Map<String, MethodMetadata> methods = Maps.newLinkedHashMap();
+    for (MethodMetadata method : clazz.getAllMethods()) {
+      if (method.modifiers().visibility() != Visibility.PUBLIC
+          || OBJECT_METHODS.contains(method.name())) {
+        continue;
+      }
+      List<String> parameterTypes = Lists.newArrayList();
+      for (ParameterMetadata parameter : method.parameters()) {
+        parameterTypes.add(parameter.type().fullyQualifiedPathName());
+      }
+      String signature = signature(method.name(), parameterTypes);
+      if (!staticMethods.contains(signature) && !methods.containsKey(signature)) {
+        methods.put(signature, method);
+      }
+    }
+    return Ordering.<MethodMetadata>natural().sortedCopy(methods.values());
+  }
+
+  private void writeClassOpening(ClassMetadata clazz, Imports imports) {
+    TypeMetadata type = clazz.type();
+    String name = "Auto_" + type.nestingPrefix("_") + type.name() + "_Async";
+    emitter.append("package ").append(type.packageName()).line(";");
+    emitter.newLine();
+    for (String imp : imports.getImports()) {
+      emitter.append("import ").append(imp).line(";");
+    }
+    emitter.newLine();
+    emitter.append("/** AutoDelegate Generated asynchronous companion for ")
+        .append(type.nestingPrefix())
+        .append(type.name())
+        .line(". */");
+    emitter.line("@Generated(\"com.bdl.auto.delegate.processor.AutoDelegateProcessor\")");
+    emitter.append("final class ").append(name)
+        .appendTypeParameters(type.params(), imports)
+        .line(" {");
+    emitter.newLine();
+    emitter.append("  private final ").append(type.toString(imports)).line(" delegate;");
+    emitter.line("  private final Executor executor;");
+    emitter.newLine();
+    emitter.line("  /** Makes calls on {@link AsyncCalls#defaultExecutor()}. */");
+    emitter.append("  ").append(name).append('(').append(type.toString(imports))
+        .line(" delegate) {");
+    emitter.line("    this(delegate, AsyncCalls.defaultExecutor());");
+    emitter.line("  }");
+    emitter.newLine();
+    emitter.append("  ").append(name).append('(').append(type.toString(imports))
+        .line(" delegate, Executor executor) {");
+    emitter.line("    this.delegate = delegate;");
+    emitter.line("    this.executor = executor;");
+    emitter.line("  }");
+  }
+
+  private void writeMethod(Imports imports, MethodMetadata method) {
+    boolean isVoid = method.type().name().equals("void");
+    String resultType =
+        isVoid ? "Void" : Primitives.boxed(method.type(), method.type().toString(imports));
+    emitter.newLine();
+    emitter.append("  public CompletableFuture<").append(resultType).append("> ")
+        .append(method.name())
+        .append('(');
+    List<ParameterMetadata> parameters = method.parameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      emitter.append(i == 0 ? "final " : ", final ").append(parameters.get(i).toString(imports));
+    }
+    emitter.line(") {");
+    emitter.append("    return AsyncCalls.submit(executor, new Callable<").append(resultType)
+        .line(">() {");
+    emitter.line("      @Override");
+    emitter.append("      public ").append(resultType).line(" call() throws Exception {");
+    emitter.append(isVoid ? "        " : "        return ")
+        .append("delegate.")
+        .append(method.name())
+        .append('(')
+        .appendArguments(parameters)
+        .line(");");
+    if (isVoid) {
+      emitter.line("        return null;");
+    }
+    emitter.line("      }");
+    emitter.line("    });");
+    emitter.line("  }");
+  }
+}
@@ -5,18 +5,32 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import com.bdl.annotation.processing.model.ClassMetadata;
 import com.bdl.annotation.processing.model.ConstructorMetadata;
 import com.bdl.annotation.processing.model.FieldMetadata;
 import com.bdl.annotation.processing.model.InheritanceMetadata;
+import com.bdl.annotation.processing.model.MethodMetadata;
 import com.bdl.annotation.processing.model.TypeMetadata;
 import com.bdl.annotation.processing.model.Visibility;
 import com.bdl.auto.delegate.AutoDelegate;
+import com.bdl.auto.delegate.AutoInvoker;
+import com.bdl.auto.delegate.AutoMulticast;
+import com.bdl.auto.processor.ElementTiming;
+import com.bdl.auto.processor.MetadataCache;
+import com.bdl.auto.processor.RegistryIndex;
+import com.bdl.auto.processor.RenderPool;
+import com.bdl.auto.processor.SourceFingerprints;
+import com.bdl.auto.processor.TimingReport;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 import javax.annotation.processing.AbstractProcessor;
@@ -24,81 +38,352 @@ import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 
 /**
- * Annotation Processor to generate AutoDelegate classes.
+ * Annotation Processor to generate AutoDelegate classes, and the multicasters of AutoMulticast
+ * interfaces and invokers of AutoInvoker interfaces.
  *
  * @author Ben Leitner
  */
-@SupportedAnnotationTypes("com.bdl.auto.delegate.AutoDelegate")
-@SupportedSourceVersion(SourceVersion.RELEASE_7)
+@SupportedAnnotationTypes({
+    "com.bdl.auto.delegate.AutoDelegate",
+    "com.bdl.auto.delegate.AutoInvoker",
+    "com.bdl.auto.delegate.AutoMulticast"})
+@SupportedOptions({
+    MetadataCache.STATS_OPTION,
+    RenderPool.PARALLEL_OPTION,
+    RegistryIndex.INDEX_OPTION,
+    SourceFingerprints.FINGERPRINT_OPTION,
+    SourceFingerprints.SKIP_OPTION,
+    TimingReport.REPORT_OPTION})
+@SupportedSourceVersion(SourceVersion.RELEASE_8)
 public class AutoDelegateProcessor extends AbstractProcessor {
 
   private Messager messager;
+  private MetadataCache cache;
+  private TimingReport timingReport;
+  @Nullable private RenderPool renderPool;
+  @Nullable private SourceFingerprints fingerprints;
+  @Nullable private RegistryIndex registryIndex;
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
     super.init(processingEnv);
     messager = processingEnv.getMessager();
+    cache = MetadataCache.forEnvironment(processingEnv);
+    timingReport = TimingReport.forEnvironment(processingEnv);
+    renderPool = RenderPool.fromOptions(processingEnv);
+    fingerprints = SourceFingerprints.forEnvironment(processingEnv);
+    registryIndex = RegistryIndex.forEnvironment(processingEnv);
+  }
+
+  @Override
+  public Set<String> getSupportedOptions() {
+    return RegistryIndex.withIncrementalCategory(super.getSupportedOptions(), processingEnv);
   }
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    List<TypeElement> elements = Lists.newArrayList();
+    Element invalid = null;
     for (Element element : roundEnv.getElementsAnnotatedWith(AutoDelegate.class)) {
       if (element.getKind() != ElementKind.CLASS
           || !element.getModifiers().contains(Modifier.ABSTRACT)) {
-        messager.printMessage(
-            Diagnostic.Kind.ERROR,
-            String.format(
-                "AutoDelegate Annotation applied element %s, which is not an abstract class.",
-                element),
-            element);
-        return true;
+        invalid = element;
+        break;
       }
-      processElement((TypeElement) element);
+      elements.add((TypeElement) element);
     }
 
+    if (renderPool == null) {
+      for (TypeElement element : elements) {
+        processElement(element);
+      }
+    } else {
+      processInParallel(elements);
+    }
+    // Multicasters and invokers are small, so they're always generated here rather than on the
+    // pool.
+    for (Element element : roundEnv.getElementsAnnotatedWith(AutoMulticast.class)) {
+      processMulticast(element);
+    }
+    for (Element element : roundEnv.getElementsAnnotatedWith(AutoInvoker.class)) {
+      processInvoker(element);
+    }
+
+    if (invalid != null) {
+      messager.printMessage(
+          Diagnostic.Kind.ERROR,
+          String.format(
+              "AutoDelegate Annotation applied element %s, which is not an abstract class.",
+              invalid),
+          invalid);
+    }
+
+    if (registryIndex != null) {
+      registryIndex.flush(processingEnv);
+    }
+
+    if (roundEnv.processingOver()) {
+      cache.reportStats(processingEnv);
+      timingReport.finish(processingEnv);
+      if (fingerprints != null) {
+        fingerprints.finish(processingEnv);
+      }
+      if (registryIndex != null) {
+        registryIndex.finish(processingEnv);
+      }
+      if (renderPool != null) {
+        renderPool.shutdown();
+      }
+    }
     return true;
   }
 
-  private void processElement(final TypeElement element) {
-    ClassMetadata classMetadata = ClassMetadata.fromElement(element);
+  private void processElement(TypeElement element) {
+    ElementTiming timing =
+        timingReport.start("AutoDelegate", element.getQualifiedName().toString());
+    ClassMetadata classMetadata = readMetadata(element, timing);
+    DelegateOptions options = DelegateOptions.fromElement(element);
 
-    if (!validate(classMetadata)) {
+    String error = validationError(element, classMetadata, options);
+    if (error != null) {
+      messager.printMessage(Diagnostic.Kind.ERROR, error);
       return;
     }
 
     try {
-      JavaFileObjectWriterFunction writerFunction = new JavaFileObjectWriterFunction(processingEnv);
+      AutoDelegateWriter writer = newWriter(element, timing, options);
+      writer.write(classMetadata);
+      if (registryIndex != null) {
+        writer.register(registryIndex, classMetadata, element);
+      }
+      if (options.async()) {
+        newAsyncWriter(element, timing).write(classMetadata);
+      }
+      if (options.recorded()) {
+        newReplayerWriter(element, timing, classMetadata).write(classMetadata);
+      }
+    } catch (Exception ex) {
+      reportError(ex);
+    }
+  }
 
-      AutoDelegateWriter writer = new AutoDelegateWriter(writerFunction,
-          new AutoDelegateWriter.Recorder() {
-            @Override
-            public void record(String s) {
-              messager.printMessage(Diagnostic.Kind.NOTE, s, element);
-            }
-          });
+  private void processMulticast(Element element) {
+    if (element.getKind() != ElementKind.INTERFACE) {
+      messager.printMessage(
+          Diagnostic.Kind.ERROR,
+          String.format(
+              "AutoMulticast Annotation applied to element %s, which is not an interface.",
+              element),
+          element);
+      return;
+    }
+    TypeElement type = (TypeElement) element;
+    ElementTiming timing =
+        timingReport.start("AutoMulticast", type.getQualifiedName().toString());
+    ClassMetadata classMetadata = readMetadata(type, timing);
+    for (MethodMetadata method : cache.abstractMethods(classMetadata)) {
+      if (!method.type().name().equals("void")) {
+        messager.printMessage(
+            Diagnostic.Kind.ERROR,
+            String.format(
+                "Interface %s's method %s returns a value, so it can't be multicast.",
+                classMetadata.type().name(), method.name()),
+            element);
+        return;
+      }
+    }
+
+    MulticasterWriter writer = new MulticasterWriter(
+        new JavaFileObjectWriterFunction(processingEnv, type, fingerprints), cache);
+    writer.setTiming(timing);
+    writer.setIsolateExceptions(type.getAnnotation(AutoMulticast.class).isolateExceptions());
+    try {
       writer.write(classMetadata);
     } catch (Exception ex) {
+      reportError(ex);
+    }
+  }
+
+  private void processInvoker(Element element) {
+    if (element.getKind() != ElementKind.INTERFACE) {
       messager.printMessage(
           Diagnostic.Kind.ERROR,
-          "Error in AutoDelegate Processor\n"
-              + ex.getMessage()
-              + "\n"
-              + Throwables.getStackTraceAsString(ex));
+          String.format(
+              "AutoInvoker Annotation applied to element %s, which is not an interface.",
+              element),
+          element);
+      return;
     }
+    TypeElement type = (TypeElement) element;
+    // The invoker casts arguments to the parameter types, which can't name a method's own type
+    // variables.
+    ExecutableElement generic = genericMethod(type, Modifier.ABSTRACT);
+    if (generic != null) {
+      messager.printMessage(
+          Diagnostic.Kind.ERROR,
+          String.format(
+              "Interface %s's method %s is generic, so it can't be invoked by ID.",
+              type.getSimpleName(), generic.getSimpleName()),
+          element);
+      return;
+    }
+    ElementTiming timing = timingReport.start("AutoInvoker", type.getQualifiedName().toString());
+    ClassMetadata classMetadata = readMetadata(type, timing);
+    InvokerWriter writer = new InvokerWriter(
+        new JavaFileObjectWriterFunction(processingEnv, type, fingerprints), cache);
+    writer.setTiming(timing);
+    try {
+      writer.write(classMetadata);
+    } catch (Exception ex) {
+      reportError(ex);
+    }
+  }
+
+  /**
+   * Generates delegates for all of the elements, rendering them on the {@link RenderPool}.
+   *
+   * <p>Metadata is read and every file and message is written here on the processing thread, in
+   * the same order as {@link #processElement}, so the output matches serial processing.
+   */
+  private void processInParallel(List<TypeElement> elements) {
+    List<Generation> generations = Lists.newArrayList();
+    for (TypeElement element : elements) {
+      ElementTiming timing =
+          timingReport.start("AutoDelegate", element.getQualifiedName().toString());
+      final ClassMetadata classMetadata = readMetadata(element, timing);
+      DelegateOptions options = DelegateOptions.fromElement(element);
+      Generation generation = new Generation(element, classMetadata);
+      generation.error = validationError(element, classMetadata, options);
+      if (generation.error == null) {
+        final AutoDelegateWriter writer = newWriter(element, timing, options);
+        final AsyncCompanionWriter asyncWriter =
+            options.async() ? newAsyncWriter(element, timing) : null;
+        // Resolve the inherited methods here rather than on the pool.
+        long start = System.nanoTime();
+        cache.abstractMethods(classMetadata);
+        timing.addMetadata(System.nanoTime() - start);
+        generation.writer = writer;
+        generation.asyncWriter = asyncWriter;
+        generation.replayerWriter = options.recorded()
+            ? newReplayerWriter(element, timing, classMetadata)
+            : null;
+        generation.render = renderPool.submit(new Runnable() {
+          @Override
+          public void run() {
+            writer.render(classMetadata);
+            if (asyncWriter != null) {
+              asyncWriter.render(classMetadata);
+            }
+          }
+        });
+      }
+      generations.add(generation);
+    }
+
+    for (Generation generation : generations) {
+      if (generation.error != null) {
+        messager.printMessage(Diagnostic.Kind.ERROR, generation.error);
+        continue;
+      }
+      try {
+        Writer writer = generation.writer.open(generation.classMetadata);
+        Writer asyncWriter = generation.asyncWriter == null
+            ? null
+            : generation.asyncWriter.open(generation.classMetadata);
+        generation.render.get();
+        generation.writer.flush(writer);
+        if (registryIndex != null) {
+          generation.writer.register(registryIndex, generation.classMetadata, generation.element);
+        }
+        if (generation.asyncWriter != null) {
+          generation.asyncWriter.flush(asyncWriter);
+        }
+        if (generation.replayerWriter != null) {
+          // Replayers are small, so they're rendered here rather than on the pool.
+          generation.replayerWriter.write(generation.classMetadata);
+        }
+      } catch (ExecutionException ex) {
+        reportError(ex.getCause());
+      } catch (Exception ex) {
+        reportError(ex);
+      }
+    }
+  }
+
+  private ClassMetadata readMetadata(TypeElement element, ElementTiming timing) {
+    long start = System.nanoTime();
+    ClassMetadata classMetadata = ClassMetadata.fromElement(element);
+    timing.addMetadata(System.nanoTime() - start);
+    return classMetadata;
+  }
+
+  private AutoDelegateWriter newWriter(
+      final TypeElement element, ElementTiming timing, DelegateOptions options) {
+    JavaFileObjectWriterFunction writerFunction =
+        new JavaFileObjectWriterFunction(processingEnv, element, fingerprints);
+
+    AutoDelegateWriter writer = new AutoDelegateWriter(writerFunction,
+        new AutoDelegateWriter.Recorder() {
+          @Override
+          public void record(String s) {
+            messager.printMessage(Diagnostic.Kind.NOTE, s, element);
+          }
+        },
+        cache);
+    writer.setTiming(timing);
+    writer.setOptions(options);
+    return writer;
+  }
+
+  private AsyncCompanionWriter newAsyncWriter(TypeElement element, ElementTiming timing) {
+    AsyncCompanionWriter writer = new AsyncCompanionWriter(
+        new JavaFileObjectWriterFunction(processingEnv, element, fingerprints));
+    writer.setTiming(timing);
+    writer.setStaticMethods(staticMethods(element));
+    return writer;
+  }
+
+  private InvokerWriter newReplayerWriter(
+      TypeElement element, ElementTiming timing, ClassMetadata classMetadata) {
+    InvokerWriter writer = new InvokerWriter(
+        new JavaFileObjectWriterFunction(processingEnv, element, fingerprints), cache);
+    writer.setTiming(timing);
+    // Replays through the inherited type, so that any implementation of it can be driven.
+    writer.setReplayedType(AutoDelegateWriter.delegateField(classMetadata));
+    return writer;
+  }
+
+  private void reportError(Throwable ex) {
+    messager.printMessage(
+        Diagnostic.Kind.ERROR,
+        "Error in AutoDelegate Processor\n"
+            + ex.getMessage()
+            + "\n"
+            + Throwables.getStackTraceAsString(ex));
   }
 
   /**
-   * Ensures that the class meets the requirements for being auto-delegated.
+   * Ensures that the class meets the requirements for being auto-delegated, returning a message
+   * describing the first requirement that is not met, or {@code null} if all of them are.
    *
    * <ul>
    * <li>Must have a single inheritance, either implementing a single interface or extending a
@@ -106,9 +391,22 @@ public class AutoDelegateProcessor extends AbstractProcessor {
    * <li>Must have a protected final field of the same type as the inherited type and named
    *     "com.bdl.auto.delegate".
    * <li>Every constructor must have a parameter of the inherited type as the first argument.
+   * <li>If a delegate target is given, it must be a non-generic class that is a subtype of the
+   *     inherited type.
+   * <li>A lazy class may not implement any methods itself, since its delegate field is null, and
+   *     neither may a swappable class, since its delegate field is never swapped.
+   * <li>Only a swappable class may be drainable.
+   * <li>If an asynchronous companion is generated, no public method may be generic, and if calls
+   *     are recorded, no abstract method may be.
+   * <li>Methods annotated with {@link com.bdl.auto.delegate.Memoize} must return a value and must
+   *     have a positive maximum size and a non-negative expiry.
+   * <li>Methods annotated with {@link com.bdl.auto.delegate.Batch} must return void, have one or
+   *     two parameters, and name a bulk method that takes a list or map of them.
    * </ul>
    */
-  private boolean validate(ClassMetadata classMetadata) {
+  @Nullable
+  private String validationError(
+      TypeElement element, ClassMetadata classMetadata, DelegateOptions options) {
     Set<InheritanceMetadata> inheritances = FluentIterable.from(classMetadata.inheritances())
         .filter(new Predicate<InheritanceMetadata>() {
           @Override
@@ -117,45 +415,157 @@ public class AutoDelegateProcessor extends AbstractProcessor {
           }
         }).toSet();
     if (inheritances.size() != 1) {
-      messager.printMessage(
-          Diagnostic.Kind.ERROR,
-          String.format(
-              "Class %s does not have a single inheritance. "
-                  + "AutoDelegate classes must implement a single interface"
-                  + " or extend a single class: was %s",
-              classMetadata.type().name(),
-              Joiner.on(", ").join(FluentIterable.from(inheritances).transform(new Function<InheritanceMetadata, String>() {
-                @Nullable
-                @Override
-                public String apply(@Nullable InheritanceMetadata input) {
-                  return input.classMetadata().fullyQualifiedPathName();
-                }
-              }))));
-      return false;
+      return String.format(
+          "Class %s does not have a single inheritance. "
+              + "AutoDelegate classes must implement a single interface"
+              + " or extend a single class: was %s",
+          classMetadata.type().name(),
+          Joiner.on(", ").join(FluentIterable.from(inheritances).transform(new Function<InheritanceMetadata, String>() {
+            @Nullable
+            @Override
+            public String apply(@Nullable InheritanceMetadata input) {
+              return input.classMetadata().fullyQualifiedPathName();
+            }
+          })));
     }
     final TypeMetadata inheritedType = FluentIterable.from(inheritances).first().get().classMetadata().type();
 
     if (noDelegateField(classMetadata, inheritedType)) {
-      messager.printMessage(
-          Diagnostic.Kind.ERROR,
-          String.format(
-              "Class %s does not have a \"delegate\" field matching the inheritance type %s.",
-              classMetadata.type().name(), inheritedType));
-      return false;
+      return String.format(
+          "Class %s does not have a \"delegate\" field matching the inheritance type %s.",
+          classMetadata.type().name(), inheritedType);
     }
 
     for (ConstructorMetadata constructor : classMetadata.constructors()) {
       if (constructor.parameters().size() < 1
           || !constructor.parameters().get(0).type().equals(inheritedType)) {
-        messager.printMessage(
-            Diagnostic.Kind.ERROR,
-            String.format(
-                "Class %s's constructor %s does not have a first parameter matching the inheritance type %s.",
-                classMetadata.type().name(), constructor, inheritedType));
-        return false;
+        return String.format(
+            "Class %s's constructor %s does not have a first parameter matching the inheritance type %s.",
+            classMetadata.type().name(), constructor, inheritedType);
       }
     }
-    return true;
+    if (options.lazy() && options.swappable()) {
+      return String.format(
+          "Class %s can't be both lazy and swappable.", classMetadata.type().name());
+    }
+    if (options.lazy()) {
+      ExecutableElement concrete = concreteMethod(element);
+      if (concrete != null) {
+        return String.format(
+            "Class %s is lazy, so its delegate field is null, but it implements method %s, which"
+                + " could use it.",
+            classMetadata.type().name(), concrete.getSimpleName());
+      }
+    }
+    if (options.drainable() && !options.swappable()) {
+      return String.format(
+          "Class %s is drainable, but it isn't swappable.", classMetadata.type().name());
+    }
+    if (options.swappable()) {
+      ExecutableElement concrete = concreteMethod(element);
+      if (concrete != null) {
+        return String.format(
+            "Class %s is swappable, so its delegate field keeps the first delegate, but it"
+                + " implements method %s, which could use it.",
+            classMetadata.type().name(), concrete.getSimpleName());
+      }
+    }
+    if (options.sampleEvery() < 1) {
+      return String.format(
+          "Class %s has sampleEvery %d, but it must be positive.",
+          classMetadata.type().name(), options.sampleEvery());
+    }
+    if (options.sampleEvery() > 1 && !options.metrics()) {
+      return String.format(
+          "Class %s has sampleEvery set, but it doesn't record metrics.",
+          classMetadata.type().name());
+    }
+    if (options.async()) {
+      ExecutableElement generic = genericMethod(element, Modifier.PUBLIC);
+      if (generic != null) {
+        return String.format(
+            "Class %s's method %s is generic, so it can't be called asynchronously.",
+            classMetadata.type().name(), generic.getSimpleName());
+      }
+    }
+    if (options.recorded()) {
+      ExecutableElement generic = genericMethod(element, Modifier.ABSTRACT);
+      if (generic != null) {
+        return String.format(
+            "Class %s's method %s is generic, so its calls can't be replayed.",
+            classMetadata.type().name(), generic.getSimpleName());
+      }
+    }
+    String targetError = targetError(element, classMetadata, options);
+    return targetError != null ? targetError : methodError(classMetadata, options);
+  }
+
+  @Nullable
+  private String methodError(ClassMetadata classMetadata, DelegateOptions options) {
+    for (MethodMetadata method : cache.abstractMethods(classMetadata)) {
+      MethodOptions methodOptions = MethodOptions.of(method);
+      Batching batching = methodOptions.batching();
+      if (methodOptions.readOnly() && !options.threadSafe()) {
+        return String.format(
+            "Class %s's method %s is read-only but the class is not threadSafe.",
+            classMetadata.type().name(), method.name());
+      }
+      if (methodOptions.readOnly() && batching != null) {
+        return String.format(
+            "Class %s's method %s can't be both read-only and batched.",
+            classMetadata.type().name(), method.name());
+      }
+      if (batching != null) {
+        String error = batching.error(classMetadata, method);
+        if (error != null) {
+          return error;
+        }
+      }
+      Memoization memoization = methodOptions.memoization();
+      if (memoization == null) {
+        continue;
+      }
+      if (batching != null) {
+        return String.format(
+            "Class %s's method %s can't be both memoized and batched.",
+            classMetadata.type().name(), method.name());
+      }
+      if (method.type().name().equals("void")) {
+        return String.format(
+            "Class %s's method %s is memoized but returns void.",
+            classMetadata.type().name(), method.name());
+      }
+      if (memoization.maxSize() < 1 || memoization.expireAfterWriteMillis() < 0) {
+        return String.format(
+            "Class %s's method %s must have a positive maxSize and a non-negative expiry.",
+            classMetadata.type().name(), method.name());
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private String targetError(
+      TypeElement element, ClassMetadata classMetadata, DelegateOptions options) {
+    TypeElement target = options.targetElement();
+    if (target == null) {
+      return null;
+    }
+    if (target.getKind() != ElementKind.CLASS || !target.getTypeParameters().isEmpty()) {
+      return String.format(
+          "Class %s's delegate target %s must be a non-generic class.",
+          classMetadata.type().name(), target.getQualifiedName());
+    }
+    Types types = processingEnv.getTypeUtils();
+    TypeMirror targetType = types.erasure(target.asType());
+    for (TypeMirror supertype : types.directSupertypes(element.asType())) {
+      if (!types.isAssignable(targetType, types.erasure(supertype))) {
+        return String.format(
+            "Class %s's delegate target %s is not a subtype of %s.",
+            classMetadata.type().name(), target.getQualifiedName(), types.erasure(supertype));
+      }
+    }
+    return null;
   }
 
   private boolean noDelegateField(ClassMetadata classMetadata, final TypeMetadata inheritedType) {
@@ -174,18 +584,133 @@ public class AutoDelegateProcessor extends AbstractProcessor {
         && field.type().equals(inheritedType);
   }
 
+  /** Returns the first instance method that {@code type} itself declares and implements, if any. */
+  @Nullable
+  private static ExecutableElement concreteMethod(TypeElement type) {
+    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+      Set<Modifier> modifiers = method.getModifiers();
+      if (!modifiers.contains(Modifier.ABSTRACT) && !modifiers.contains(Modifier.STATIC)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the first instance method of {@code type} with the {@code required} modifier and type
+   * parameters, if any.
+   */
+  @Nullable
+  private static ExecutableElement genericMethod(TypeElement type, Modifier required) {
+    for (ExecutableElement method : allMethods(type)) {
+      Set<Modifier> modifiers = method.getModifiers();
+      if (modifiers.contains(required)
+          && !modifiers.contains(Modifier.STATIC)
+          && !method.getTypeParameters().isEmpty()) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the {@link AsyncCompanionWriter#signature signatures} of the static methods of
+   * {@code type} and its supertypes.
+   */
+  private static Set<String> staticMethods(TypeElement type) {
+    Set<String> signatures = Sets.newHashSet();
+    for (ExecutableElement method : allMethods(type)) {
+      if (!method.getModifiers().contains(Modifier.STATIC)) {
+        continue;
+      }
+      List<String> parameterTypes = Lists.newArrayList();
+      for (VariableElement parameter : method.getParameters()) {
+        parameterTypes.add(typeName(parameter.asType()));
+      }
+      signatures.add(
+          AsyncCompanionWriter.signature(method.getSimpleName().toString(), parameterTypes));
+    }
+    return signatures;
+  }
+
+  /** Returns the name of {@code type} as the metadata model gives it, without type arguments. */
+  private static String typeName(TypeMirror type) {
+    switch (type.getKind()) {
+      case DECLARED:
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+      case TYPEVAR:
+        return ((TypeVariable) type).asElement().getSimpleName().toString();
+      default:
+        return type.toString();
+    }
+  }
+
+  /** Returns the methods declared by {@code type} and its supertypes other than {@code Object}. */
+  private static List<ExecutableElement> allMethods(TypeElement type) {
+    List<ExecutableElement> methods = Lists.newArrayList();
+    addMethods(type, methods, Sets.<TypeElement>newHashSet());
+    return methods;
+  }
+
+  private static void addMethods(
+      TypeElement type, List<ExecutableElement> methods, Set<TypeElement> visited) {
+    if (type.getQualifiedName().contentEquals("java.lang.Object") || !visited.add(type)) {
+      return;
+    }
+    methods.addAll(ElementFilter.methodsIn(type.getEnclosedElements()));
+    List<TypeMirror> supertypes = Lists.newArrayList(type.getInterfaces());
+    supertypes.add(type.getSuperclass());
+    for (TypeMirror supertype : supertypes) {
+      if (supertype.getKind() == TypeKind.DECLARED) {
+        addMethods((TypeElement) ((DeclaredType) supertype).asElement(), methods, visited);
+      }
+    }
+  }
+
+  /** An element being generated in parallel, with its pending render. */
+  private static class Generation {
+    private final TypeElement element;
+    private final ClassMetadata classMetadata;
+    @Nullable private String error;
+    private AutoDelegateWriter writer;
+    @Nullable private AsyncCompanionWriter asyncWriter;
+    @Nullable private InvokerWriter replayerWriter;
+    private Future<?> render;
+
+    private Generation(TypeElement element, ClassMetadata classMetadata) {
+      this.element = element;
+      this.classMetadata = classMetadata;
+    }
+  }
+
+  /**
+   * Opens generated source files through the {@link javax.annotation.processing.Filer}, recording
+   * the annotated type as the originating element so incremental builds can track the output.
+   * When fingerprinting is on, sources are handed to {@link SourceFingerprints} instead, which only
+   * writes those that have changed.
+   */
   private static class JavaFileObjectWriterFunction implements Function<String, Writer> {
 
     private final ProcessingEnvironment env;
+    private final TypeElement originatingElement;
+    @Nullable private final SourceFingerprints fingerprints;
 
-    private JavaFileObjectWriterFunction(ProcessingEnvironment env) {
+    private JavaFileObjectWriterFunction(
+        ProcessingEnvironment env,
+        TypeElement originatingElement,
+        @Nullable SourceFingerprints fingerprints) {
       this.env = env;
+      this.originatingElement = originatingElement;
+      this.fingerprints = fingerprints;
     }
 
     @Override
     public Writer apply(String input) {
+      if (fingerprints != null) {
+        return fingerprints.open(input, env, originatingElement);
+      }
       try {
-        JavaFileObject jfo = env.getFiler().createSourceFile(input);
+        JavaFileObject jfo = env.getFiler().createSourceFile(input, originatingElement);
         return jfo.openWriter();
       } catch (IOException ex) {
         throw new RuntimeException(ex);
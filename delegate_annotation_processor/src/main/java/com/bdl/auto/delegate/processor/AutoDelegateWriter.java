@@ -1,7 +1,6 @@
 package com.bdl.auto.delegate.processor;
 
 import com.google.common.base.Function;
-import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
@@ -9,18 +8,45 @@ import com.google.common.collect.Ordering;
 
 import com.bdl.annotation.processing.model.ClassMetadata;
 import com.bdl.annotation.processing.model.ConstructorMetadata;
+import com.bdl.annotation.processing.model.FieldMetadata;
 import com.bdl.annotation.processing.model.Imports;
 import com.bdl.annotation.processing.model.MethodMetadata;
 import com.bdl.annotation.processing.model.ParameterMetadata;
 import com.bdl.annotation.processing.model.TypeMetadata;
 import com.bdl.annotation.processing.model.Visibility;
+import com.bdl.auto.delegate.BulkheadScope;
+import com.bdl.auto.delegate.CallRecorder;
+import com.bdl.auto.delegate.ConcurrencyLimit;
+import com.bdl.auto.delegate.ConcurrencyLimiter;
+import com.bdl.auto.delegate.DelegateInterceptor;
+import com.bdl.auto.delegate.DelegateLease;
+import com.bdl.auto.delegate.DelegateStats;
+import com.bdl.auto.delegate.DelegateSwitch;
+import com.bdl.auto.delegate.ListBatcher;
+import com.bdl.auto.delegate.LongKeyCache;
+import com.bdl.auto.delegate.MapBatcher;
+import com.bdl.auto.delegate.MemoCache;
+import com.bdl.auto.delegate.MemoStats;
+import com.bdl.auto.delegate.MethodDescriptor;
+import com.bdl.auto.delegate.MethodMetrics;
+import com.bdl.auto.delegate.ObjectKeyCache;
+import com.bdl.auto.processor.ElementTiming;
+import com.bdl.auto.processor.MetadataCache;
+import com.bdl.auto.processor.RegistryIndex;
+import com.bdl.auto.processor.SourceEmitter;
 
 import java.io.IOException;
 import java.io.Writer;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 import javax.annotation.Generated;
 import javax.annotation.Nullable;
+import javax.lang.model.element.Element;
 
 /**
  * A class that writes out Auto-implementations.
@@ -35,33 +61,124 @@ public class AutoDelegateWriter {
 
   private final Function<String, Writer> writerFunction;
   private final Recorder log;
+  private final MetadataCache cache;
+  private final SourceEmitter emitter = new SourceEmitter();
+  private ElementTiming timing = ElementTiming.untracked();
+  private DelegateOptions options = DelegateOptions.DEFAULT;
+  /** The type calls are forwarded to in the class being rendered. */
+  @Nullable private TypeMetadata delegateType;
+  /** The names of the ID constants of the methods of the class being rendered, if intercepted. */
+  private String[] methodIds;
 
   public AutoDelegateWriter(Function<String, Writer> writerFunction, Recorder log) {
+    this(writerFunction, log, MetadataCache.create());
+  }
+
+  public AutoDelegateWriter(
+      Function<String, Writer> writerFunction, Recorder log, MetadataCache cache) {
     this.writerFunction = writerFunction;
     this.log = log;
+    this.cache = cache;
+  }
+
+  /** Records the time spent in each phase of writing to {@code timing}. */
+  void setTiming(ElementTiming timing) {
+    this.timing = timing;
+  }
+
+  /** Sets the options of the {@link com.bdl.auto.delegate.AutoDelegate} annotation to honor. */
+  void setOptions(DelegateOptions options) {
+    this.options = options;
   }
 
   public void write(ClassMetadata clazz) throws IOException {
+    Writer writer = open(clazz);
+    render(clazz);
+    flush(writer);
+  }
+
+  /** Logs that {@code clazz} is being written and opens the source file for its delegate. */
+  Writer open(ClassMetadata clazz) {
     TypeMetadata type = clazz.type();
     log.record(String.format("Writing Delegate class for %s", type.fullyQualifiedPathName()));
 
-    Writer writer =
-        writerFunction.apply(
-            type.packagePrefix() + "Auto_" + type.nestingPrefix("_") + type.name() + "_Delegate");
+    long start = System.nanoTime();
+    Writer writer = writerFunction.apply(
+        type.packagePrefix() + "Auto_" + type.nestingPrefix("_") + type.name() + "_Delegate");
+    timing.addWrite(System.nanoTime() - start);
+    return writer;
+  }
 
+  /**
+   * Renders the delegate for {@code clazz} into this writer's buffer. Neither logs nor opens files,
+   * so it may run off the processing thread as long as the writer itself is not shared.
+   */
+  void render(ClassMetadata clazz) {
+    long start = System.nanoTime();
     ImmutableSet.Builder<TypeMetadata> types = ImmutableSet.builder();
     types.add(clazz.type());
     types.add(TypeMetadata.from(Generated.class));
-    List<MethodMetadata> methods = FluentIterable.from(clazz.getAllMethods())
-        .filter(new Predicate<MethodMetadata>() {
-          @Override
-          public boolean apply(@Nullable MethodMetadata input) {
-            return input.modifiers().isAbstract();
-          }
-        })
-        .toSortedList(Ordering.<MethodMetadata>natural());
-    for (MethodMetadata method : methods) {
+    if (options.target() != null) {
+      types.add(options.target());
+    }
+    if (options.metrics()) {
+      types.add(TypeMetadata.from(MethodMetrics.class));
+      types.add(TypeMetadata.from(DelegateStats.class));
+    }
+    if (options.threadSafe()) {
+      types.add(TypeMetadata.from(StampedLock.class));
+    }
+    if (options.lazy()) {
+      types.add(TypeMetadata.from(Supplier.class));
+    }
+    if (options.intercepted()) {
+      types.add(TypeMetadata.from(DelegateInterceptor.class));
+    }
+    if (hasMethodTable()) {
+      types.add(TypeMetadata.from(MethodDescriptor.class));
+      types.add(TypeMetadata.from(List.class));
+    }
+    if (options.bulkhead() != BulkheadScope.NONE) {
+      types.add(TypeMetadata.from(ConcurrencyLimit.class));
+      types.add(TypeMetadata.from(ConcurrencyLimiter.class));
+    }
+    if (options.recorded()) {
+      types.add(TypeMetadata.from(CallRecorder.class));
+    }
+    if (options.swappable()) {
+      types.add(TypeMetadata.from(DelegateSwitch.class));
+    }
+    if (options.drainable()) {
+      types.add(TypeMetadata.from(DelegateLease.class));
+      types.add(TypeMetadata.from(TimeUnit.class));
+      types.add(TypeMetadata.from(TimeoutException.class));
+    }
+    List<MethodMetadata> methods = cache.abstractMethods(clazz);
+    MethodOptions[] methodOptions = new MethodOptions[methods.size()];
+    boolean memoized = false;
+    boolean batched = false;
+    for (int i = 0; i < methods.size(); i++) {
+      MethodMetadata method = methods.get(i);
       types.addAll(method.getAllTypes());
+      methodOptions[i] = MethodOptions.of(method);
+      Memoization memoization = methodOptions[i].memoization();
+      if (memoization != null) {
+        types.add(TypeMetadata.from(
+            memoization.longKey() ? LongKeyCache.class : ObjectKeyCache.class));
+        memoized = true;
+      }
+      if (methodOptions[i].batching() != null) {
+        types.add(Batching.isKeyed(method)
+            ? TypeMetadata.from(MapBatcher.class)
+            : TypeMetadata.from(ListBatcher.class));
+        types.add(TypeMetadata.from(Batching.isKeyed(method) ? Map.class : List.class));
+        batched = true;
+      }
+    }
+    if (memoized) {
+      types.add(TypeMetadata.from(Map.class));
+      types.add(TypeMetadata.from(MemoCache.class));
+      types.add(TypeMetadata.from(MemoStats.class));
     }
 
     final List<ConstructorMetadata> constructors = FluentIterable.from(clazz.constructors())
@@ -76,111 +193,742 @@ public class AutoDelegateWriter {
     for (ConstructorMetadata constructor : constructors) {
       types.addAll(constructor.getAllTypes());
     }
+    long importsStart = System.nanoTime();
     Imports imports = Imports.create(clazz.type().packageName(), types.build());
-    writeClassOpening(writer, clazz, imports);
+    long importsNanos = System.nanoTime() - importsStart;
+    emitter.reset();
+    writeClassOpening(clazz, imports);
+    delegateType = options.target() != null ? options.target() : delegateField(clazz);
+    methodIds = hasMethodTable() ? MethodTable.ids(methods) : null;
+    writeFields(imports, methods, methodOptions);
 
     for (ConstructorMetadata constructor : constructors) {
-      writeConstructor(writer, imports, constructor);
+      writeConstructor(imports, constructor);
     }
 
-    for (MethodMetadata method : methods) {
-      writeMethod(writer, imports, method.asConcrete());
+    for (int i = 0; i < methods.size(); i++) {
+      writeMethod(imports, methods.get(i).asConcrete(), i, methodOptions[i]);
+    }
+    if (options.lazy()) {
+      writeLazyAccessors(imports);
+    }
+    if (options.swappable()) {
+      writeSwapMethods(imports);
+    }
+    if (options.bulkhead() != BulkheadScope.NONE) {
+      writeLimiterAccessor();
     }
-    writeClassClosing(writer);
+    if (options.metrics()) {
+      writeSnapshot();
+    }
+    if (memoized) {
+      writeMemoStats(methodOptions);
+    }
+    if (batched) {
+      writeBatchLifecycle(methodOptions);
+    }
+    writeClassClosing();
+    timing.addImports(importsNanos);
+    timing.addRender(System.nanoTime() - start - importsNanos);
+    timing.setCounts(methods.size(), constructors.size());
+  }
 
+  /** Writes out the rendered class and closes the writer. */
+  void flush(Writer writer) throws IOException {
     if (writer != null) {
+      long start = System.nanoTime();
+      emitter.writeTo(writer);
       writer.close();
+      timing.addWrite(System.nanoTime() - start);
+    }
+  }
+
+  /** Whether the generated class gives its methods IDs, with a table describing them. */
+  private boolean hasMethodTable() {
+    return options.intercepted()
+        || options.bulkhead() == BulkheadScope.PER_METHOD
+        || options.recorded();
+  }
+
+  /** Returns the type of the {@code delegate} field the processor requires, if it's there. */
+  @Nullable
+  static TypeMetadata delegateField(ClassMetadata clazz) {
+    for (FieldMetadata field : clazz.fields()) {
+      if (field.name().equals("delegate")) {
+        return field.type();
+      }
     }
+    return null;
   }
 
-  private void writeClassOpening(Writer writer, ClassMetadata clazz, final Imports imports)
-      throws IOException {
+  private void writeClassOpening(ClassMetadata clazz, Imports imports) {
     TypeMetadata type = clazz.type();
-    writeLine(writer, "package %s;", type.packageName());
-    writeLine(writer, "");
+    emitter.append("package ").append(type.packageName()).line(";");
+    emitter.newLine();
     for (String imp : imports.getImports()) {
-      writeLine(writer, "import %s;", imp);
-    }
-    writeLine(writer, "");
-    writeLine(
-        writer, "/** AutoDelegate Generated class for %s. */", type.nestingPrefix() + type.name());
-    writeLine(writer, "@Generated(\"com.bdl.auto.delegate.processor.AutoDelegateProcessor\")");
-    writeLine(
-        writer,
-        "class Auto_%s%s_Delegate%s extends %s {",
-        type.nestingPrefix("_"),
-        type.name(),
-        type.params().isEmpty()
-            ? ""
-            : "<"
-                + Joiner.on(", ").join(FluentIterable.from(type.params())
-            .transform(new Function<TypeMetadata, String>() {
-              @Nullable
-              @Override
-              public String apply(@Nullable TypeMetadata input) {
-                return input.toString(imports, true);
-              }
-            }))
-                + ">",
-        type.toString(imports));
-  }
-
-  private void writeConstructor(Writer writer, final Imports imports, ConstructorMetadata constructor)
-      throws IOException {
-    writeLine(writer, "");
-    writeLine(
-        writer,
-        "  %sAuto_%s%s_Delegate(%s) {",
-        constructor.visibility().prefix(),
-        constructor.type().nestingPrefix("_"),
-        constructor.type().name(),
-        Joiner.on(", ").join(FluentIterable.from(constructor.parameters())
-            .transform(new Function<ParameterMetadata, String>() {
-              @Nullable
-              @Override
-              public String apply(@Nullable ParameterMetadata input) {
-                return input.toString(imports);
-              }
-            })));
-    writeLine(
-        writer,
-        "    super(%s);",
-        Joiner.on(", ").join(FluentIterable.from(constructor.parameters())
-            .transform(new Function<ParameterMetadata, String>() {
-              @Nullable
-              @Override
-              public String apply(@Nullable ParameterMetadata input) {
-                return input.name();
-              }
-            })));
-    writeLine(writer, "  }");
-  }
-
-  private void writeMethod(Writer writer, Imports imports, MethodMetadata method)
-      throws IOException {
-    writeLine(writer, "");
-    writeLine(writer, "  @Override");
-    writeLine(writer, "  %s {", method.toString(imports));
-    writeLine(writer, "    %sdelegate.%s(%s);",
-        method.type().name().equals("void") ? "" : "return ",
-        method.name(),
-        Joiner.on(", ").join(FluentIterable.from(method.parameters()).transform(new Function<ParameterMetadata, String>() {
-          @Nullable
-          @Override
-          public String apply(@Nullable ParameterMetadata input) {
-            return input.name();
-          }
-        })));
-    writeLine(writer, "  }");
+      emitter.append("import ").append(imp).line(";");
+    }
+    emitter.newLine();
+    emitter.append("/** AutoDelegate Generated class for ")
+        .append(type.nestingPrefix())
+        .append(type.name())
+        .line(". */");
+    emitter.line("@Generated(\"com.bdl.auto.delegate.processor.AutoDelegateProcessor\")");
+    emitter.append(options.target() == null ? "class Auto_" : "final class Auto_")
+        .append(type.nestingPrefix("_"))
+        .append(type.name())
+        .append("_Delegate")
+        .appendTypeParameters(type.params(), imports)
+        .append(" extends ")
+        .append(type.toString(imports))
+        .line(" {");
+  }
+
+  private void writeFields(
+      Imports imports, List<MethodMetadata> methods, MethodOptions[] methodOptions) {
+    if (hasMethodTable()) {
+      writeMethodTable(imports, methods);
+    }
+    if (options.bulkhead() == BulkheadScope.SHARED) {
+      emitter.newLine();
+      emitter.line("  private final ConcurrencyLimiter concurrencyLimiter;");
+    } else if (options.bulkhead() == BulkheadScope.PER_METHOD) {
+      emitter.newLine();
+      emitter.line("  private final ConcurrencyLimiter[] concurrencyLimiters;");
+    }
+    if (options.recorded()) {
+      emitter.newLine();
+      emitter.line("  private final CallRecorder callRecorder;");
+    }
+    if (options.swappable()) {
+      emitter.newLine();
+      emitter.append("  private final DelegateSwitch<").append(delegateType.toString(imports))
+          .line("> delegateSwitch;");
+    } else if (options.lazy()) {
+      emitter.newLine();
+      emitter.append("  private volatile ").append(delegateType.toString(imports))
+          .line(" lazyDelegate;");
+      emitter.append("  private Supplier<? extends ").append(delegateType.toString(imports))
+          .line("> delegateSupplier;");
+    } else if (options.target() != null) {
+      emitter.newLine();
+      emitter.append("  private final ")
+          .append(options.target().toString(imports))
+          .line(" concreteDelegate;");
+    }
+    if (options.threadSafe()) {
+      emitter.newLine();
+      emitter.line("  private final StampedLock stampedLock = new StampedLock();");
+    }
+    if (options.metrics()) {
+      // Indexed by the position of the forwarded method, see writeMethod.
+      emitter.newLine();
+      emitter.append("  private final MethodMetrics[] metrics = MethodMetrics.forMethods(");
+      if (options.sampleEvery() > 1) {
+        emitter.append(options.sampleEvery()).append(',');
+      }
+      for (int i = 0; i < methods.size(); i++) {
+        emitter.line(i == 0 ? "" : ",").append("      \"");
+        appendSignature(imports, methods.get(i));
+        emitter.append('"');
+      }
+      emitter.line(");");
+    }
+    for (int i = 0; i < methods.size(); i++) {
+      MethodMetadata method = methods.get(i);
+      if (methodOptions[i].batching() != null) {
+        writeBatcher(imports, method, i, methodOptions[i].batching());
+      }
+      Memoization memoization = methodOptions[i].memoization();
+      if (memoization == null) {
+        continue;
+      }
+      String cacheType = memoization.longKey() ? "LongKeyCache" : "ObjectKeyCache";
+      String valueType = Primitives.boxed(method.type(), method.type().toString(imports));
+      emitter.newLine();
+      emitter.append("  private final ").append(cacheType).append('<').append(valueType)
+          .append("> memoCache").append(i).line(" =");
+      emitter.append("      new ").append(cacheType).append("<>(\"");
+      appendSignature(imports, method);
+      emitter.append("\", ")
+          .append(memoization.maxSize())
+          .append(", ")
+          .append(String.valueOf(memoization.expireAfterWriteMillis()))
+          .line("L);");
+    }
+  }
+
+  private void writeMethodTable(Imports imports, List<MethodMetadata> methods) {
+    MethodTable.write(emitter, imports, methods, methodIds);
+    if (options.intercepted()) {
+      emitter.newLine();
+      emitter.line("  private final DelegateInterceptor interceptor;");
+    }
+  }
+
+  /**
+   * Adds the delegate rendered for {@code clazz} to {@code index}, if it has a constructor that
+   * takes only the delegate.
+   */
+  void register(RegistryIndex index, ClassMetadata clazz, Element originatingElement) {
+    if (options.lazy()
+        || options.intercepted()
+        || options.bulkhead() != BulkheadScope.NONE
+        || options.recorded()) {
+      return;
+    }
+    TypeMetadata type = clazz.type();
+    for (ConstructorMetadata constructor : clazz.constructors()) {
+      if (constructor.visibility() != Visibility.PRIVATE
+          && constructor.parameters().size() == 1) {
+        // The constructor narrows the delegate to the target, if any.
+        TypeMetadata parameterType = options.target() != null
+            ? delegateType
+            : constructor.parameters().get(0).type();
+        index.addDelegate(
+            type,
+            "new " + type.packagePrefix() + "Auto_" + type.nestingPrefix("_") + type.name()
+                + "_Delegate((" + parameterType.fullyQualifiedPathName() + ") delegate)",
+            originatingElement);
+        return;
+      }
+    }
   }
 
-  private void writeClassClosing(Writer writer) throws IOException {
-    writeLine(writer, "}");
+  /** Appends the name and parameter types of {@code method}, e.g. {@code bar(int)}. */
+  private void appendSignature(Imports imports, MethodMetadata method) {
+    emitter.append(MethodTable.signature(imports, method));
+  }
+
+
+  private void writeConstructor(Imports imports, ConstructorMetadata constructor) {
+    emitter.newLine();
+    emitter.append("  ")
+        .append(constructor.visibility().prefix())
+        .append("Auto_")
+        .append(constructor.type().nestingPrefix("_"))
+        .append(constructor.type().name())
+        .append("_Delegate(");
+    List<ParameterMetadata> parameters = constructor.parameters();
+    if (options.target() == null
+        && !options.lazy()
+        && !options.intercepted()
+        && options.bulkhead() == BulkheadScope.NONE
+        && !options.recorded()) {
+      emitter.appendParameters(parameters, imports);
+    } else {
+      // The processor requires the delegate to be the first parameter.
+      String delegate = parameters.get(0).name();
+      List<ParameterMetadata> rest = parameters.subList(1, parameters.size());
+      if (options.lazy()) {
+        emitter.append("Supplier<? extends ").append(delegateType.toString(imports)).append("> ");
+      } else {
+        // Narrows the delegate parameter to the target, if any, to keep it in a field of that type.
+        emitter.append(delegateType.toString(imports)).append(' ');
+      }
+      emitter.append(delegate);
+      if (options.intercepted()) {
+        emitter.append(", DelegateInterceptor interceptor");
+      }
+      if (options.bulkhead() != BulkheadScope.NONE) {
+        emitter.append(", ConcurrencyLimit concurrencyLimit");
+      }
+      if (options.recorded()) {
+        emitter.append(", CallRecorder callRecorder");
+      }
+      if (!rest.isEmpty()) {
+        emitter.append(", ").appendParameters(rest, imports);
+      }
+    }
+    emitter.line(") {");
+    if (options.lazy()) {
+      // The delegate is created on first use, so the annotated class never sees it.
+      List<ParameterMetadata> rest = parameters.subList(1, parameters.size());
+      emitter.append("    super(null").append(rest.isEmpty() ? "" : ", ")
+          .appendArguments(rest)
+          .line(");");
+      emitter.append("    delegateSupplier = ").append(parameters.get(0).name()).line(";");
+    } else {
+      emitter.append("    super(").appendArguments(parameters).line(");");
+    }
+    if (options.swappable()) {
+      emitter.append("    delegateSwitch = new DelegateSwitch<>(")
+          .append(parameters.get(0).name())
+          .line(");");
+    } else if (options.target() != null && !options.lazy()) {
+      emitter.append("    concreteDelegate = ").append(parameters.get(0).name()).line(";");
+    }
+    if (options.intercepted()) {
+      emitter.line("    this.interceptor = interceptor;");
+    }
+    if (options.bulkhead() == BulkheadScope.SHARED) {
+      emitter.append("    concurrencyLimiter = concurrencyLimit.newLimiter(\"")
+          .append(constructor.type().nestingPrefix())
+          .append(constructor.type().name())
+          .line("\");");
+    } else if (options.bulkhead() == BulkheadScope.PER_METHOD) {
+      emitter.line("    concurrencyLimiters = concurrencyLimit.newLimiters(METHODS);");
+    }
+    if (options.recorded()) {
+      emitter.line("    this.callRecorder = callRecorder;");
+    }
+    emitter.line("  }");
+  }
+
+  private void writeMethod(
+      Imports imports, MethodMetadata method, int index, MethodOptions methodOptions) {
+    emitter.newLine();
+    emitter.line("  @Override");
+    emitter.append("  ").append(method.toString(imports)).line(" {");
+    if (!options.intercepted()) {
+      writeRecordedBody(imports, method, index, methodOptions, "    ");
+    } else {
+      String id = methodIds[index];
+      emitter.append("    interceptor.before(").append(id).line(");");
+      emitter.line("    long interceptStart = System.nanoTime();");
+      emitter.line("    Throwable interceptError = null;");
+      emitter.line("    try {");
+      writeRecordedBody(imports, method, index, methodOptions, "      ");
+      emitter.line("    } catch (Exception | Error interceptedError) {");
+      emitter.line("      interceptError = interceptedError;");
+      emitter.line("      throw interceptedError;");
+      emitter.line("    } finally {");
+      emitter.append("      interceptor.after(").append(id)
+          .line(", System.nanoTime() - interceptStart, interceptError);");
+      emitter.line("    }");
+    }
+    emitter.line("  }");
+  }
+
+  /**
+   * Writes the method's body, recording the call with its arguments and latency if the class is
+   * recorded. Recorded after it returns or throws, so the latency is known.
+   */
+  private void writeRecordedBody(
+      Imports imports,
+      MethodMetadata method,
+      int index,
+      MethodOptions methodOptions,
+      String indent) {
+    if (!options.recorded()) {
+      writeMeteredBody(imports, method, index, methodOptions, indent);
+      return;
+    }
+    List<ParameterMetadata> parameters = method.parameters();
+    emitter.append(indent).line("long recordStart = System.nanoTime();");
+    emitter.append(indent).line("try {");
+    writeMeteredBody(imports, method, index, methodOptions, indent + "  ");
+    emitter.append(indent).line("} finally {");
+    emitter.append(indent).append("  long recordCursor = callRecorder.begin(")
+        .append(methodIds[index])
+        .append(", recordStart, System.nanoTime() - recordStart, ")
+        .append(parameters.size())
+        .line(");");
+    for (ParameterMetadata parameter : parameters) {
+      emitter.append(indent).append("  recordCursor = callRecorder.")
+          .append(recordMethod(parameter.type()))
+          .append("(recordCursor, ")
+          .append(parameter.name())
+          .line(");");
+    }
+    emitter.append(indent).line("  callRecorder.commit(recordCursor);");
+    emitter.append(indent).line("}");
+  }
+
+  /** Returns the {@link CallRecorder} method that puts an argument of the given type. */
+  private static String recordMethod(TypeMetadata type) {
+    if (Primitives.isPrimitive(type)) {
+      return "put" + Character.toUpperCase(type.name().charAt(0)) + type.name().substring(1);
+    }
+    return type.fullyQualifiedPathName().equals(String.class.getName())
+        ? "putString"
+        : "putObject";
+  }
+
+  /** Writes the method's body, recording its calls, errors and latency if metrics are on. */
+  private void writeMeteredBody(
+      Imports imports,
+      MethodMetadata method,
+      int index,
+      MethodOptions methodOptions,
+      String indent) {
+    if (!options.metrics()) {
+      writeLimitedBody(imports, method, index, methodOptions, indent);
+      return;
+    }
+    // Only primitives on the hot path. The catch rethrows precisely, so nothing is wrapped, and
+    // catches Exception and Error rather than Throwable, as generated code never catches that.
+    boolean sampled = options.sampleEvery() > 1;
+    if (sampled) {
+      emitter.append(indent).append("long metricsStart = metrics[").append(index)
+          .line("].sampleStart();");
+    } else {
+      emitter.append(indent).line("long metricsStart = System.nanoTime();");
+    }
+    emitter.append(indent).line("try {");
+    writeLimitedBody(imports, method, index, methodOptions, indent + "  ");
+    emitter.append(indent).line("} catch (Exception | Error metricsError) {");
+    emitter.append(indent).append("  metrics[").append(index).line("].recordError();");
+    emitter.append(indent).line("  throw metricsError;");
+    emitter.append(indent).line("} finally {");
+    emitter.append(indent).append("  metrics[").append(index)
+        .line(sampled
+            ? "].recordSampled(metricsStart);"
+            : "].record(System.nanoTime() - metricsStart);");
+    emitter.append(indent).line("}");
+  }
+
+  /**
+   * Writes the method's body, admitted by a {@link ConcurrencyLimiter} if there's a bulkhead.
+   * Batched methods aren't limited, since they only queue the call.
+   */
+  private void writeLimitedBody(
+      Imports imports,
+      MethodMetadata method,
+      int index,
+      MethodOptions methodOptions,
+      String indent) {
+    if (options.bulkhead() == BulkheadScope.NONE || methodOptions.batching() != null) {
+      writeLeasedBody(imports, method, index, methodOptions, indent);
+      return;
+    }
+    String limiter = options.bulkhead() == BulkheadScope.SHARED
+        ? "concurrencyLimiter"
+        : "concurrencyLimiters[" + methodIds[index] + "]";
+    emitter.append(indent).append("long bulkheadPermit = ").append(limiter).line(".acquire();");
+    emitter.append(indent).line("try {");
+    writeLeasedBody(imports, method, index, methodOptions, indent + "  ");
+    emitter.append(indent).line("} finally {");
+    emitter.append(indent).append("  ").append(limiter).line(".release(bulkheadPermit);");
+    emitter.append(indent).line("}");
+  }
+
+  /**
+   * Writes the method's body, holding a lease on the current delegate if it is drainable. Batched
+   * methods don't need one, since their batchers take one to deliver.
+   */
+  private void writeLeasedBody(
+      Imports imports,
+      MethodMetadata method,
+      int index,
+      MethodOptions methodOptions,
+      String indent) {
+    if (!options.drainable() || methodOptions.batching() != null) {
+      writeGuardedBody(imports, method, index, methodOptions, indent);
+      return;
+    }
+    openLease(imports, indent);
+    writeGuardedBody(imports, method, index, methodOptions, indent + "  ");
+    closeLease(indent);
+  }
+
+  private void openLease(Imports imports, String indent) {
+    emitter.append(indent).append("DelegateLease<").append(delegateType.toString(imports))
+        .line("> delegateLease = delegateSwitch.acquire();");
+    emitter.append(indent).line("try {");
+  }
+
+  private void closeLease(String indent) {
+    emitter.append(indent).line("} finally {");
+    emitter.append(indent).line("  delegateLease.release();");
+    emitter.append(indent).line("}");
+  }
+
+  /**
+   * Writes the method's body, holding the lock if the delegate is thread-safe. Batched methods
+   * don't hold it, since their batchers take it to deliver. Memoized methods only take it on a
+   * cache miss, since the cache itself takes no lock.
+   */
+  private void writeGuardedBody(
+      Imports imports,
+      MethodMetadata method,
+      int index,
+      MethodOptions methodOptions,
+      String indent) {
+    if (!options.threadSafe() || methodOptions.batching() != null) {
+      writeBody(imports, method, index, methodOptions, indent);
+      return;
+    }
+    Memoization memoization = methodOptions.memoization();
+    if (memoization == null) {
+      writeLock(methodOptions, indent);
+      writeBody(imports, method, index, methodOptions, indent + "  ");
+      writeUnlock(methodOptions, indent);
+      return;
+    }
+    writeMemoLookup(imports, method, index, memoization, indent);
+    String missIndent = indent + "  ";
+    writeLock(methodOptions, missIndent);
+    emitter.append(missIndent).append("  memoValue = ");
+    appendForwardingCall(method).line(";");
+    writeUnlock(methodOptions, missIndent);
+    writeMemoStore(index, indent);
+  }
+
+  private void writeLock(MethodOptions methodOptions, String indent) {
+    emitter.append(indent).line(methodOptions.readOnly()
+        ? "long lockStamp = stampedLock.readLock();"
+        : "long lockStamp = stampedLock.writeLock();");
+    emitter.append(indent).line("try {");
+  }
+
+  private void writeUnlock(MethodOptions methodOptions, String indent) {
+    emitter.append(indent).line("} finally {");
+    emitter.append(indent).line(methodOptions.readOnly()
+        ? "  stampedLock.unlockRead(lockStamp);"
+        : "  stampedLock.unlockWrite(lockStamp);");
+    emitter.append(indent).line("}");
+  }
+
+  /** Writes the statements that return the delegate's result, from its cache if memoized. */
+  private void writeBody(
+      Imports imports,
+      MethodMetadata method,
+      int index,
+      MethodOptions methodOptions,
+      String indent) {
+    if (methodOptions.batching() != null) {
+      emitter.append(indent)
+          .append("batcher")
+          .append(index)
+          .append(Batching.isKeyed(method) ? ".put(" : ".add(")
+          .appendArguments(method.parameters())
+          .line(");");
+      return;
+    }
+    Memoization memoization = methodOptions.memoization();
+    if (memoization == null) {
+      emitter.append(indent).append(method.type().name().equals("void") ? "" : "return ");
+      appendForwardingCall(method).line(";");
+      return;
+    }
+    writeMemoLookup(imports, method, index, memoization, indent);
+    emitter.append(indent).append("  memoValue = ");
+    appendForwardingCall(method).line(";");
+    writeMemoStore(index, indent);
+  }
+
+  /** Writes the cache lookup of a memoized method, opening the block that handles a miss. */
+  private void writeMemoLookup(
+      Imports imports, MethodMetadata method, int index, Memoization memoization, String indent) {
+    emitter.append(indent)
+        .append(memoization.longKey() ? "long" : "Object")
+        .append(" memoKey = ")
+        .append(memoization.keyExpression(method.parameters()))
+        .line(";");
+    emitter.append(indent)
+        .append(Primitives.boxed(method.type(), method.type().toString(imports)))
+        .append(" memoValue = memoCache")
+        .append(index)
+        .line(".get(memoKey);");
+    emitter.append(indent).line("if (memoValue == null) {");
+  }
+
+  /** Writes the caching of a miss's result, closing its block, and the return of the result. */
+  private void writeMemoStore(int index, String indent) {
+    emitter.append(indent).append("  memoCache").append(index).line(".put(memoKey, memoValue);");
+    emitter.append(indent).line("}");
+    emitter.append(indent).line("return memoValue;");
+  }
+
+  private SourceEmitter appendForwardingCall(MethodMetadata method) {
+    return appendDelegate()
+        .append(method.name())
+        .append('(')
+        .appendArguments(method.parameters())
+        .append(')');
+  }
+
+  /** Appends the expression for the object calls are forwarded to, followed by a dot. */
+  private SourceEmitter appendDelegate() {
+    if (options.lazy()) {
+      return emitter.append("lazyDelegate().");
+    }
+    if (options.drainable()) {
+      return emitter.append("delegateLease.target().");
+    }
+    if (options.swappable()) {
+      return emitter.append("delegateSwitch.get().");
+    }
+    return emitter.append(options.target() == null ? "delegate." : "concreteDelegate.");
+  }
+
+  private void writeLazyAccessors(Imports imports) {
+    String type = delegateType.toString(imports);
+    emitter.newLine();
+    emitter.line("  /** Returns whether the delegate has been created yet. */");
+    emitter.line("  public boolean isDelegateInitialized() {");
+    emitter.line("    return lazyDelegate != null;");
+    emitter.line("  }");
+    emitter.newLine();
+    // Double-checked locking: once created, the delegate costs a single volatile read per call.
+    emitter.append("  private ").append(type).line(" lazyDelegate() {");
+    emitter.append("    ").append(type).line(" result = lazyDelegate;");
+    emitter.line("    if (result == null) {");
+    emitter.line("      synchronized (this) {");
+    emitter.line("        result = lazyDelegate;");
+    emitter.line("        if (result == null) {");
+    emitter.line("          result = delegateSupplier.get();");
+    emitter.line("          if (result == null) {");
+    emitter.line(
+        "            throw new NullPointerException(\"The delegate supplier returned null\");");
+    emitter.line("          }");
+    emitter.line("          lazyDelegate = result;");
+    emitter.line("          delegateSupplier = null;");
+    emitter.line("        }");
+    emitter.line("      }");
+    emitter.line("    }");
+    emitter.line("    return result;");
+    emitter.line("  }");
+  }
+
+  private void writeSwapMethods(Imports imports) {
+    String type = delegateType.toString(imports);
+    emitter.newLine();
+    emitter.line("  /** Forwards calls to {@code newDelegate}, returning the old delegate. */");
+    emitter.append("  public ").append(type).append(" swap(").append(type)
+        .line(" newDelegate) {");
+    emitter.line("    return delegateSwitch.swap(newDelegate);");
+    emitter.line("  }");
+    emitter.newLine();
+    emitter.line("  /**");
+    emitter.line("   * Forwards calls to {@code newDelegate} from now on if the current delegate");
+    emitter.line("   * is {@code expected}, returning whether it does.");
+    emitter.line("   */");
+    emitter.append("  public boolean compareAndSwap(").append(type).append(" expected, ")
+        .append(type).line(" newDelegate) {");
+    emitter.line("    return delegateSwitch.compareAndSwap(expected, newDelegate);");
+    emitter.line("  }");
+    if (!options.drainable()) {
+      return;
+    }
+    emitter.newLine();
+    emitter.line("  /**");
+    emitter.line("   * Forwards calls to {@code newDelegate} from now on, and returns the old");
+    emitter.line("   * delegate once the calls in flight to it have returned.");
+    emitter.line("   */");
+    emitter.append("  public ").append(type).append(" swapAndDrain(").append(type)
+        .line(" newDelegate, long timeout, TimeUnit unit)");
+    emitter.line("      throws InterruptedException, TimeoutException {");
+    emitter.line("    return delegateSwitch.swapAndDrain(newDelegate, timeout, unit);");
+    emitter.line("  }");
+  }
+
+  private void writeLimiterAccessor() {
+    emitter.newLine();
+    if (options.bulkhead() == BulkheadScope.SHARED) {
+      emitter.line("  /** Returns the limiter of the calls in flight to the delegate. */");
+      emitter.line("  public ConcurrencyLimiter concurrencyLimiter() {");
+      emitter.line("    return concurrencyLimiter;");
+    } else {
+      emitter.line("  /** Returns the limiter of the calls in flight to a method, by its ID. */");
+      emitter.line("  public ConcurrencyLimiter concurrencyLimiter(int methodId) {");
+      emitter.line("    return concurrencyLimiters[methodId];");
+    }
+    emitter.line("  }");
+  }
+
+  private void writeSnapshot() {
+    emitter.newLine();
+    emitter.line("  /** Returns the calls, errors and latency of each forwarded method so far. */");
+    emitter.line("  public DelegateStats snapshot() {");
+    emitter.line("    return DelegateStats.of(metrics);");
+    emitter.line("  }");
+    emitter.newLine();
+    emitter.line("  /** Clears the calls, errors and latency recorded for each forwarded method. */");
+    emitter.line("  public void resetStats() {");
+    emitter.line("    MethodMetrics.resetAll(metrics);");
+    emitter.line("  }");
+  }
+
+  private void writeMemoStats(MethodOptions[] methodOptions) {
+    emitter.newLine();
+    emitter.line("  /** Returns the hits, misses and evictions of each memoized method so far. */");
+    emitter.line("  public Map<String, MemoStats> memoStats() {");
+    emitter.append("    return MemoCache.stats(");
+    boolean first = true;
+    for (int i = 0; i < methodOptions.length; i++) {
+      if (methodOptions[i].memoization() != null) {
+        emitter.append(first ? "" : ", ").append("memoCache").append(i);
+        first = false;
+      }
+    }
+    emitter.line(");");
+    emitter.line("  }");
+  }
+
+  private void writeBatcher(Imports imports, MethodMetadata method, int index, Batching batching) {
+    List<ParameterMetadata> parameters = method.parameters();
+    StringBuilder arguments = new StringBuilder();
+    for (int i = 0; i < parameters.size(); i++) {
+      TypeMetadata type = parameters.get(i).type();
+      arguments.append(i == 0 ? "" : ", ").append(Primitives.boxed(type, type.toString(imports)));
+    }
+    String typeArguments = arguments.toString();
+    String batcherType = Batching.isKeyed(method) ? "MapBatcher" : "ListBatcher";
+    String batchType = Batching.isKeyed(method) ? "Map" : "List";
+    emitter.newLine();
+    emitter.append("  private final ").append(batcherType).append('<').append(typeArguments)
+        .append("> batcher").append(index).line(" =");
+    emitter.append("      new ").append(batcherType).append('<').append(typeArguments)
+        .append(">(")
+        .append(batching.maxSize())
+        .append(", ")
+        .append(String.valueOf(batching.maxDelayMillis()))
+        .line("L) {");
+    emitter.line("        @Override");
+    emitter.append("        protected void deliver(").append(batchType).append('<')
+        .append(typeArguments).line("> batch) {");
+    String indent = "          ";
+    if (options.drainable()) {
+      openLease(imports, indent);
+      indent += "  ";
+    }
+    if (options.threadSafe()) {
+      emitter.append(indent).line("long lockStamp = stampedLock.writeLock();");
+      emitter.append(indent).line("try {");
+    }
+    emitter.append(options.threadSafe() ? indent + "  " : indent);
+    appendDelegate()
+        .append(batching.bulkMethod())
+        .line("(batch);");
+    if (options.threadSafe()) {
+      emitter.append(indent).line("} finally {");
+      emitter.append(indent).line("  stampedLock.unlockWrite(lockStamp);");
+      emitter.append(indent).line("}");
+    }
+    if (options.drainable()) {
+      closeLease("          ");
+    }
+    emitter.line("        }");
+    emitter.line("      };");
+  }
+
+  private void writeBatchLifecycle(MethodOptions[] methodOptions) {
+    emitter.newLine();
+    emitter.line("  /** Sends the calls buffered for each batched method to the delegate now. */");
+    emitter.line("  public void flushBatches() {");
+    for (int i = 0; i < methodOptions.length; i++) {
+      if (methodOptions[i].batching() != null) {
+        emitter.append("    batcher").append(i).line(".flush();");
+      }
+    }
+    emitter.line("  }");
+    emitter.newLine();
+    emitter.line("  /**");
+    emitter.line("   * Sends the calls buffered for each batched method to the delegate,");
+    emitter.line("   * and rejects any further calls to them.");
+    emitter.line("   */");
+    emitter.line("  public void shutdownBatches() {");
+    for (int i = 0; i < methodOptions.length; i++) {
+      if (methodOptions[i].batching() != null) {
+        emitter.append("    batcher").append(i).line(".shutdown();");
+      }
+    }
+    emitter.line("  }");
   }
 
-  protected static void writeLine(Writer writer, String template, Object... params)
-      throws IOException {
-    writer.write(String.format(template, params));
-    writer.write("\n");
+  private void writeClassClosing() {
+    emitter.line("}");
   }
 }
@@ -0,0 +1,97 @@
+package com.bdl.auto.delegate.processor;
+
+import com.google.common.collect.ImmutableSet;
+
+import com.bdl.annotation.processing.model.AnnotationMetadata;
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.auto.delegate.Batch;
+
+import javax.annotation.Nullable;
+
+/**
+ * The settings of a method's {@link Batch} annotation.
+ *
+ * @author Ben Leitner
+ */
+final class Batching {
+
+  /** The types a bulk method may take a batch of single argument calls as. */
+  private static final ImmutableSet<String> LIST_TYPES =
+      ImmutableSet.of("java.util.List", "java.util.Collection", "java.lang.Iterable");
+
+  private static final String MAP_TYPE = "java.util.Map";
+
+  private static final int DEFAULT_MAX_SIZE = 100;
+
+  private final String bulkMethod;
+  private final int maxSize;
+  private final long maxDelayMillis;
+
+  private Batching(String bulkMethod, int maxSize, long maxDelayMillis) {
+    this.bulkMethod = bulkMethod;
+    this.maxSize = maxSize;
+    this.maxDelayMillis = maxDelayMillis;
+  }
+
+  /** Returns the batching of {@code method}, or {@code null} if it is not batched. */
+  @Nullable
+  static Batching of(MethodMetadata method) {
+    AnnotationMetadata annotation = AnnotationUtil.annotation(method, "Batch");
+    if (annotation == null) {
+      return null;
+    }
+    return new Batching(
+        AnnotationUtil.stringValue(annotation, "value", ""),
+        (int) AnnotationUtil.longValue(annotation, "maxSize", DEFAULT_MAX_SIZE),
+        AnnotationUtil.longValue(annotation, "maxDelayMillis", 0));
+  }
+
+  String bulkMethod() {
+    return bulkMethod;
+  }
+
+  int maxSize() {
+    return maxSize;
+  }
+
+  long maxDelayMillis() {
+    return maxDelayMillis;
+  }
+
+  /** Whether calls to {@code method} are batched into a map rather than a list. */
+  static boolean isKeyed(MethodMetadata method) {
+    return method.parameters().size() == 2;
+  }
+
+  /**
+   * Returns a message describing why {@code method}, a method of {@code clazz}, can't be batched
+   * this way, or {@code null} if it can.
+   */
+  @Nullable
+  String error(ClassMetadata clazz, MethodMetadata method) {
+    String prefix =
+        String.format("Class %s's batched method %s", clazz.type().name(), method.name());
+    if (!method.type().name().equals("void")) {
+      return prefix + " must return void.";
+    }
+    int arity = method.parameters().size();
+    if (arity != 1 && arity != 2) {
+      return prefix + " must have one or two parameters.";
+    }
+    if (maxSize < 1 || maxDelayMillis < 0) {
+      return prefix + " must have a positive maxSize and a non-negative maxDelayMillis.";
+    }
+    for (MethodMetadata candidate : clazz.getAllMethods()) {
+      if (candidate.name().equals(bulkMethod) && candidate.parameters().size() == 1) {
+        String batchType = candidate.parameters().get(0).type().fullyQualifiedPathName();
+        if (arity == 1 ? LIST_TYPES.contains(batchType) : batchType.equals(MAP_TYPE)) {
+          return null;
+        }
+      }
+    }
+    return String.format(
+        "%s has no bulk method %s taking a %s.",
+        prefix, bulkMethod, arity == 1 ? "List, Collection or Iterable" : "Map");
+  }
+}
@@ -0,0 +1,193 @@
+package com.bdl.auto.delegate.processor;
+
+import com.google.auto.value.AutoValue;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+import com.bdl.auto.delegate.AutoDelegate;
+import com.bdl.auto.delegate.BulkheadScope;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * The settings of an {@link AutoDelegate} annotation that affect the generated delegate.
+ *
+ * <p>Read from the element's annotation mirror rather than from the class metadata, so that
+ * {@code Class} valued settings resolve to elements.
+ *
+ * @author Ben Leitner
+ */
+@AutoValue
+abstract class DelegateOptions {
+
+  /** The options of an {@link AutoDelegate} annotation with no settings. */
+  static final DelegateOptions DEFAULT = builder().build();
+
+  /** The element of the concrete delegate class, or {@code null} if none was given. */
+  @Nullable
+  abstract TypeElement targetElement();
+
+  /** The concrete delegate class, or {@code null} if the delegate is called through its parent. */
+  @Nullable
+  abstract TypeMetadata target();
+
+  /** Whether to record the calls, errors and latency of each forwarded method. */
+  abstract boolean metrics();
+
+  /** Times one in this many calls when recording metrics. */
+  abstract int sampleEvery();
+
+  /** Whether to generate an asynchronous companion as well as the delegate. */
+  abstract boolean async();
+
+  /** Whether to guard the delegate with a lock, shared by read-only methods. */
+  abstract boolean threadSafe();
+
+  /** Whether to create the delegate from a supplier on the first forwarded call. */
+  abstract boolean lazy();
+
+  /** Whether the delegate may be replaced while calls are being forwarded to it. */
+  abstract boolean swappable();
+
+  /** Whether to count the calls in flight to each delegate, so that swaps can wait for them. */
+  abstract boolean drainable();
+
+  /** Whether to call an interceptor around each forwarded call. */
+  abstract boolean intercepted();
+
+  /** Which calls to limit the concurrency of. */
+  abstract BulkheadScope bulkhead();
+
+  /** Whether to record each forwarded call, and generate a replayer for the recordings. */
+  abstract boolean recorded();
+
+  static Builder builder() {
+    return new AutoValue_DelegateOptions.Builder()
+        .setMetrics(false)
+        .setSampleEvery(1)
+        .setAsync(false)
+        .setThreadSafe(false)
+        .setLazy(false)
+        .setSwappable(false)
+        .setDrainable(false)
+        .setIntercepted(false)
+        .setBulkhead(BulkheadScope.NONE)
+        .setRecorded(false);
+  }
+
+  @AutoValue.Builder
+  abstract static class Builder {
+    abstract Builder setTargetElement(@Nullable TypeElement targetElement);
+
+    abstract Builder setTarget(@Nullable TypeMetadata target);
+
+    abstract Builder setMetrics(boolean metrics);
+
+    abstract Builder setSampleEvery(int sampleEvery);
+
+    abstract Builder setAsync(boolean async);
+
+    abstract Builder setThreadSafe(boolean threadSafe);
+
+    abstract Builder setLazy(boolean lazy);
+
+    abstract Builder setSwappable(boolean swappable);
+
+    abstract Builder setDrainable(boolean drainable);
+
+    abstract Builder setIntercepted(boolean intercepted);
+
+    abstract Builder setBulkhead(BulkheadScope bulkhead);
+
+    abstract Builder setRecorded(boolean recorded);
+
+    abstract DelegateOptions build();
+  }
+
+  /** Reads the options from the {@link AutoDelegate} annotation on {@code element}. */
+  static DelegateOptions fromElement(TypeElement element) {
+    AnnotationMirror annotation = autoDelegate(element);
+    if (annotation == null) {
+      return DEFAULT;
+    }
+    Builder options = builder();
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+        : annotation.getElementValues().entrySet()) {
+      String name = entry.getKey().getSimpleName().toString();
+      Object value = entry.getValue().getValue();
+      switch (name) {
+        case "target":
+          TypeElement targetElement =
+              value instanceof TypeMirror ? typeElement((TypeMirror) value) : null;
+          if (targetElement != null
+              && !targetElement.getQualifiedName().contentEquals(Object.class.getName())) {
+            options.setTargetElement(targetElement)
+                .setTarget(ClassMetadata.fromElement(targetElement).type());
+          }
+          break;
+        case "metrics":
+          options.setMetrics((Boolean) value);
+          break;
+        case "sampleEvery":
+          options.setSampleEvery((Integer) value);
+          break;
+        case "async":
+          options.setAsync((Boolean) value);
+          break;
+        case "threadSafe":
+          options.setThreadSafe((Boolean) value);
+          break;
+        case "lazy":
+          options.setLazy((Boolean) value);
+          break;
+        case "swappable":
+          options.setSwappable((Boolean) value);
+          break;
+        case "drainable":
+          options.setDrainable((Boolean) value);
+          break;
+        case "intercepted":
+          options.setIntercepted((Boolean) value);
+          break;
+        case "bulkhead":
+          options.setBulkhead(
+              BulkheadScope.valueOf(((VariableElement) value).getSimpleName().toString()));
+          break;
+        case "recorded":
+          options.setRecorded((Boolean) value);
+          break;
+        default:
+          break;
+      }
+    }
+    return options.build();
+  }
+
+  @Nullable
+  private static AnnotationMirror autoDelegate(TypeElement element) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+      if (type.getQualifiedName().contentEquals(AutoDelegate.class.getName())) {
+        return mirror;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static TypeElement typeElement(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED
+        ? (TypeElement) ((DeclaredType) type).asElement()
+        : null;
+  }
+}
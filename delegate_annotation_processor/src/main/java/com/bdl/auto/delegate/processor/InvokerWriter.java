@@ -0,0 +1,220 @@
+package com.bdl.auto.delegate.processor;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.Imports;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.annotation.processing.model.ParameterMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+import com.bdl.auto.delegate.CallLog;
+import com.bdl.auto.delegate.MethodDescriptor;
+import com.bdl.auto.delegate.MethodInvoker;
+import com.bdl.auto.processor.ElementTiming;
+import com.bdl.auto.processor.MetadataCache;
+import com.bdl.auto.processor.SourceEmitter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Generated;
+import javax.annotation.Nullable;
+
+/**
+ * Writes the invoker of an interface annotated with {@link com.bdl.auto.delegate.AutoInvoker}: a
+ * {@link MethodInvoker} that switches over the IDs of the interface's methods to call them.
+ *
+ * <p>Also writes the replayer of a recorded delegate, which is an invoker of the delegate's
+ * inherited type, with the same method IDs as the delegate, that replays a {@link CallLog}.
+ *
+ * @author Ben Leitner
+ */
+final class InvokerWriter {
+
+  private final Function<String, Writer> writerFunction;
+  private final MetadataCache cache;
+  private final SourceEmitter emitter = new SourceEmitter();
+  private ElementTiming timing = ElementTiming.untracked();
+  @Nullable private TypeMetadata replayedType;
+
+  InvokerWriter(Function<String, Writer> writerFunction, MetadataCache cache) {
+    this.writerFunction = writerFunction;
+    this.cache = cache;
+  }
+
+  /** Records the time spent in each phase of writing to {@code timing}. */
+  void setTiming(ElementTiming timing) {
+    this.timing = timing;
+  }
+
+  /**
+   * Makes this write the replayer of the recorded delegate class it's given, calling the methods
+   * of {@code replayedType}, the type the delegate inherits.
+   */
+  void setReplayedType(TypeMetadata replayedType) {
+    this.replayedType = replayedType;
+  }
+
+  void write(ClassMetadata clazz) throws IOException {
+    TypeMetadata type = clazz.type();
+    long start = System.nanoTime();
+    Writer writer = writerFunction.apply(
+        type.packagePrefix() + "Auto_" + type.nestingPrefix("_") + type.name() + suffix());
+    timing.addWrite(System.nanoTime() - start);
+    render(clazz);
+    start = System.nanoTime();
+    emitter.writeTo(writer);
+    writer.close();
+    timing.addWrite(System.nanoTime() - start);
+  }
+
+  private void render(ClassMetadata clazz) {
+    long start = System.nanoTime();
+    List<MethodMetadata> methods = cache.abstractMethods(clazz);
+    ImmutableSet.Builder<TypeMetadata> types = ImmutableSet.builder();
+    types.add(clazz.type());
+    types.add(TypeMetadata.from(Generated.class));
+    types.add(TypeMetadata.from(List.class));
+    types.add(TypeMetadata.from(Map.class));
+    types.add(TypeMetadata.from(MethodDescriptor.class));
+    types.add(TypeMetadata.from(MethodInvoker.class));
+    if (replayedType != null) {
+      types.add(replayedType);
+      types.add(TypeMetadata.from(CallLog.class));
+    }
+    for (MethodMetadata method : methods) {
+      types.addAll(method.getAllTypes());
+    }
+
+    long importsStart = System.nanoTime();
+    Imports imports = Imports.create(clazz.type().packageName(), types.build());
+    long importsNanos = System.nanoTime() - importsStart;
+    emitter.reset();
+    String[] ids = MethodTable.ids(methods);
+    writeClassOpening(clazz, imports);
+    MethodTable.write(emitter, imports, methods, ids);
+    emitter.newLine();
+    emitter.line(
+        "  private static final Map<String, Integer> IDS = MethodDescriptor.index(METHODS);");
+    emitter.newLine();
+    emitter.line("  @Override");
+    emitter.line("  public int methodId(String method) {");
+    emitter.line("    Integer id = IDS.get(method);");
+    emitter.line("    return id == null ? -1 : id;");
+    emitter.line("  }");
+    String targetType = targetType(clazz).toString(imports);
+    writeInvoke(targetType, imports, methods, ids);
+    if (replayedType != null) {
+      writeReplay(targetType);
+    }
+    emitter.line("}");
+    timing.addImports(importsNanos);
+    timing.addRender(System.nanoTime() - start - importsNanos);
+    timing.setCounts(methods.size(), 0);
+  }
+
+  private void writeClassOpening(ClassMetadata clazz, Imports imports) {
+    TypeMetadata type = clazz.type();
+    emitter.append("package ").append(type.packageName()).line(";");
+    emitter.newLine();
+    for (String imp : imports.getImports()) {
+      emitter.append("import ").append(imp).line(";");
+    }
+    emitter.newLine();
+    emitter.append(replayedType == null
+            ? "/** AutoDelegate Generated invoker for "
+            : "/** AutoDelegate Generated replayer for ")
+        .append(type.nestingPrefix())
+        .append(type.name())
+        .line(". */");
+    emitter.line("@Generated(\"com.bdl.auto.delegate.processor.AutoDelegateProcessor\")");
+    emitter.append("final class Auto_")
+        .append(type.nestingPrefix("_"))
+        .append(type.name())
+        .append(suffix())
+        .appendTypeParameters(type.params(), imports)
+        .append(" implements MethodInvoker<")
+        .append(targetType(clazz).toString(imports))
+        .line("> {");
+  }
+
+  private String suffix() {
+    return replayedType == null ? "_Invoker" : "_Replayer";
+  }
+
+  private TypeMetadata targetType(ClassMetadata clazz) {
+    return replayedType == null ? clazz.type() : replayedType;
+  }
+
+  private void writeInvoke(
+      String targetType, Imports imports, List<MethodMetadata> methods, String[] ids) {
+    emitter.newLine();
+    emitter.line("  @Override");
+    if (hasUncheckedCasts(methods)) {
+      emitter.line("  @SuppressWarnings(\"unchecked\")");
+    }
+    emitter.append("  public Object invoke(")
+        .append(targetType)
+        .line(" target, int methodId, Object[] args) throws Exception {");
+    emitter.line("    switch (methodId) {");
+    for (int i = 0; i < methods.size(); i++) {
+      MethodMetadata method = methods.get(i);
+      boolean isVoid = method.type().name().equals("void");
+      emitter.append("      case ").append(ids[i]).line(":");
+      emitter.append(isVoid ? "        target." : "        return target.")
+          .append(method.name())
+          .append('(');
+      List<ParameterMetadata> parameters = method.parameters();
+      for (int j = 0; j < parameters.size(); j++) {
+        TypeMetadata parameterType = parameters.get(j).type();
+        if (j > 0) {
+          emitter.append(", ");
+        }
+        emitter.append("(")
+            .append(Primitives.boxed(parameterType, parameterType.toString(imports)))
+            .append(") args[")
+            .append(j)
+            .append("]");
+      }
+      emitter.line(");");
+      if (isVoid) {
+        emitter.line("        return null;");
+      }
+    }
+    emitter.line("      default:");
+    emitter.line("        throw new IllegalArgumentException(\"No method with ID \" + methodId);");
+    emitter.line("    }");
+    emitter.line("  }");
+  }
+
+  private void writeReplay(String targetType) {
+    emitter.newLine();
+    emitter.line("  /**");
+    emitter.line("   * Makes the complete calls in {@code log} again on {@code target}, returning");
+    emitter.line("   * the number that threw. See {@link CallLog#replay}.");
+    emitter.line("   */");
+    emitter.append("  public int replay(CallLog log, ").append(targetType)
+        .line(" target, boolean originalRate)");
+    emitter.line("      throws InterruptedException {");
+    emitter.line("    return log.replay(this, target, originalRate);");
+    emitter.line("  }");
+  }
+
+  /** Whether casting any method's arguments to its parameter types is unchecked. */
+  private static boolean hasUncheckedCasts(List<MethodMetadata> methods) {
+    for (MethodMetadata method : methods) {
+      for (ParameterMetadata parameter : method.parameters()) {
+        TypeMetadata type = parameter.type();
+        // Type variables are the only types without a package that aren't primitive.
+        if (!type.params().isEmpty()
+            || (type.packageName().isEmpty() && !Primitives.isPrimitive(type))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
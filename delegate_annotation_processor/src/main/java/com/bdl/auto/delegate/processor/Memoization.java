@@ -0,0 +1,150 @@
+package com.bdl.auto.delegate.processor;
+
+import com.google.common.collect.ImmutableMap;
+
+import com.bdl.annotation.processing.model.AnnotationMetadata;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.annotation.processing.model.ParameterMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+import com.bdl.auto.delegate.Memoize;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * The settings of a method's {@link Memoize} annotation, and how to key its cache.
+ *
+ * <p>When the method's parameters are all primitives that fit in 64 bits between them, they are
+ * packed into a {@code long} key for a {@link com.bdl.auto.delegate.LongKeyCache}; otherwise they
+ * are used as an object key for a {@link com.bdl.auto.delegate.ObjectKeyCache}.
+ *
+ * @author Ben Leitner
+ */
+final class Memoization {
+
+  /** The number of bits each primitive type takes in a packed key. */
+  private static final ImmutableMap<String, Integer> PRIMITIVE_BITS =
+      ImmutableMap.<String, Integer>builder()
+          .put("boolean", 1)
+          .put("byte", 8)
+          .put("char", 16)
+          .put("short", 16)
+          .put("int", 32)
+          .put("float", 32)
+          .put("long", 64)
+          .put("double", 64)
+          .build();
+
+  private static final int DEFAULT_MAX_SIZE = 1024;
+
+  private final int maxSize;
+  private final long expireAfterWriteMillis;
+  private final boolean longKey;
+
+  private Memoization(int maxSize, long expireAfterWriteMillis, boolean longKey) {
+    this.maxSize = maxSize;
+    this.expireAfterWriteMillis = expireAfterWriteMillis;
+    this.longKey = longKey;
+  }
+
+  /** Returns the memoization of {@code method}, or {@code null} if it is not memoized. */
+  @Nullable
+  static Memoization of(MethodMetadata method) {
+    AnnotationMetadata annotation = AnnotationUtil.annotation(method, "Memoize");
+    if (annotation == null) {
+      return null;
+    }
+    return new Memoization(
+        (int) AnnotationUtil.longValue(annotation, "maxSize", DEFAULT_MAX_SIZE),
+        AnnotationUtil.longValue(annotation, "expireAfterWriteMillis", 0),
+        keyBits(method.parameters()) <= 64);
+  }
+
+  int maxSize() {
+    return maxSize;
+  }
+
+  long expireAfterWriteMillis() {
+    return expireAfterWriteMillis;
+  }
+
+  /** Whether the method's arguments are packed into a {@code long} key. */
+  boolean longKey() {
+    return longKey;
+  }
+
+  /** Returns an expression for the cache key of a call with the given parameters. */
+  String keyExpression(List<ParameterMetadata> parameters) {
+    if (!longKey) {
+      if (parameters.size() == 1) {
+        return parameters.get(0).name();
+      }
+      StringBuilder key = new StringBuilder("ObjectKeyCache.key(");
+      for (int i = 0; i < parameters.size(); i++) {
+        key.append(i == 0 ? "" : ", ").append(parameters.get(i).name());
+      }
+      return key.append(')').toString();
+    }
+    if (parameters.isEmpty()) {
+      return "0L";
+    }
+    if (parameters.size() == 1) {
+      return widened(parameters.get(0), false);
+    }
+    StringBuilder key = new StringBuilder();
+    int shift = 0;
+    for (ParameterMetadata parameter : parameters) {
+      if (shift > 0) {
+        key.append(" | ");
+      }
+      key.append(widened(parameter, true));
+      if (shift > 0) {
+        key.append(" << ").append(shift);
+      }
+      shift += PRIMITIVE_BITS.get(parameter.type().name());
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns an expression for the bits of {@code parameter} as a {@code long}. When packing, the
+   * bits above the parameter's width are cleared so that they do not overlap the next parameter.
+   */
+  private static String widened(ParameterMetadata parameter, boolean packing) {
+    String name = parameter.name();
+    switch (parameter.type().name()) {
+      case "boolean":
+        return "(" + name + " ? 1L : 0L)";
+      case "byte":
+        return packing ? "(" + name + " & 0xFFL)" : name;
+      case "short":
+        return packing ? "(" + name + " & 0xFFFFL)" : name;
+      case "int":
+        return packing ? "(" + name + " & 0xFFFFFFFFL)" : name;
+      case "float":
+        return packing
+            ? "(Float.floatToIntBits(" + name + ") & 0xFFFFFFFFL)"
+            : "Float.floatToIntBits(" + name + ")";
+      case "double":
+        return "Double.doubleToLongBits(" + name + ")";
+      default:
+        // char is unsigned and long fills the key, so neither needs masking.
+        return packing ? "(long) " + name : name;
+    }
+  }
+
+  /** Returns the bits the parameters take packed together, or more than 64 if they can't be. */
+  private static int keyBits(List<ParameterMetadata> parameters) {
+    int bits = 0;
+    for (ParameterMetadata parameter : parameters) {
+      TypeMetadata type = parameter.type();
+      Integer width = Primitives.isPrimitive(type) ? PRIMITIVE_BITS.get(type.name()) : null;
+      if (width == null) {
+        return Integer.MAX_VALUE;
+      }
+      bits += width;
+    }
+    return bits;
+  }
+}
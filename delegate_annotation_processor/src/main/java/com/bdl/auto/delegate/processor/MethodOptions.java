@@ -0,0 +1,49 @@
+package com.bdl.auto.delegate.processor;
+
+import com.bdl.annotation.processing.model.MethodMetadata;
+
+import javax.annotation.Nullable;
+
+/**
+ * The settings of the annotations on a delegated method that affect how it is forwarded, read once
+ * per method when rendering.
+ *
+ * @author Ben Leitner
+ */
+final class MethodOptions {
+
+  @Nullable private final Memoization memoization;
+  @Nullable private final Batching batching;
+  private final boolean readOnly;
+
+  private MethodOptions(
+      @Nullable Memoization memoization, @Nullable Batching batching, boolean readOnly) {
+    this.memoization = memoization;
+    this.batching = batching;
+    this.readOnly = readOnly;
+  }
+
+  static MethodOptions of(MethodMetadata method) {
+    return new MethodOptions(
+        Memoization.of(method),
+        Batching.of(method),
+        AnnotationUtil.annotation(method, "ReadOnly") != null);
+  }
+
+  /** How the method's results are cached, or {@code null} if they are not. */
+  @Nullable
+  Memoization memoization() {
+    return memoization;
+  }
+
+  /** How calls to the method are batched, or {@code null} if they are not. */
+  @Nullable
+  Batching batching() {
+    return batching;
+  }
+
+  /** Whether the method is annotated {@link com.bdl.auto.delegate.ReadOnly}. */
+  boolean readOnly() {
+    return readOnly;
+  }
+}
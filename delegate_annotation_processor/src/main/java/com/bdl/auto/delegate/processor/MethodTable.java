@@ -0,0 +1,80 @@
+package com.bdl.auto.delegate.processor;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.collect.Maps;
+
+import com.bdl.annotation.processing.model.Imports;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.annotation.processing.model.ParameterMetadata;
+import com.bdl.auto.processor.SourceEmitter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The IDs assigned to the methods of a generated class at compile time, written out as {@code ID_}
+ * constants and a {@code METHODS} table of {@link com.bdl.auto.delegate.MethodDescriptor}s.
+ *
+ * @author Ben Leitner
+ */
+final class MethodTable {
+
+  private MethodTable() {
+    // Utility class, no instantiation.
+  }
+
+  /**
+   * Returns the name of the ID constant of each method, e.g. {@code ID_ON_VALUE} for
+   * {@code onValue}. Overloads after the first are numbered from 2.
+   */
+  static String[] ids(List<MethodMetadata> methods) {
+    String[] ids = new String[methods.size()];
+    Map<String, Integer> overloads = Maps.newHashMap();
+    for (int i = 0; i < ids.length; i++) {
+      String name = methods.get(i).name();
+      StringBuilder id = new StringBuilder("ID_")
+          .append(CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, name));
+      Integer count = overloads.get(name);
+      overloads.put(name, count == null ? 1 : count + 1);
+      if (count != null) {
+        id.append('_').append(count + 1);
+      }
+      ids[i] = id.toString();
+    }
+    return ids;
+  }
+
+  /** Returns the name and parameter types of {@code method}, e.g. {@code bar(int)}. */
+  static String signature(Imports imports, MethodMetadata method) {
+    StringBuilder signature = new StringBuilder(method.name()).append('(');
+    List<ParameterMetadata> parameters = method.parameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      if (i > 0) {
+        signature.append(", ");
+      }
+      signature.append(parameters.get(i).type().toString(imports));
+    }
+    return signature.append(')').toString();
+  }
+
+  /** Writes the ID constants and the {@code METHODS} table, which needs {@code List} imported. */
+  static void write(
+      SourceEmitter emitter, Imports imports, List<MethodMetadata> methods, String[] ids) {
+    emitter.newLine();
+    for (int i = 0; i < methods.size(); i++) {
+      emitter.append("  public static final int ").append(ids[i]).append(" = ").append(i)
+          .line(";");
+    }
+    emitter.newLine();
+    emitter.line("  /** Describes each method, indexed by its ID. */");
+    emitter.append("  public static final List<MethodDescriptor> METHODS =")
+        .append(" MethodDescriptor.table(");
+    for (int i = 0; i < methods.size(); i++) {
+      emitter.line(i == 0 ? "" : ",")
+          .append("      \"")
+          .append(signature(imports, methods.get(i)))
+          .append('"');
+    }
+    emitter.line(");");
+  }
+}
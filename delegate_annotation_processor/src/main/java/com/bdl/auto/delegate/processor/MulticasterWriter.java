@@ -0,0 +1,193 @@
+package com.bdl.auto.delegate.processor;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.Imports;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.annotation.processing.model.ParameterMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+import com.bdl.auto.delegate.ListenerArray;
+import com.bdl.auto.processor.ElementTiming;
+import com.bdl.auto.processor.MetadataCache;
+import com.bdl.auto.processor.SourceEmitter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Generated;
+
+/**
+ * Writes the multicaster of an interface annotated with
+ * {@link com.bdl.auto.delegate.AutoMulticast}: a class implementing the interface by calling each
+ * of the listeners in a {@link ListenerArray}.
+ *
+ * @author Ben Leitner
+ */
+final class MulticasterWriter {
+
+  private final Function<String, Writer> writerFunction;
+  private final MetadataCache cache;
+  private final SourceEmitter emitter = new SourceEmitter();
+  private ElementTiming timing = ElementTiming.untracked();
+  private boolean isolateExceptions;
+
+  MulticasterWriter(Function<String, Writer> writerFunction, MetadataCache cache) {
+    this.writerFunction = writerFunction;
+    this.cache = cache;
+  }
+
+  /** Records the time spent in each phase of writing to {@code timing}. */
+  void setTiming(ElementTiming timing) {
+    this.timing = timing;
+  }
+
+  /** Sets whether an exception from one listener should still let the others be called. */
+  void setIsolateExceptions(boolean isolateExceptions) {
+    this.isolateExceptions = isolateExceptions;
+  }
+
+  void write(ClassMetadata clazz) throws IOException {
+    TypeMetadata type = clazz.type();
+    long start = System.nanoTime();
+    Writer writer = writerFunction.apply(
+        type.packagePrefix() + "Auto_" + type.nestingPrefix("_") + type.name() + "_Multicaster");
+    timing.addWrite(System.nanoTime() - start);
+    render(clazz);
+    start = System.nanoTime();
+    emitter.writeTo(writer);
+    writer.close();
+    timing.addWrite(System.nanoTime() - start);
+  }
+
+  private void render(ClassMetadata clazz) {
+    long start = System.nanoTime();
+    List<MethodMetadata> methods = cache.abstractMethods(clazz);
+    ImmutableSet.Builder<TypeMetadata> types = ImmutableSet.builder();
+    types.add(clazz.type());
+    types.add(TypeMetadata.from(Generated.class));
+    types.add(TypeMetadata.from(ListenerArray.class));
+    for (MethodMetadata method : methods) {
+      types.addAll(method.getAllTypes());
+    }
+
+    long importsStart = System.nanoTime();
+    Imports imports = Imports.create(clazz.type().packageName(), types.build());
+    long importsNanos = System.nanoTime() - importsStart;
+    emitter.reset();
+    writeClassOpening(clazz, imports);
+    for (MethodMetadata method : methods) {
+      writeMethod(imports, clazz.type().toString(imports), method.asConcrete());
+    }
+    emitter.line("}");
+    timing.addImports(importsNanos);
+    timing.addRender(System.nanoTime() - start - importsNanos);
+    timing.setCounts(methods.size(), 0);
+  }
+
+  private void writeClassOpening(ClassMetadata clazz, Imports imports) {
+    TypeMetadata type = clazz.type();
+    String listenerType = type.toString(imports);
+    emitter.append("package ").append(type.packageName()).line(";");
+    emitter.newLine();
+    for (String imp : imports.getImports()) {
+      emitter.append("import ").append(imp).line(";");
+    }
+    emitter.newLine();
+    emitter.append("/** AutoDelegate Generated multicaster for ")
+        .append(type.nestingPrefix())
+        .append(type.name())
+        .line(". */");
+    emitter.line("@Generated(\"com.bdl.auto.delegate.processor.AutoDelegateProcessor\")");
+    emitter.append("final class Auto_")
+        .append(type.nestingPrefix("_"))
+        .append(type.name())
+        .append("_Multicaster")
+        .appendTypeParameters(type.params(), imports)
+        .append(" implements ")
+        .append(listenerType)
+        .line(" {");
+    emitter.newLine();
+    if (type.params().isEmpty()) {
+      emitter.append("  private final ListenerArray<").append(listenerType).line("> listeners =");
+      emitter.append("      new ListenerArray<>(new ").append(listenerType).line("[0]);");
+    } else {
+      // Arrays of a parameterized type can only be created raw.
+      emitter.line("  @SuppressWarnings(\"unchecked\")");
+      emitter.append("  private final ListenerArray<").append(listenerType).line("> listeners =");
+      emitter.append("      new ListenerArray<>((").append(listenerType).append("[]) new ")
+          .append(type.nestingPrefix())
+          .append(type.name())
+          .line("<?>[0]);");
+    }
+    emitter.newLine();
+    emitter.line("  /** Adds {@code listener}, to be called after the listeners already added. */");
+    emitter.append("  public void addListener(").append(listenerType).line(" listener) {");
+    emitter.line("    listeners.add(listener);");
+    emitter.line("  }");
+    emitter.newLine();
+    emitter.line("  /** Removes {@code listener}, returning whether it had been added. */");
+    emitter.append("  public boolean removeListener(").append(listenerType).line(" listener) {");
+    emitter.line("    return listeners.remove(listener);");
+    emitter.line("  }");
+    emitter.newLine();
+    emitter.line("  /** Returns the number of listeners. */");
+    emitter.line("  public int listenerCount() {");
+    emitter.line("    return listeners.size();");
+    emitter.line("  }");
+  }
+
+  private void writeMethod(Imports imports, String listenerType, MethodMetadata method) {
+    List<ParameterMetadata> parameters = method.parameters();
+    // The generated locals must not shadow the method's own parameters.
+    Set<String> parameterNames = Sets.newHashSet();
+    for (ParameterMetadata parameter : parameters) {
+      parameterNames.add(parameter.name());
+    }
+    String listeners = parameterNames.contains("listeners") ? "this.listeners" : "listeners";
+    String listener = freeName("listener", parameterNames);
+    emitter.newLine();
+    emitter.line("  @Override");
+    emitter.append("  ").append(method.toString(imports)).line(" {");
+    if (!isolateExceptions) {
+      emitter.append("    for (").append(listenerType).append(' ').append(listener)
+          .append(" : ").append(listeners).line(".get()) {");
+      emitter.append("      ").append(listener).append('.').append(method.name()).append('(')
+          .appendArguments(parameters)
+          .line(");");
+      emitter.line("    }");
+    } else {
+      String failure = freeName("failure", parameterNames);
+      String ex = freeName("ex", parameterNames);
+      emitter.append("    RuntimeException ").append(failure).line(" = null;");
+      emitter.append("    for (").append(listenerType).append(' ').append(listener)
+          .append(" : ").append(listeners).line(".get()) {");
+      emitter.line("      try {");
+      emitter.append("        ").append(listener).append('.').append(method.name()).append('(')
+          .appendArguments(parameters)
+          .line(");");
+      emitter.append("      } catch (RuntimeException ").append(ex).line(") {");
+      emitter.append("        ").append(failure).append(" = ListenerArray.collect(")
+          .append(failure).append(", ").append(ex).line(");");
+      emitter.line("      }");
+      emitter.line("    }");
+      emitter.append("    if (").append(failure).line(" != null) {");
+      emitter.append("      throw ").append(failure).line(";");
+      emitter.line("    }");
+    }
+    emitter.line("  }");
+  }
+
+  /** Returns {@code name}, with a number appended if needed to differ from {@code taken}. */
+  private static String freeName(String name, Set<String> taken) {
+    String candidate = name;
+    for (int i = 2; taken.contains(candidate); i++) {
+      candidate = name + i;
+    }
+    return candidate;
+  }
+}
@@ -0,0 +1,41 @@
+package com.bdl.auto.delegate.processor;
+
+import com.google.common.collect.ImmutableMap;
+
+import com.bdl.annotation.processing.model.TypeMetadata;
+
+/**
+ * Utility methods for primitive types in generated code.
+ *
+ * @author Ben Leitner
+ */
+final class Primitives {
+
+  private static final ImmutableMap<String, String> BOXES =
+      ImmutableMap.<String, String>builder()
+          .put("boolean", "Boolean")
+          .put("byte", "Byte")
+          .put("char", "Character")
+          .put("short", "Short")
+          .put("int", "Integer")
+          .put("float", "Float")
+          .put("long", "Long")
+          .put("double", "Double")
+          .build();
+
+  private Primitives() {
+    // Utility class, no instantiation.
+  }
+
+  static boolean isPrimitive(TypeMetadata type) {
+    return type.packageName().isEmpty() && BOXES.containsKey(type.name());
+  }
+
+  /**
+   * Returns the name of the box of {@code type} if it is primitive, or {@code rendered}, the type
+   * as rendered with the class's imports, if it is not.
+   */
+  static String boxed(TypeMetadata type, String rendered) {
+    return isPrimitive(type) ? BOXES.get(type.name()) : rendered;
+  }
+}
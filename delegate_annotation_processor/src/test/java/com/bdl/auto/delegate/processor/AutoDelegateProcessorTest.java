@@ -0,0 +1,770 @@
+package com.bdl.auto.delegate.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static org.truth0.Truth.ASSERT;
+
+import com.bdl.auto.processor.RecordingProcessor;
+import com.bdl.auto.processor.RegistryIndex;
+import com.bdl.auto.processor.RenderPool;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.IOException;
+import java.util.Map;
+import javax.annotation.processing.Processor;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain AutoDelegateProcessor} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class AutoDelegateProcessorTest {
+
+  private static final JavaFileObject SIMPLE = JavaFileObjects.forSourceLines("test.Simple",
+      "package test;",
+      "",
+      "import com.bdl.auto.delegate.AutoDelegate;",
+      "",
+      "@AutoDelegate",
+      "public abstract class Simple implements Runnable {",
+      "  protected final Runnable delegate;",
+      "",
+      "  protected Simple(Runnable delegate) {",
+      "    this.delegate = delegate;",
+      "  }",
+      "}");
+  private static final JavaFileObject OUTER = JavaFileObjects.forSourceLines("test.Outer",
+      "package test;",
+      "",
+      "import com.bdl.auto.delegate.AutoDelegate;",
+      "",
+      "public class Outer {",
+      "  @AutoDelegate",
+      "  abstract static class Inner implements Runnable {",
+      "    protected final Runnable delegate;",
+      "",
+      "    protected Inner(Runnable delegate) {",
+      "      this.delegate = delegate;",
+      "    }",
+      "  }",
+      "}");
+
+  private static final JavaFileObject WORKER = JavaFileObjects.forSourceLines("test.Worker",
+      "package test;",
+      "",
+      "public final class Worker implements Runnable {",
+      "  @Override",
+      "  public void run() {}",
+      "}");
+
+  private static final JavaFileObject LOOKUP = JavaFileObjects.forSourceLines("test.Lookup",
+      "package test;",
+      "",
+      "public interface Lookup {",
+      "  void clear();",
+      "",
+      "  String name(int id, short shard);",
+      "",
+      "  Long size(String key, long version);",
+      "}");
+
+  private static final JavaFileObject STORE = JavaFileObjects.forSourceLines("test.Store",
+      "package test;",
+      "",
+      "import java.util.Collection;",
+      "import java.util.Map;",
+      "",
+      "public interface Store {",
+      "  void add(int value);",
+      "",
+      "  void addAll(Collection<Integer> values);",
+      "",
+      "  void put(String key, long value);",
+      "",
+      "  void putAll(Map<String, Long> values);",
+      "}");
+
+  @Test
+  public void testOriginatingElements() {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    compile(processor);
+
+    assertThat(processor.originatingElements()).isEqualTo(
+        ImmutableListMultimap.of(
+            "test.Auto_Simple_Delegate", "test.Simple",
+            "test.Auto_Outer_Inner_Delegate", "test.Outer.Inner"));
+  }
+
+  @Test
+  public void testParallelOutputMatchesSerial() {
+    RecordingProcessor serial = new RecordingProcessor(new AutoDelegateProcessor());
+    compile(serial);
+    RecordingProcessor parallel = new RecordingProcessor(
+        new AutoDelegateProcessor(), ImmutableMap.of(RenderPool.PARALLEL_OPTION, "4"));
+    compile(parallel);
+
+    assertThat(serial.generatedSources()).hasSize(2);
+    assertThat(parallel.generatedSources()).isEqualTo(serial.generatedSources());
+  }
+
+  @Test
+  public void testTarget() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(WORKER, targeted("Worker")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Targeted_Delegate");
+  }
+
+  @Test
+  public void testTargetMustBeSubtype() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(WORKER, targeted("String")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining("is not a subtype of java.lang.Runnable");
+  }
+
+  @Test
+  public void testMetrics() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Metered",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "import java.io.FileFilter;",
+            "",
+            "@AutoDelegate(metrics = true)",
+            "public abstract class Metered implements FileFilter {",
+            "  protected final FileFilter delegate;",
+            "",
+            "  protected Metered(FileFilter delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Metered_Delegate");
+  }
+
+  @Test
+  public void testMemoize() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, memoized("String name(int id, short shard);")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Memoized_Delegate");
+  }
+
+  @Test
+  public void testMemoizeMustReturnValue() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, memoized("void clear();")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining("is memoized but returns void");
+  }
+
+  private static JavaFileObject memoized(String redeclared) {
+    return JavaFileObjects.forSourceLines("test.Memoized",
+        "package test;",
+        "",
+        "import com.bdl.auto.delegate.AutoDelegate;",
+        "import com.bdl.auto.delegate.Memoize;",
+        "",
+        "@AutoDelegate",
+        "public abstract class Memoized implements Lookup {",
+        "  protected final Lookup delegate;",
+        "",
+        "  protected Memoized(Lookup delegate) {",
+        "    this.delegate = delegate;",
+        "  }",
+        "",
+        "  @Memoize(maxSize = 128, expireAfterWriteMillis = 60000)",
+        "  @Override",
+        "  public abstract " + redeclared,
+        "",
+        "  @Memoize",
+        "  @Override",
+        "  public abstract Long size(String key, long version);",
+        "}");
+  }
+
+  @Test
+  public void testBatch() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(STORE, batched("putAll")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Batched_Delegate");
+  }
+
+  @Test
+  public void testBatchNeedsBulkMethod() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(STORE, batched("putMany")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining("has no bulk method putMany taking a Map");
+  }
+
+  private static JavaFileObject batched(String bulkMethod) {
+    return JavaFileObjects.forSourceLines("test.Batched",
+        "package test;",
+        "",
+        "import com.bdl.auto.delegate.AutoDelegate;",
+        "import com.bdl.auto.delegate.Batch;",
+        "",
+        "@AutoDelegate",
+        "public abstract class Batched implements Store {",
+        "  protected final Store delegate;",
+        "",
+        "  protected Batched(Store delegate) {",
+        "    this.delegate = delegate;",
+        "  }",
+        "",
+        "  @Batch(\"addAll\")",
+        "  @Override",
+        "  public abstract void add(int value);",
+        "",
+        "  @Batch(value = \"" + bulkMethod + "\", maxSize = 50, maxDelayMillis = 10)",
+        "  @Override",
+        "  public abstract void put(String key, long value);",
+        "}");
+  }
+
+  @Test
+  public void testAsync() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, JavaFileObjects.forSourceLines("test.Asynchronous",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(async = true)",
+            "public abstract class Asynchronous implements Lookup {",
+            "  protected final Lookup delegate;",
+            "",
+            "  protected Asynchronous(Lookup delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Asynchronous_Delegate");
+    assertGenerated(processor, "test.Auto_Asynchronous_Async");
+  }
+
+  @Test
+  public void testAsyncRejectsGenericMethods() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Registry",
+            "package test;",
+            "",
+            "public interface Registry {",
+            "  <T> T get(Class<T> type);",
+            "}"),
+            JavaFileObjects.forSourceLines("test.AsyncRegistry",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(async = true)",
+            "public abstract class AsyncRegistry implements Registry {",
+            "  protected final Registry delegate;",
+            "",
+            "  protected AsyncRegistry(Registry delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining(
+            "Class AsyncRegistry's method get is generic, so it can't be called asynchronously.");
+  }
+
+  @Test
+  public void testInvokerRejectsGenericMethods() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Registry",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoInvoker;",
+            "",
+            "@AutoInvoker",
+            "public interface Registry {",
+            "  <T> T get(Class<T> type);",
+            "}")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining(
+            "Interface Registry's method get is generic, so it can't be invoked by ID.");
+  }
+
+  @Test
+  public void testRecordedRejectsGenericMethods() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Registry",
+            "package test;",
+            "",
+            "public interface Registry {",
+            "  <T> T get(Class<T> type);",
+            "}"),
+            JavaFileObjects.forSourceLines("test.RecordedRegistry",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(recorded = true)",
+            "public abstract class RecordedRegistry implements Registry {",
+            "  protected final Registry delegate;",
+            "",
+            "  protected RecordedRegistry(Registry delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining(
+            "Class RecordedRegistry's method get is generic, so its calls can't be replayed.");
+  }
+
+  @Test
+  public void testThreadSafe() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, readOnly("threadSafe = true")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_ReadMostly_Delegate");
+  }
+
+  @Test
+  public void testReadOnlyNeedsThreadSafe() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, readOnly("metrics = true")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining("is read-only but the class is not threadSafe");
+  }
+
+  private static JavaFileObject readOnly(String options) {
+    return JavaFileObjects.forSourceLines("test.ReadMostly",
+        "package test;",
+        "",
+        "import com.bdl.auto.delegate.AutoDelegate;",
+        "import com.bdl.auto.delegate.Memoize;",
+        "import com.bdl.auto.delegate.ReadOnly;",
+        "",
+        "@AutoDelegate(" + options + ")",
+        "public abstract class ReadMostly implements Lookup {",
+        "  protected final Lookup delegate;",
+        "",
+        "  protected ReadMostly(Lookup delegate) {",
+        "    this.delegate = delegate;",
+        "  }",
+        "",
+        "  @ReadOnly",
+        "  @Override",
+        "  public abstract String name(int id, short shard);",
+        "",
+        "  @Memoize",
+        "  @ReadOnly",
+        "  @Override",
+        "  public abstract Long size(String key, long version);",
+        "}");
+  }
+
+  @Test
+  public void testLazy() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Deferred",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(lazy = true)",
+            "public abstract class Deferred implements Runnable {",
+            "  protected final Runnable delegate;",
+            "  protected final String name;",
+            "",
+            "  protected Deferred(Runnable delegate, String name) {",
+            "    this.delegate = delegate;",
+            "    this.name = name;",
+            "  }",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Deferred_Delegate");
+  }
+
+  @Test
+  public void testLazyRejectsImplementedMethods() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, JavaFileObjects.forSourceLines("test.Deferred",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(lazy = true)",
+            "public abstract class Deferred implements Lookup {",
+            "  protected final Lookup delegate;",
+            "",
+            "  protected Deferred(Lookup delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "",
+            "  @Override",
+            "  public void clear() {",
+            "    delegate.clear();",
+            "  }",
+            "}")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining(
+            "Deferred is lazy, so its delegate field is null, but it implements method clear");
+  }
+
+  @Test
+  public void testSwappable() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(WORKER,
+            replaceable("Replaceable", "swappable = true, target = Worker.class")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Replaceable_Delegate");
+  }
+
+  @Test
+  public void testDrainable() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(WORKER,
+            replaceable("Drained", "swappable = true, drainable = true, target = Worker.class")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Drained_Delegate");
+  }
+
+  @Test
+  public void testDrainableNeedsSwappable() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(replaceable("Replaceable", "drainable = true")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining("Class Replaceable is drainable, but it isn't swappable.");
+  }
+
+  @Test
+  public void testSwappableRejectsImplementedMethods() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Replaceable",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(swappable = true)",
+            "public abstract class Replaceable implements Runnable {",
+            "  protected final Runnable delegate;",
+            "",
+            "  protected Replaceable(Runnable delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "",
+            "  @Override",
+            "  public void run() {",
+            "    delegate.run();",
+            "  }",
+            "}")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining("but it implements method run, which could use it.");
+  }
+
+  @Test
+  public void testMulticast() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.ValueListener",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoMulticast;",
+            "",
+            "@AutoMulticast",
+            "public interface ValueListener<T> {",
+            "  void onValue(T value, int index);",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_ValueListener_Multicaster");
+  }
+
+  @Test
+  public void testMulticastNeedsVoidMethods() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Voter",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoMulticast;",
+            "",
+            "@AutoMulticast",
+            "public interface Voter {",
+            "  boolean vote(String motion);",
+            "}")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining("method vote returns a value, so it can't be multicast");
+  }
+
+  @Test
+  public void testInvoker() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Counter",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoInvoker;",
+            "",
+            "@AutoInvoker",
+            "public interface Counter {",
+            "  long add(long amount);",
+            "  void reset();",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Counter_Invoker");
+  }
+
+  @Test
+  public void testIntercepted() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, JavaFileObjects.forSourceLines("test.Intercepted",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(intercepted = true)",
+            "public abstract class Intercepted implements Lookup {",
+            "  protected final Lookup delegate;",
+            "",
+            "  protected Intercepted(Lookup delegate, int shards) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Intercepted_Delegate");
+  }
+
+  @Test
+  public void testBulkhead() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, JavaFileObjects.forSourceLines("test.Limited",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "import com.bdl.auto.delegate.BulkheadScope;",
+            "",
+            "@AutoDelegate(bulkhead = BulkheadScope.SHARED)",
+            "public abstract class Limited implements Lookup {",
+            "  protected final Lookup delegate;",
+            "",
+            "  protected Limited(Lookup delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Limited_Delegate");
+  }
+
+  @Test
+  public void testRecorded() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, JavaFileObjects.forSourceLines("test.Recorded",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(recorded = true)",
+            "public abstract class Recorded implements Lookup {",
+            "  protected final Lookup delegate;",
+            "",
+            "  protected Recorded(Lookup delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Recorded_Delegate");
+    assertGenerated(processor, "test.Auto_Recorded_Replayer");
+  }
+
+  @Test
+  public void testSampledMetrics() throws IOException {
+    RecordingProcessor processor = new RecordingProcessor(new AutoDelegateProcessor());
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, JavaFileObjects.forSourceLines("test.Sampled",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(metrics = true, sampleEvery = 64)",
+            "public abstract class Sampled implements Lookup {",
+            "  protected final Lookup delegate;",
+            "",
+            "  protected Sampled(Lookup delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertGenerated(processor, "test.Auto_Sampled_Delegate");
+  }
+
+  @Test
+  public void testSampleEveryNeedsMetrics() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(LOOKUP, JavaFileObjects.forSourceLines("test.Sampled",
+            "package test;",
+            "",
+            "import com.bdl.auto.delegate.AutoDelegate;",
+            "",
+            "@AutoDelegate(sampleEvery = 64)",
+            "public abstract class Sampled implements Lookup {",
+            "  protected final Lookup delegate;",
+            "",
+            "  protected Sampled(Lookup delegate) {",
+            "    this.delegate = delegate;",
+            "  }",
+            "}")))
+        .processedWith(new AutoDelegateProcessor())
+        .failsToCompile()
+        .withErrorContaining("Class Sampled has sampleEvery set, but it doesn't record metrics.");
+  }
+
+  @Test
+  public void testIncrementalCategory() {
+    RecordingProcessor isolating = new RecordingProcessor(new AutoDelegateProcessor());
+    compile(isolating);
+    assertThat(isolating.getSupportedOptions())
+        .contains("org.gradle.annotation.processing.isolating");
+
+    RecordingProcessor aggregating = new RecordingProcessor(
+        new AutoDelegateProcessor(), ImmutableMap.of(RegistryIndex.INDEX_OPTION, ""));
+    compile(aggregating);
+    assertThat(aggregating.getSupportedOptions())
+        .contains("org.gradle.annotation.processing.aggregating");
+    assertThat(aggregating.getSupportedOptions())
+        .doesNotContain("org.gradle.annotation.processing.isolating");
+  }
+
+  @Test
+  public void testRegistryIndex() {
+    RecordingProcessor processor = new RecordingProcessor(
+        new AutoDelegateProcessor(), ImmutableMap.of(RegistryIndex.INDEX_OPTION, ""));
+    compile(processor);
+
+    String name = null;
+    for (String source : processor.generatedSources().keySet()) {
+      if (source.startsWith("test.Auto_Index_")) {
+        assertThat(name).isNull();
+        name = source;
+      }
+    }
+    String index = processor.generatedSources().get(name);
+    assertThat(index).contains(
+        "    registry.registerDelegate(test.Simple.class, new AutoRegistry.DelegateFactory() {\n"
+            + "      @Override\n"
+            + "      public Object create(Object delegate) {\n"
+            + "        return new test.Auto_Simple_Delegate((java.lang.Runnable) delegate);\n"
+            + "      }\n"
+            + "    });");
+    assertThat(index).contains("registry.registerDelegate(test.Outer.Inner.class,");
+    assertThat(processor.originatingElements().get(name))
+        .containsExactly("test.Simple", "test.Outer.Inner");
+  }
+
+  private static JavaFileObject replaceable(String name, String settings) {
+    return JavaFileObjects.forSourceLines("test." + name,
+        "package test;",
+        "",
+        "import com.bdl.auto.delegate.AutoDelegate;",
+        "",
+        "@AutoDelegate(" + settings + ")",
+        "public abstract class " + name + " implements Runnable {",
+        "  protected final Runnable delegate;",
+        "",
+        "  protected " + name + "(Runnable delegate) {",
+        "    this.delegate = delegate;",
+        "  }",
+        "}");
+  }
+
+  private static JavaFileObject targeted(String target) {
+    return JavaFileObjects.forSourceLines("test.Targeted",
+        "package test;",
+        "",
+        "import com.bdl.auto.delegate.AutoDelegate;",
+        "",
+        "@AutoDelegate(target = " + target + ".class)",
+        "public abstract class Targeted implements Runnable {",
+        "  protected final Runnable delegate;",
+        "",
+        "  protected Targeted(Runnable delegate) {",
+        "    this.delegate = delegate;",
+        "  }",
+        "}");
+  }
+
+  /**
+   * Asserts that {@code processor} generated the source {@code name} exactly as in the resource
+   * {@code [name].txt}.
+   */
+  private static void assertGenerated(RecordingProcessor processor, String name)
+      throws IOException {
+    String expected = Resources.toString(Resources.getResource(name + ".txt"), Charsets.UTF_8);
+    assertThat(processor.generatedSources().get(name)).isEqualTo(expected);
+  }
+
+  private static void compile(Processor processor) {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(SIMPLE, OUTER))
+        .processedWith(processor)
+        .compilesWithoutError();
+  }
+}
@@ -13,6 +13,8 @@ import com.google.common.collect.Maps;
 
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * Utility class for working with the annotations.
  *
@@ -50,9 +52,11 @@ class AnnotationUtil {
     map.put("objectImpl", ImplOption.USE_PARENT);
 
     for (Map.Entry<String, ValueMetadata> entry : metadata.values().entrySet()) {
-      map.put(
-          entry.getKey(),
-          ImplOption.valueOf(entry.getValue().value()));
+      if (map.containsKey(entry.getKey())) {
+        map.put(
+            entry.getKey(),
+            ImplOption.valueOf(entry.getValue().value()));
+      }
     }
     return autoImpl(
         map.get("value"),
@@ -80,22 +84,35 @@ class AnnotationUtil {
         ImplOption.USE_PARENT);
   }
 
-  @AutoAnnotation
-  static MethodImpl methodImpl(ImplOption value) {
-    return new AutoAnnotation_AnnotationUtil_methodImpl(value);
+  /** Returns whether the class's {@link AutoImpl} asks for a singleton implementation. */
+  static boolean singleton(ClassMetadata metadata) {
+    for (AnnotationMetadata annotation : metadata.annotations()) {
+      if (annotation.type().packageName().equals("com.bdl.auto.impl")
+          && annotation.type().name().equals("AutoImpl")) {
+        ValueMetadata value = annotation.values().get("singleton");
+        return value != null && Boolean.parseBoolean(value.value());
+      }
+    }
+    return false;
   }
 
-  static MethodImpl methodImpl(MethodMetadata method) {
+  /**
+   * Returns the option set by the method's {@link MethodImpl} annotation, or {@code null} if it has
+   * none or it defers to the class.
+   */
+  @Nullable
+  static ImplOption methodImplOption(MethodMetadata method) {
     for (AnnotationMetadata annotation : method.annotations()) {
       if (annotation.type().packageName().equals("com.bdl.auto.impl")
-        && annotation.type().name().equals("MethodImpl")) {
-        for (Map.Entry<String, ValueMetadata> entry : annotation.values().entrySet()) {
-          if (entry.getKey().equals("value")) {
-            return methodImpl(ImplOption.valueOf(entry.getValue().value()));
-          }
+          && annotation.type().name().equals("MethodImpl")) {
+        ValueMetadata value = annotation.values().get("value");
+        if (value == null) {
+          return null;
         }
+        ImplOption option = ImplOption.valueOf(value.value());
+        return option == ImplOption.USE_PARENT ? null : option;
       }
     }
-    return methodImpl(ImplOption.USE_PARENT);
+    return null;
   }
 }
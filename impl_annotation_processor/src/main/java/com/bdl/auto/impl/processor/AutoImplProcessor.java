@@ -2,25 +2,42 @@ package com.bdl.auto.impl.processor;
 
 import com.google.common.base.Function;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 
 import com.bdl.annotation.processing.model.ClassMetadata;
 import com.bdl.auto.impl.AutoImpl;
+import com.bdl.auto.processor.ElementTiming;
+import com.bdl.auto.processor.MetadataCache;
+import com.bdl.auto.processor.RegistryIndex;
+import com.bdl.auto.processor.RenderPool;
+import com.bdl.auto.processor.SourceFingerprints;
+import com.bdl.auto.processor.TimingReport;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import javax.annotation.Nullable;
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 
@@ -30,71 +47,282 @@ import javax.tools.JavaFileObject;
  * @author Ben Leitner
  */
 @SupportedAnnotationTypes("com.bdl.auto.impl.AutoImpl")
-@SupportedSourceVersion(SourceVersion.RELEASE_7)
+@SupportedOptions({
+    AutoImplProcessor.EXPLAIN_OPTION,
+    MetadataCache.STATS_OPTION,
+    RenderPool.PARALLEL_OPTION,
+    RegistryIndex.INDEX_OPTION,
+    SourceFingerprints.FINGERPRINT_OPTION,
+    SourceFingerprints.SKIP_OPTION,
+    TimingReport.REPORT_OPTION})
+@SupportedSourceVersion(SourceVersion.RELEASE_8)
 public class AutoImplProcessor extends AbstractProcessor {
 
+  /** Processor option that, when present, prints how each method's implementation was chosen. */
+  static final String EXPLAIN_OPTION = "auto.explain";
+
   private Messager messager;
+  private MetadataCache cache;
+  private TimingReport timingReport;
+  @Nullable private RenderPool renderPool;
+  @Nullable private SourceFingerprints fingerprints;
+  @Nullable private RegistryIndex registryIndex;
+  private boolean explain;
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
     super.init(processingEnv);
     messager = processingEnv.getMessager();
+    cache = MetadataCache.forEnvironment(processingEnv);
+    timingReport = TimingReport.forEnvironment(processingEnv);
+    renderPool = RenderPool.fromOptions(processingEnv);
+    fingerprints = SourceFingerprints.forEnvironment(processingEnv);
+    registryIndex = RegistryIndex.forEnvironment(processingEnv);
+    explain = processingEnv.getOptions().containsKey(EXPLAIN_OPTION);
+  }
+
+  @Override
+  public Set<String> getSupportedOptions() {
+    return RegistryIndex.withIncrementalCategory(super.getSupportedOptions(), processingEnv);
   }
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    List<TypeElement> elements = Lists.newArrayList();
+    Element invalid = null;
     for (Element element : roundEnv.getElementsAnnotatedWith(AutoImpl.class)) {
       if (element.getKind() != ElementKind.CLASS
           && element.getKind() != ElementKind.INTERFACE) {
-        messager.printMessage(
-            Diagnostic.Kind.ERROR,
-            "AutoImpl Annotation applied to an element that is not a class or interface.",
-            element);
-        return true;
+        invalid = element;
+        break;
+      }
+      TypeElement type = (TypeElement) element;
+      if (type.getAnnotation(AutoImpl.class).singleton() && !isStateless(type)) {
+        messager.printMessage(Diagnostic.Kind.ERROR,
+            String.format(
+                "AutoImpl singleton set on %s, but it has fields or constructor parameters.", type),
+            type);
+        continue;
+      }
+      elements.add(type);
+    }
+
+    if (renderPool == null) {
+      for (TypeElement element : elements) {
+        processElement(element);
       }
-      processElement((TypeElement) element);
+    } else {
+      processInParallel(elements);
     }
 
+    if (invalid != null) {
+      messager.printMessage(
+          Diagnostic.Kind.ERROR,
+          "AutoImpl Annotation applied to an element that is not a class or interface.",
+          invalid);
+    }
+
+    if (registryIndex != null) {
+      registryIndex.flush(processingEnv);
+    }
+
+    if (roundEnv.processingOver()) {
+      cache.reportStats(processingEnv);
+      timingReport.finish(processingEnv);
+      if (fingerprints != null) {
+        fingerprints.finish(processingEnv);
+      }
+      if (registryIndex != null) {
+        registryIndex.finish(processingEnv);
+      }
+      if (renderPool != null) {
+        renderPool.shutdown();
+      }
+    }
     return true;
   }
 
   private void processElement(TypeElement element) {
     if (!element.getModifiers().contains(Modifier.ABSTRACT)) {
-      messager.printMessage(Diagnostic.Kind.ERROR,
-          String.format("AutoImpl annotation added to non-abstract class: %s", element));
+      reportNonAbstract(element);
       return;
     }
-    ClassMetadata classMetadata = ClassMetadata.fromElement(element);
+    ElementTiming timing = timingReport.start("AutoImpl", element.getQualifiedName().toString());
+    ClassMetadata classMetadata = readMetadata(element, timing);
 
     try {
-      JavaFileObjectWriterFunction writerFunction = new JavaFileObjectWriterFunction(processingEnv);
-
-      AutoImplWriter writer = new AutoImplWriter(writerFunction, new AutoImplWriter.Recorder() {
-        @Override
-        public void record(String s) {
-          messager.printMessage(Diagnostic.Kind.NOTE, s);
-        }
-      });
+      AutoImplWriter writer = newWriter(element, timing);
       writer.write(classMetadata);
+      explain(writer, classMetadata, element);
+      if (registryIndex != null) {
+        writer.register(registryIndex, classMetadata, element);
+      }
     } catch (Exception ex) {
-      messager.printMessage(
-          Diagnostic.Kind.ERROR,
-          "Error in AutoImpl Processor\n" + ex.getMessage() + "\n" + Throwables.getStackTraceAsString(ex));
+      reportError(ex);
+    }
+  }
+
+  /**
+   * Generates implementations for all of the elements, rendering them on the {@link RenderPool}.
+   *
+   * <p>Metadata is read and every file and message is written here on the processing thread, in
+   * the same order as {@link #processElement}, so the output matches serial processing.
+   */
+  private void processInParallel(List<TypeElement> elements) {
+    List<Generation> generations = Lists.newArrayList();
+    for (TypeElement element : elements) {
+      Generation generation = new Generation(element);
+      if (element.getModifiers().contains(Modifier.ABSTRACT)) {
+        ElementTiming timing =
+            timingReport.start("AutoImpl", element.getQualifiedName().toString());
+        final ClassMetadata classMetadata = readMetadata(element, timing);
+        final AutoImplWriter writer = newWriter(element, timing);
+        // Resolve the inherited methods here rather than on the pool.
+        long start = System.nanoTime();
+        cache.abstractMethods(classMetadata);
+        timing.addMetadata(System.nanoTime() - start);
+        generation.classMetadata = classMetadata;
+        generation.writer = writer;
+        generation.render = renderPool.submit(new Runnable() {
+          @Override
+          public void run() {
+            writer.render(classMetadata);
+          }
+        });
+      }
+      generations.add(generation);
+    }
+
+    for (Generation generation : generations) {
+      if (generation.writer == null) {
+        reportNonAbstract(generation.element);
+        continue;
+      }
+      try {
+        Writer writer = generation.writer.open(generation.classMetadata);
+        generation.render.get();
+        generation.writer.flush(writer);
+        explain(generation.writer, generation.classMetadata, generation.element);
+        if (registryIndex != null) {
+          generation.writer.register(
+              registryIndex, generation.classMetadata, generation.element);
+        }
+      } catch (ExecutionException ex) {
+        reportError(ex.getCause());
+      } catch (Exception ex) {
+        reportError(ex);
+      }
+    }
+  }
+
+  private ClassMetadata readMetadata(TypeElement element, ElementTiming timing) {
+    long start = System.nanoTime();
+    ClassMetadata classMetadata = ClassMetadata.fromElement(element);
+    timing.addMetadata(System.nanoTime() - start);
+    return classMetadata;
+  }
+
+  private AutoImplWriter newWriter(TypeElement element, ElementTiming timing) {
+    JavaFileObjectWriterFunction writerFunction =
+        new JavaFileObjectWriterFunction(processingEnv, element, fingerprints);
+
+    AutoImplWriter writer = new AutoImplWriter(writerFunction, new AutoImplWriter.Recorder() {
+      @Override
+      public void record(String s) {
+        messager.printMessage(Diagnostic.Kind.NOTE, s);
+      }
+    }, cache);
+    writer.setTiming(timing);
+    return writer;
+  }
+
+  private void explain(AutoImplWriter writer, ClassMetadata classMetadata, TypeElement element) {
+    if (explain) {
+      messager.printMessage(Diagnostic.Kind.NOTE, writer.explainOptions(classMetadata), element);
     }
   }
 
+  /**
+   * Returns whether {@code element} is an interface, or a class with only no-arg constructors and
+   * no instance fields of its own or in any superclass, so one instance can be shared.
+   */
+  private boolean isStateless(TypeElement element) {
+    if (element.getKind() == ElementKind.INTERFACE) {
+      return true;
+    }
+    for (ExecutableElement constructor
+        : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+      if (!constructor.getModifiers().contains(Modifier.PRIVATE)
+          && !constructor.getParameters().isEmpty()) {
+        return false;
+      }
+    }
+    TypeElement type = element;
+    while (type != null && !type.getQualifiedName().contentEquals("java.lang.Object")) {
+      for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+        if (!field.getModifiers().contains(Modifier.STATIC)) {
+          return false;
+        }
+      }
+      TypeMirror superclass = type.getSuperclass();
+      type = superclass.getKind() == TypeKind.DECLARED
+          ? (TypeElement) processingEnv.getTypeUtils().asElement(superclass)
+          : null;
+    }
+    return true;
+  }
+
+  private void reportNonAbstract(TypeElement element) {
+    messager.printMessage(Diagnostic.Kind.ERROR,
+        String.format("AutoImpl annotation added to non-abstract class: %s", element));
+  }
+
+  private void reportError(Throwable ex) {
+    messager.printMessage(
+        Diagnostic.Kind.ERROR,
+        "Error in AutoImpl Processor\n" + ex.getMessage() + "\n" + Throwables.getStackTraceAsString(ex));
+  }
+
+  /** An element being generated in parallel, with its pending render. */
+  private static class Generation {
+    private final TypeElement element;
+    private ClassMetadata classMetadata;
+    private AutoImplWriter writer;
+    private Future<?> render;
+
+    private Generation(TypeElement element) {
+      this.element = element;
+    }
+  }
+
+  /**
+   * Opens generated source files through the {@link javax.annotation.processing.Filer}, recording
+   * the annotated type as the originating element so incremental builds can track the output.
+   * When fingerprinting is on, sources are handed to {@link SourceFingerprints} instead, which only
+   * writes those that have changed.
+   */
   private static class JavaFileObjectWriterFunction implements Function<String, Writer> {
 
     private final ProcessingEnvironment env;
+    private final TypeElement originatingElement;
+    @Nullable private final SourceFingerprints fingerprints;
 
-    private JavaFileObjectWriterFunction(ProcessingEnvironment env) {
+    private JavaFileObjectWriterFunction(
+        ProcessingEnvironment env,
+        TypeElement originatingElement,
+        @Nullable SourceFingerprints fingerprints) {
       this.env = env;
+      this.originatingElement = originatingElement;
+      this.fingerprints = fingerprints;
     }
 
     @Override
     public Writer apply(String input) {
+      if (fingerprints != null) {
+        return fingerprints.open(input, env, originatingElement);
+      }
       try {
-        JavaFileObject jfo = env.getFiler().createSourceFile(input);
+        JavaFileObject jfo = env.getFiler().createSourceFile(input, originatingElement);
         return jfo.openWriter();
       } catch (IOException ex) {
         throw new RuntimeException(ex);
@@ -1,7 +1,6 @@
 package com.bdl.auto.impl.processor;
 
 import com.google.common.base.Function;
-import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
@@ -11,12 +10,13 @@ import com.bdl.annotation.processing.model.ClassMetadata;
 import com.bdl.annotation.processing.model.ConstructorMetadata;
 import com.bdl.annotation.processing.model.Imports;
 import com.bdl.annotation.processing.model.MethodMetadata;
-import com.bdl.annotation.processing.model.ParameterMetadata;
 import com.bdl.annotation.processing.model.TypeMetadata;
 import com.bdl.annotation.processing.model.Visibility;
-import com.bdl.auto.impl.AutoImpl;
 import com.bdl.auto.impl.ImplOption;
-import com.bdl.auto.impl.MethodImpl;
+import com.bdl.auto.processor.ElementTiming;
+import com.bdl.auto.processor.MetadataCache;
+import com.bdl.auto.processor.RegistryIndex;
+import com.bdl.auto.processor.SourceEmitter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.annotation.Generated;
 import javax.annotation.Nullable;
+import javax.lang.model.element.Element;
 
 /**
  * A class that writes out Auto-implementations.
@@ -38,32 +39,58 @@ class AutoImplWriter {
   
   private final Function<String, Writer> writerFunction;
   private final Recorder log;
+  private final MetadataCache cache;
+  private final SourceEmitter emitter = new SourceEmitter();
+  private ElementTiming timing = ElementTiming.untracked();
+  @Nullable private ImplOptionTable options;
 
   protected AutoImplWriter(Function<String, Writer> writerFunction, Recorder log) {
+    this(writerFunction, log, MetadataCache.create());
+  }
+
+  protected AutoImplWriter(
+      Function<String, Writer> writerFunction, Recorder log, MetadataCache cache) {
     this.writerFunction = writerFunction;
     this.log = log;
+    this.cache = cache;
+  }
+
+  /** Records the time spent in each phase of writing to {@code timing}. */
+  void setTiming(ElementTiming timing) {
+    this.timing = timing;
   }
 
   void write(ClassMetadata clazz) throws IOException {
+    Writer writer = open(clazz);
+    render(clazz);
+    flush(writer);
+  }
+
+  /** Logs that {@code clazz} is being written and opens the source file for its implementation. */
+  Writer open(ClassMetadata clazz) {
     TypeMetadata type = clazz.type();
     log.record(String.format("Writing AutoImpl class for %s", type.fullyQualifiedPathName()));
+    long start = System.nanoTime();
     Writer writer = writerFunction.apply(
         type.packagePrefix() +
             "Auto_" +
             type.nestingPrefix("_") +
             type.name() +
             "_Impl");
+    timing.addWrite(System.nanoTime() - start);
+    return writer;
+  }
 
+  /**
+   * Renders the implementation of {@code clazz} into this writer's buffer. Neither logs nor opens
+   * files, so it may run off the processing thread as long as the writer itself is not shared.
+   */
+  void render(ClassMetadata clazz) {
+    long start = System.nanoTime();
     ImmutableSet.Builder<TypeMetadata> types = ImmutableSet.builder();
     types.add(clazz.type());
     types.add(TypeMetadata.from(Generated.class));
-    final List<MethodMetadata> methods = FluentIterable.from(clazz.getAllMethods())
-        .filter(new Predicate<MethodMetadata>() {
-          @Override
-          public boolean apply(@Nullable MethodMetadata input) {
-            return input.modifiers().isAbstract();
-          }
-        }).toSortedList(Ordering.natural());
+    List<MethodMetadata> methods = cache.abstractMethods(clazz);
 
     for (MethodMetadata method : methods) {
       types.addAll(method.getAllTypes());
@@ -80,91 +107,169 @@ class AutoImplWriter {
     for (ConstructorMetadata constructor : constructors) {
       types.addAll(constructor.getAllTypes());
     }
+    long importsStart = System.nanoTime();
     Imports imports = Imports.create(clazz.type().packageName(), types.build());
-    writeClassOpening(writer, clazz, imports);
+    long importsNanos = System.nanoTime() - importsStart;
+    emitter.reset();
+    writeClassOpening(clazz, imports);
 
-    for (ConstructorMetadata constructor : constructors) {
-      writeConstructor(
-          writer,
-          imports,
-          constructor);
+    boolean singleton = AnnotationUtil.singleton(clazz);
+    if (singleton) {
+      writeSingleton(clazz.type(), imports);
+    } else {
+      for (ConstructorMetadata constructor : constructors) {
+        writeConstructor(imports, constructor);
+      }
     }
 
-    AutoImpl autoImpl = AnnotationUtil.autoImpl(clazz);
+    options = ImplOptionTable.create(AnnotationUtil.autoImpl(clazz), methods);
 
+    // Methods the class or interface implements itself, including default methods, do work.
+    boolean noOp = clazz.getAllMethods().size() == methods.size();
     for (MethodMetadata method : methods) {
-      writeMethod(writer, autoImpl, imports, method.asConcrete());
+      ImplOption option = options.optionFor(method);
+      noOp &= option == ImplOption.RETURN_DEFAULT_VALUE;
+      writeMethod(option, imports, method.asConcrete());
+    }
+    if (singleton) {
+      writeIsNoOp(noOp);
     }
-    writeClassClosing(writer);
+    writeClassClosing();
+    timing.addImports(importsNanos);
+    timing.addRender(System.nanoTime() - start - importsNanos);
+    timing.setCounts(methods.size(), constructors.size());
+  }
 
+  /**
+   * Describes how the option for each method of the last rendered class was resolved, or returns
+   * {@code null} if nothing has been rendered.
+   */
+  @Nullable
+  String explainOptions(ClassMetadata clazz) {
+    return options == null ? null : options.explain(clazz.type());
+  }
+
+  /**
+   * Adds the implementation of {@code clazz} to {@code index}, if it can be created without
+   * arguments.
+   */
+  void register(RegistryIndex index, ClassMetadata clazz, Element originatingElement) {
+    TypeMetadata type = clazz.type();
+    String generated = type.packagePrefix() + "Auto_" + type.nestingPrefix("_") + type.name()
+        + "_Impl";
+    if (AnnotationUtil.singleton(clazz)) {
+      index.addImpl(
+          type,
+          generated + (type.params().isEmpty() ? ".INSTANCE" : ".instance()"),
+          originatingElement);
+      return;
+    }
+    boolean noArgs = clazz.category() == ClassMetadata.Category.INTERFACE
+        || clazz.constructors().isEmpty();
+    for (ConstructorMetadata constructor : clazz.constructors()) {
+      noArgs |= constructor.visibility() != Visibility.PRIVATE
+          && constructor.parameters().isEmpty();
+    }
+    if (noArgs) {
+      index.addImpl(type, "new " + generated + "()", originatingElement);
+    }
+  }
+
+  /** Writes out the rendered class and closes the writer. */
+  void flush(Writer writer) throws IOException {
     if (writer != null) {
+      long start = System.nanoTime();
+      emitter.writeTo(writer);
       writer.close();
+      timing.addWrite(System.nanoTime() - start);
     }
   }
 
-  private void writeClassOpening(Writer writer, ClassMetadata clazz, final Imports imports) throws IOException {
+  private void writeClassOpening(ClassMetadata clazz, Imports imports) {
     TypeMetadata type = clazz.type();
-    writeLine(writer, "package %s;", type.packageName());
-    writeLine(writer, "");
+    emitter.append("package ").append(type.packageName()).line(";");
+    emitter.newLine();
     for (String imp : imports.getImports()) {
-      writeLine(writer, "import %s;", imp);
+      emitter.append("import ").append(imp).line(";");
     }
-    writeLine(writer, "");
-    writeLine(writer, "/** AutoImpl Generated class for %s. */", type.nestingPrefix() + type.name());
-    writeLine(writer, "@Generated(\"com.bdl.auto.impl.processor.AutoImplProcessor\")");
-    writeLine(writer, "public class Auto_%s%s_Impl%s %s %s {",
-        type.nestingPrefix("_"),
-        type.name(),
-        type.params().isEmpty()
-            ? ""
-            : "<" + Joiner.on(", ").join(FluentIterable.from(type.params())
-                .transform(new Function<TypeMetadata, String>() {
-                  @Nullable
-                  @Override
-                  public String apply(@Nullable TypeMetadata input) {
-                    return input.toString(imports, true);
-                  }
-                })) + ">",
-        clazz.category() == ClassMetadata.Category.CLASS ? "extends" : "implements",
-        type.toString(imports));
-  }
-
-  private void writeConstructor(
-      Writer writer, final Imports imports, ConstructorMetadata constructor) throws IOException {
-    writeLine(writer, "");
-    writeLine(writer, "  %sAuto_%s%s_Impl(%s) {",
-        constructor.visibility().prefix(),
-        constructor.type().nestingPrefix("_"),
-        constructor.type().name(),
-        Joiner.on(", ").join(FluentIterable.from(constructor.parameters())
-            .transform(new Function<ParameterMetadata, String>() {
-              @Nullable
-              @Override
-              public String apply(@Nullable ParameterMetadata input) {
-                return input.toString(imports);
-              }
-            })));
-    writeLine(writer, "    super(%s);", Joiner.on(", ").join(FluentIterable.from(constructor.parameters())
-        .transform(new Function<ParameterMetadata, String>() {
-          @Nullable
-          @Override
-          public String apply(@Nullable ParameterMetadata input) {
-            return input.name();
-          }
-        })));
-    writeLine(writer, "  }");
+    emitter.newLine();
+    emitter.append("/** AutoImpl Generated class for ")
+        .append(type.nestingPrefix())
+        .append(type.name())
+        .line(". */");
+    emitter.line("@Generated(\"com.bdl.auto.impl.processor.AutoImplProcessor\")");
+    emitter.append("public class Auto_")
+        .append(type.nestingPrefix("_"))
+        .append(type.name())
+        .append("_Impl")
+        .appendTypeParameters(type.params(), imports)
+        .append(clazz.category() == ClassMetadata.Category.CLASS ? " extends " : " implements ")
+        .append(type.toString(imports))
+        .line(" {");
   }
 
-  private void writeMethod(Writer writer,
-      AutoImpl autoImpl,
-      Imports imports,
-      MethodMetadata method) throws IOException {
-    switch (optionForMethod(autoImpl, method)) {
+  private void writeConstructor(Imports imports, ConstructorMetadata constructor) {
+    emitter.newLine();
+    emitter.append("  ")
+        .append(constructor.visibility().prefix())
+        .append("Auto_")
+        .append(constructor.type().nestingPrefix("_"))
+        .append(constructor.type().name())
+        .append("_Impl(")
+        .appendParameters(constructor.parameters(), imports)
+        .line(") {");
+    emitter.append("    super(").appendArguments(constructor.parameters()).line(");");
+    emitter.line("  }");
+  }
+
+  /**
+   * Writes the shared instance and the private constructor that replaces the class's own. Generic
+   * types share a raw instance through a factory, which is safe since the class has no state.
+   */
+  private void writeSingleton(TypeMetadata type, Imports imports) {
+    String name = "Auto_" + type.nestingPrefix("_") + type.name() + "_Impl";
+    emitter.newLine();
+    if (type.params().isEmpty()) {
+      emitter.line("  /** The shared instance, which has no state of its own. */");
+      emitter.append("  public static final ").append(name).append(" INSTANCE = new ")
+          .append(name).line("();");
+    } else {
+      emitter.line("  @SuppressWarnings(\"rawtypes\")");
+      emitter.append("  private static final ").append(name).append(" INSTANCE = new ")
+          .append(name).line("();");
+    }
+    emitter.newLine();
+    emitter.append("  private ").append(name).line("() {}");
+    if (!type.params().isEmpty()) {
+      emitter.newLine();
+      emitter.line("  /** Returns the shared instance, which has no state of its own. */");
+      emitter.line("  @SuppressWarnings(\"unchecked\")");
+      emitter.append("  public static ")
+          .appendTypeParameters(type.params(), imports)
+          .append(" ")
+          .append(name)
+          .appendTypeArguments(type.params(), imports)
+          .line(" instance() {");
+      emitter.line("    return INSTANCE;");
+      emitter.line("  }");
+    }
+  }
+
+  private void writeIsNoOp(boolean noOp) {
+    emitter.newLine();
+    emitter.line("  /** Returns whether every method only returns a default value. */");
+    emitter.line("  public boolean isNoOp() {");
+    emitter.append("    return ").append(noOp ? "true" : "false").line(";");
+    emitter.line("  }");
+  }
+
+  private void writeMethod(ImplOption option, Imports imports, MethodMetadata method) {
+    switch (option) {
       case THROW_EXCEPTION:
-        writeThrowingMethod(writer, imports, method);
+        writeThrowingMethod(imports, method);
         break;
       case RETURN_DEFAULT_VALUE:
-        writeDefaultValueMethod(writer, imports, method);
+        writeDefaultValueMethod(imports, method);
         break;
       default:
         throw new IllegalStateException(
@@ -173,54 +278,26 @@ class AutoImplWriter {
     }
   }
 
-  private ImplOption optionForMethod(AutoImpl autoImpl, MethodMetadata method) {
-    MethodImpl methodImpl = AnnotationUtil.methodImpl(method);
-    if (methodImpl.value() != ImplOption.USE_PARENT) {
-      return methodImpl.value();
-    }
-
-    ImplOption option = ImplOption.USE_PARENT;
-    switch (method.type().kind()) {
-      case NUMERIC:
-        option = autoImpl.numericImpl();
-        break;
-      case BOOLEAN:
-        option = autoImpl.booleanImpl();
-        break;
-      case STRING:
-        option = autoImpl.stringImpl();
-        break;
-      case VOID:
-        option = autoImpl.voidImpl();
-        break;
-      case OBJECT:
-        option = autoImpl.objectImpl();
-        break;
-    }
-    return option == ImplOption.USE_PARENT
-        ? autoImpl.value()
-        : option;
-  }
-
-  private void writeThrowingMethod(Writer writer, Imports imports, MethodMetadata method) throws IOException {
-    writeLine(writer, "");
-    writeLine(writer, "  @Override");
-    writeLine(writer, "  %s {", method.toString(imports));
-    writeLine(writer,
-        "    throw new UnsupportedOperationException(\"The method \\\"%s\\\" is not supported in this implementation.\");",
-        method.toString(imports));
-    writeLine(writer, "  }");
+  private void writeThrowingMethod(Imports imports, MethodMetadata method) {
+    String signature = method.toString(imports);
+    emitter.newLine();
+    emitter.line("  @Override");
+    emitter.append("  ").append(signature).line(" {");
+    emitter.append("    throw new UnsupportedOperationException(\"The method \\\"")
+        .append(signature)
+        .line("\\\" is not supported in this implementation.\");");
+    emitter.line("  }");
   }
 
 
-  private void writeDefaultValueMethod(Writer writer, Imports imports, MethodMetadata method) throws IOException {
-    writeLine(writer, "");
-    writeLine(writer, "  @Override");
-    writeLine(writer, "  %s {", method.toString(imports));
+  private void writeDefaultValueMethod(Imports imports, MethodMetadata method) {
+    emitter.newLine();
+    emitter.line("  @Override");
+    emitter.append("  ").append(method.toString(imports)).line(" {");
     if (!method.type().name().equals("void")) {
-      writeLine(writer, "    return %s;", getDefaultReturn(method.type()));
+      emitter.append("    return ").append(getDefaultReturn(method.type())).line(";");
     }
-    writeLine(writer, "  }");
+    emitter.line("  }");
   }
 
   protected static String getDefaultReturn(TypeMetadata type) {
@@ -236,12 +313,7 @@ class AutoImplWriter {
     }
   }
 
-  private void writeClassClosing(Writer writer) throws IOException {
-    writeLine(writer, "}");
-  }
-
-  protected static void writeLine(Writer writer, String template, Object... params) throws IOException {
-    writer.write(String.format(template, params));
-    writer.write("\n");
+  private void writeClassClosing() {
+    emitter.line("}");
   }
 }
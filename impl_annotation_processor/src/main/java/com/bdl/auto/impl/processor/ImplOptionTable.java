@@ -0,0 +1,167 @@
+package com.bdl.auto.impl.processor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+import com.bdl.auto.impl.AutoImpl;
+import com.bdl.auto.impl.ImplOption;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * The {@link ImplOption} to use for each abstract method of a class, resolved in a single pass over
+ * the class's methods.
+ *
+ * <p>Options for each category of return type are resolved against the class's {@link AutoImpl}
+ * once, and any {@link com.bdl.auto.impl.MethodImpl} overrides are collected into a map, so
+ * looking up a method's option does not need to look at annotations at all.
+ *
+ * @author Ben Leitner
+ */
+final class ImplOptionTable {
+
+  /** The categories of return type that {@link AutoImpl} sets options for. */
+  enum ReturnCategory {
+    NUMERIC("numericImpl"),
+    BOOLEAN("booleanImpl"),
+    STRING("stringImpl"),
+    VOID("voidImpl"),
+    OBJECT("objectImpl");
+
+    private final String attribute;
+
+    ReturnCategory(String attribute) {
+      this.attribute = attribute;
+    }
+
+    /** Returns the category of the given return type, or {@code null} if it has none. */
+    @Nullable
+    static ReturnCategory of(TypeMetadata type) {
+      switch (type.kind()) {
+        case NUMERIC:
+          return NUMERIC;
+        case BOOLEAN:
+          return BOOLEAN;
+        case STRING:
+          return STRING;
+        case VOID:
+          return VOID;
+        case OBJECT:
+          return OBJECT;
+        default:
+          return null;
+      }
+    }
+
+    ImplOption declaredBy(AutoImpl autoImpl) {
+      switch (this) {
+        case NUMERIC:
+          return autoImpl.numericImpl();
+        case BOOLEAN:
+          return autoImpl.booleanImpl();
+        case STRING:
+          return autoImpl.stringImpl();
+        case VOID:
+          return autoImpl.voidImpl();
+        default:
+          return autoImpl.objectImpl();
+      }
+    }
+  }
+
+  private static final ReturnCategory[] CATEGORIES = ReturnCategory.values();
+
+  private final ImplOption defaultOption;
+  private final ImplOption[] declared;
+  private final ImplOption[] resolved;
+  private final Map<MethodMetadata, ImplOption> overrides;
+  private final ImmutableList<MethodMetadata> methods;
+
+  private ImplOptionTable(
+      ImplOption defaultOption,
+      ImplOption[] declared,
+      ImplOption[] resolved,
+      Map<MethodMetadata, ImplOption> overrides,
+      ImmutableList<MethodMetadata> methods) {
+    this.defaultOption = defaultOption;
+    this.declared = declared;
+    this.resolved = resolved;
+    this.overrides = overrides;
+    this.methods = methods;
+  }
+
+  /**
+   * Resolves the options for {@code methods}, the abstract methods of a class annotated with
+   * {@code autoImpl}. Methods are looked up by identity, so the same instances must be passed to
+   * {@link #optionFor}.
+   */
+  static ImplOptionTable create(AutoImpl autoImpl, List<MethodMetadata> methods) {
+    ImplOption defaultOption = autoImpl.value();
+    ImplOption[] declared = new ImplOption[CATEGORIES.length];
+    ImplOption[] resolved = new ImplOption[CATEGORIES.length];
+    for (ReturnCategory category : CATEGORIES) {
+      ImplOption option = category.declaredBy(autoImpl);
+      declared[category.ordinal()] = option;
+      resolved[category.ordinal()] = option == ImplOption.USE_PARENT ? defaultOption : option;
+    }
+
+    Map<MethodMetadata, ImplOption> overrides = Maps.newIdentityHashMap();
+    for (MethodMetadata method : methods) {
+      ImplOption override = AnnotationUtil.methodImplOption(method);
+      if (override != null) {
+        overrides.put(method, override);
+      }
+    }
+    return new ImplOptionTable(
+        defaultOption, declared, resolved, overrides, ImmutableList.copyOf(methods));
+  }
+
+  /** Returns the option to implement {@code method} with. */
+  ImplOption optionFor(MethodMetadata method) {
+    if (!overrides.isEmpty()) {
+      ImplOption override = overrides.get(method);
+      if (override != null) {
+        return override;
+      }
+    }
+    ReturnCategory category = ReturnCategory.of(method.type());
+    return category == null ? defaultOption : resolved[category.ordinal()];
+  }
+
+  /** Describes the resolved table, and which setting each method's option came from. */
+  String explain(TypeMetadata type) {
+    StringBuilder explanation = new StringBuilder("AutoImpl options for ")
+        .append(type.fullyQualifiedPathName())
+        .append(":\n  value: ")
+        .append(defaultOption);
+    for (ReturnCategory category : CATEGORIES) {
+      explanation.append("\n  ").append(category.attribute).append(": ");
+      appendCategoryOption(explanation, category);
+    }
+    for (MethodMetadata method : methods) {
+      explanation.append("\n  ").append(method.name()).append(": ");
+      ImplOption override = overrides.get(method);
+      ReturnCategory category = ReturnCategory.of(method.type());
+      if (override != null) {
+        explanation.append(override).append(" (@MethodImpl)");
+      } else if (category == null) {
+        explanation.append(defaultOption).append(" (value)");
+      } else {
+        appendCategoryOption(explanation, category);
+      }
+    }
+    return explanation.toString();
+  }
+
+  private void appendCategoryOption(StringBuilder explanation, ReturnCategory category) {
+    explanation.append(resolved[category.ordinal()]);
+    explanation.append(declared[category.ordinal()] == ImplOption.USE_PARENT
+        ? " (value)"
+        : " (" + category.attribute + ")");
+  }
+}
@@ -0,0 +1,283 @@
+package com.bdl.auto.impl.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static org.truth0.Truth.ASSERT;
+
+import com.bdl.auto.processor.RecordingProcessor;
+import com.bdl.auto.processor.RegistryIndex;
+import com.bdl.auto.processor.RenderPool;
+import com.bdl.auto.processor.SourceFingerprints;
+import com.bdl.auto.processor.TimingReport;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain AutoImplProcessor} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class AutoImplProcessorTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static final JavaFileObject SIMPLE = JavaFileObjects.forSourceLines("test.Simple",
+      "package test;",
+      "",
+      "import com.bdl.auto.impl.AutoImpl;",
+      "",
+      "@AutoImpl",
+      "public interface Simple {",
+      "  int add(int first, int second);",
+      "}");
+  private static final JavaFileObject OUTER = JavaFileObjects.forSourceLines("test.Outer",
+      "package test;",
+      "",
+      "import com.bdl.auto.impl.AutoImpl;",
+      "",
+      "public class Outer {",
+      "  @AutoImpl",
+      "  public abstract static class Inner {",
+      "    public abstract String name();",
+      "  }",
+      "}");
+
+  private static final JavaFileObject CHANGED_OUTER = JavaFileObjects.forSourceLines("test.Outer",
+      "package test;",
+      "",
+      "import com.bdl.auto.impl.AutoImpl;",
+      "",
+      "public class Outer {",
+      "  @AutoImpl",
+      "  public abstract static class Inner {",
+      "    public abstract String name();",
+      "    public abstract int size();",
+      "  }",
+      "}");
+
+  @Test
+  public void testOriginatingElements() {
+    RecordingProcessor processor = new RecordingProcessor(new AutoImplProcessor());
+    compile(processor);
+
+    assertThat(processor.originatingElements()).isEqualTo(
+        ImmutableListMultimap.of(
+            "test.Auto_Simple_Impl", "test.Simple",
+            "test.Auto_Outer_Inner_Impl", "test.Outer.Inner"));
+  }
+
+  @Test
+  public void testParallelOutputMatchesSerial() {
+    RecordingProcessor serial = new RecordingProcessor(new AutoImplProcessor());
+    compile(serial);
+    RecordingProcessor parallel = new RecordingProcessor(
+        new AutoImplProcessor(), ImmutableMap.of(RenderPool.PARALLEL_OPTION, "4"));
+    compile(parallel);
+
+    assertThat(serial.generatedSources()).hasSize(2);
+    assertThat(parallel.generatedSources()).isEqualTo(serial.generatedSources());
+  }
+
+  @Test
+  public void testFingerprintsSkipUnchangedSources() throws IOException {
+    File generated = folder.newFolder("generated");
+    String manifest = new File(folder.getRoot(), "fingerprints").getPath();
+    Map<String, String> options = ImmutableMap.of(
+        SourceFingerprints.FINGERPRINT_OPTION, manifest,
+        SourceFingerprints.SKIP_OPTION, "");
+    RecordingProcessor first = new RecordingProcessor(new AutoImplProcessor(), options);
+    compileInto(generated, first, OUTER);
+    assertThat(first.generatedSources().keySet())
+        .containsExactly("test.Auto_Simple_Impl", "test.Auto_Outer_Inner_Impl");
+
+    RecordingProcessor second = new RecordingProcessor(new AutoImplProcessor(), options);
+    compileInto(generated, second, CHANGED_OUTER);
+
+    assertThat(second.generatedSources().keySet()).containsExactly("test.Auto_Outer_Inner_Impl");
+  }
+
+  @Test
+  public void testFingerprintsDontSkipByDefault() throws IOException {
+    File generated = folder.newFolder("generated");
+    String manifest = new File(folder.getRoot(), "fingerprints").getPath();
+    Map<String, String> options = ImmutableMap.of(SourceFingerprints.FINGERPRINT_OPTION, manifest);
+    compileInto(generated, new RecordingProcessor(new AutoImplProcessor(), options), OUTER);
+
+    RecordingProcessor second = new RecordingProcessor(new AutoImplProcessor(), options);
+    compileInto(generated, second, OUTER);
+
+    assertThat(second.generatedSources().keySet())
+        .containsExactly("test.Auto_Simple_Impl", "test.Auto_Outer_Inner_Impl");
+  }
+
+  @Test
+  public void testFingerprintsKeepUntouchedSources() throws IOException {
+    File manifest = new File(folder.getRoot(), "fingerprints");
+    Files.write("test.Auto_Untouched_Impl 0123\n", manifest, Charsets.UTF_8);
+    compile(new RecordingProcessor(new AutoImplProcessor(),
+        ImmutableMap.of(SourceFingerprints.FINGERPRINT_OPTION, manifest.getPath())));
+
+    String contents = Files.toString(manifest, Charsets.UTF_8);
+    assertThat(contents).contains("test.Auto_Simple_Impl ");
+    assertThat(contents).contains("test.Auto_Outer_Inner_Impl ");
+    assertThat(contents).contains("test.Auto_Untouched_Impl 0123");
+  }
+
+  @Test
+  public void testTimingReport() throws IOException {
+    File report = new File(folder.getRoot(), "report.json");
+    compile(new RecordingProcessor(
+        new AutoImplProcessor(), ImmutableMap.of(TimingReport.REPORT_OPTION, report.getPath())));
+
+    String json = Files.toString(report, Charsets.UTF_8);
+    assertThat(json).contains("{\"type\": \"test.Simple\", \"processor\": \"AutoImpl\"");
+    assertThat(json).contains("{\"type\": \"test.Outer.Inner\", \"processor\": \"AutoImpl\"");
+  }
+
+  @Test
+  public void testSingleton() {
+    RecordingProcessor processor = new RecordingProcessor(new AutoImplProcessor());
+    compile(processor, JavaFileObjects.forSourceLines("test.Listener",
+        "package test;",
+        "",
+        "import com.bdl.auto.impl.AutoImpl;",
+        "import com.bdl.auto.impl.ImplOption;",
+        "",
+        "@AutoImpl(value = ImplOption.RETURN_DEFAULT_VALUE, singleton = true)",
+        "public interface Listener<T> {",
+        "  void onEvent(T event);",
+        "}"));
+
+    String source = processor.generatedSources().get("test.Auto_Listener_Impl");
+    assertThat(source).contains("  private Auto_Listener_Impl() {}");
+    assertThat(source).contains("  public static <T> Auto_Listener_Impl<T> instance() {");
+    assertThat(source).contains("  public boolean isNoOp() {\n    return true;\n  }");
+    assertThat(processor.generatedSources().get("test.Auto_Simple_Impl"))
+        .doesNotContain("isNoOp");
+  }
+
+  @Test
+  public void testSingletonWithDefaultMethodIsNotNoOp() {
+    RecordingProcessor processor = new RecordingProcessor(new AutoImplProcessor());
+    compile(processor, JavaFileObjects.forSourceLines("test.Counter",
+        "package test;",
+        "",
+        "import com.bdl.auto.impl.AutoImpl;",
+        "import com.bdl.auto.impl.ImplOption;",
+        "",
+        "@AutoImpl(value = ImplOption.RETURN_DEFAULT_VALUE, singleton = true)",
+        "public interface Counter {",
+        "  int count();",
+        "",
+        "  default int twice() {",
+        "    return count() * 2;",
+        "  }",
+        "}"));
+
+    assertThat(processor.generatedSources().get("test.Auto_Counter_Impl"))
+        .contains("  public boolean isNoOp() {\n    return false;\n  }");
+  }
+
+  @Test
+  public void testSingletonWithFieldsFails() {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.of(JavaFileObjects.forSourceLines("test.Counter",
+            "package test;",
+            "",
+            "import com.bdl.auto.impl.AutoImpl;",
+            "",
+            "@AutoImpl(singleton = true)",
+            "public abstract class Counter {",
+            "  private int count;",
+            "",
+            "  public abstract void increment();",
+            "}")))
+        .processedWith(new AutoImplProcessor())
+        .failsToCompile()
+        .withErrorContaining(
+            "AutoImpl singleton set on test.Counter, but it has fields or constructor parameters.");
+  }
+
+  @Test
+  public void testIncrementalCategory() {
+    RecordingProcessor isolating = new RecordingProcessor(new AutoImplProcessor());
+    compile(isolating);
+    assertThat(isolating.getSupportedOptions())
+        .contains("org.gradle.annotation.processing.isolating");
+
+    RecordingProcessor aggregating = new RecordingProcessor(
+        new AutoImplProcessor(), ImmutableMap.of(RegistryIndex.INDEX_OPTION, ""));
+    compile(aggregating);
+    assertThat(aggregating.getSupportedOptions())
+        .contains("org.gradle.annotation.processing.aggregating");
+    assertThat(aggregating.getSupportedOptions())
+        .doesNotContain("org.gradle.annotation.processing.isolating");
+  }
+
+  @Test
+  public void testRegistryIndex() {
+    RecordingProcessor processor = new RecordingProcessor(
+        new AutoImplProcessor(), ImmutableMap.of(RegistryIndex.INDEX_OPTION, ""));
+    compile(processor);
+
+    String name = null;
+    for (String source : processor.generatedSources().keySet()) {
+      if (source.startsWith("test.Auto_Index_")) {
+        assertThat(name).isNull();
+        name = source;
+      }
+    }
+    String index = processor.generatedSources().get(name);
+    assertThat(index).contains(
+        "    registry.registerImpl(test.Simple.class, new AutoRegistry.ImplFactory() {\n"
+            + "      @Override\n"
+            + "      public Object create() {\n"
+            + "        return new test.Auto_Simple_Impl();\n"
+            + "      }\n"
+            + "    });");
+    assertThat(index).contains("        return new test.Auto_Outer_Inner_Impl();");
+  }
+
+  /**
+   * Runs {@code processor} with javac's own file manager, so that generated sources are written to
+   * {@code generated} and survive into the next call, as in a real build.
+   */
+  private static void compileInto(File generated, Processor processor, JavaFileObject outer) {
+    CompilationTask task = ToolProvider.getSystemJavaCompiler().getTask(
+        null,
+        null,
+        null,
+        ImmutableList.of("-proc:only", "-s", generated.getPath()),
+        null,
+        ImmutableList.of(SIMPLE, outer));
+    task.setProcessors(ImmutableList.of(processor));
+    assertThat(task.call()).isTrue();
+  }
+
+  private static void compile(Processor processor, JavaFileObject... extraSources) {
+    ASSERT.about(javaSources())
+        .that(ImmutableList.<JavaFileObject>builder()
+            .add(SIMPLE, OUTER)
+            .add(extraSources)
+            .build())
+        .processedWith(processor)
+        .compilesWithoutError();
+  }
+}
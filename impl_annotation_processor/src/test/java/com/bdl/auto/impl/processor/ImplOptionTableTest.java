@@ -0,0 +1,79 @@
+package com.bdl.auto.impl.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.bdl.auto.impl.ImplOption;
+import com.bdl.auto.processor.MetadataCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.testing.compile.CompilationRule;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain ImplOptionTable} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class ImplOptionTableTest {
+
+  @Rule public final CompilationRule compilation = new CompilationRule();
+
+  private ClassMetadata clazz;
+  private List<MethodMetadata> methods;
+  private ImplOptionTable table;
+
+  @Before
+  public void before() {
+    clazz = ClassMetadata.fromElement(
+        compilation.getElements().getTypeElement("com.bdl.auto.impl.processor.HasOverrides"));
+    methods = MetadataCache.create().abstractMethods(clazz);
+    table = ImplOptionTable.create(AnnotationUtil.autoImpl(clazz), methods);
+  }
+
+  @Test
+  public void testOptions() {
+    Map<String, ImplOption> options = Maps.newHashMap();
+    for (MethodMetadata method : methods) {
+      options.put(method.name(), table.optionFor(method));
+    }
+
+    assertThat(options).isEqualTo(ImmutableMap.<String, ImplOption>builder()
+        .put("intMethod", ImplOption.RETURN_DEFAULT_VALUE)
+        .put("doubleMethod", ImplOption.RETURN_DEFAULT_VALUE)
+        .put("longMethod", ImplOption.RETURN_DEFAULT_VALUE)
+        .put("booleanMethod", ImplOption.RETURN_DEFAULT_VALUE)
+        .put("overriddenBooleanMethod", ImplOption.THROW_EXCEPTION)
+        .put("stringMethod", ImplOption.THROW_EXCEPTION)
+        .put("overriddenStringMethod", ImplOption.RETURN_DEFAULT_VALUE)
+        .put("voidMethod", ImplOption.THROW_EXCEPTION)
+        .put("overriddenVoidMethod", ImplOption.RETURN_DEFAULT_VALUE)
+        .put("objectMethod", ImplOption.THROW_EXCEPTION)
+        .build());
+  }
+
+  @Test
+  public void testExplain() {
+    String explanation = table.explain(clazz.type());
+
+    assertThat(explanation).startsWith(
+        "AutoImpl options for com.bdl.auto.impl.processor.HasOverrides:\n"
+            + "  value: THROW_EXCEPTION\n"
+            + "  numericImpl: RETURN_DEFAULT_VALUE (numericImpl)\n"
+            + "  booleanImpl: RETURN_DEFAULT_VALUE (booleanImpl)\n"
+            + "  stringImpl: THROW_EXCEPTION (value)\n"
+            + "  voidImpl: THROW_EXCEPTION (value)\n"
+            + "  objectImpl: THROW_EXCEPTION (value)\n");
+    assertThat(explanation).contains("\n  booleanMethod: RETURN_DEFAULT_VALUE (booleanImpl)");
+    assertThat(explanation).contains("\n  overriddenBooleanMethod: THROW_EXCEPTION (@MethodImpl)");
+    assertThat(explanation).contains("\n  stringMethod: THROW_EXCEPTION (value)");
+  }
+}
@@ -0,0 +1,93 @@
+package com.bdl.auto.processor;
+
+/**
+ * Time spent generating the source for a single annotated type, broken down by phase.
+ *
+ * <p>Each phase may be recorded from a different thread, but never concurrently; the values are
+ * only read once generation of the type has finished.
+ *
+ * @author Ben Leitner
+ */
+public final class ElementTiming {
+
+  private final String processor;
+  private final String type;
+  private long metadataNanos;
+  private long importsNanos;
+  private long renderNanos;
+  private long writeNanos;
+  private int methods;
+  private int constructors;
+
+  ElementTiming(String processor, String type) {
+    this.processor = processor;
+    this.type = type;
+  }
+
+  /** Returns a timing that is not part of any report, for writers used outside a processor. */
+  public static ElementTiming untracked() {
+    return new ElementTiming("", "");
+  }
+
+  /** Time spent reading the type's metadata from its element. */
+  public void addMetadata(long nanos) {
+    metadataNanos += nanos;
+  }
+
+  /** Time spent computing the imports of the generated source. */
+  public void addImports(long nanos) {
+    importsNanos += nanos;
+  }
+
+  /** Time spent rendering the generated source, not counting imports. */
+  public void addRender(long nanos) {
+    renderNanos += nanos;
+  }
+
+  /** Time spent creating and writing the generated file. */
+  public void addWrite(long nanos) {
+    writeNanos += nanos;
+  }
+
+  /** The number of methods and constructors in the generated source. */
+  public void setCounts(int methods, int constructors) {
+    this.methods = methods;
+    this.constructors = constructors;
+  }
+
+  String processor() {
+    return processor;
+  }
+
+  String type() {
+    return type;
+  }
+
+  long metadataNanos() {
+    return metadataNanos;
+  }
+
+  long importsNanos() {
+    return importsNanos;
+  }
+
+  long renderNanos() {
+    return renderNanos;
+  }
+
+  long writeNanos() {
+    return writeNanos;
+  }
+
+  long totalNanos() {
+    return metadataNanos + importsNanos + renderNanos + writeNanos;
+  }
+
+  int methods() {
+    return methods;
+  }
+
+  int constructors() {
+    return constructors;
+  }
+}
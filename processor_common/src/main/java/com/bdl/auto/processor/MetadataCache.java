@@ -0,0 +1,107 @@
+package com.bdl.auto.processor;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Ordering;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.MethodMetadata;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+/**
+ * Cache of the sorted abstract methods of each {@link ClassMetadata} read in a compilation, so that
+ * the writers for one annotated type don't each filter and sort its methods again.
+ *
+ * <p>A single instance is shared by every Auto processor running in the same compilation. Entries
+ * are keyed on the metadata instance itself and held weakly, so they go once that metadata is
+ * dropped. The metadata itself is not cached: {@link ClassMetadata#fromElement} walks the whole
+ * hierarchy of the type it reads, so there is no way to reuse what it read for a shared supertype.
+ *
+ * @author Ben Leitner
+ */
+public final class MetadataCache {
+
+  /** Processor option that, when present, reports cache hit/miss counts at the end of processing. */
+  public static final String STATS_OPTION = "auto.stats";
+
+  /**
+   * Caches for running compilations. Keyed on the {@link Elements} utility, which is shared by all
+   * processors in a compilation even when the build tool wraps each processor's environment.
+   */
+  private static final Map<Elements, MetadataCache> CACHES = new WeakHashMap<Elements, MetadataCache>();
+
+  private final ConcurrentMap<ClassMetadata, ImmutableList<MethodMetadata>> abstractMethods =
+      new MapMaker().weakKeys().makeMap();
+  private final AtomicInteger methodHits = new AtomicInteger();
+  private final AtomicInteger methodMisses = new AtomicInteger();
+  private final AtomicBoolean reported = new AtomicBoolean();
+
+  private MetadataCache() {}
+
+  /** Creates a standalone cache that is not shared with any compilation. */
+  public static MetadataCache create() {
+    return new MetadataCache();
+  }
+
+  /** Returns the cache for the compilation that {@code env} belongs to. */
+  public static MetadataCache forEnvironment(ProcessingEnvironment env) {
+    synchronized (CACHES) {
+      MetadataCache cache = CACHES.get(env.getElementUtils());
+      if (cache == null) {
+        cache = new MetadataCache();
+        CACHES.put(env.getElementUtils(), cache);
+      }
+      return cache;
+    }
+  }
+
+  /** Returns the abstract methods of the given class, including inherited ones, in natural order. */
+  public ImmutableList<MethodMetadata> abstractMethods(ClassMetadata clazz) {
+    ImmutableList<MethodMetadata> cached = abstractMethods.get(clazz);
+    if (cached != null) {
+      methodHits.incrementAndGet();
+      return cached;
+    }
+    methodMisses.incrementAndGet();
+    ImmutableList<MethodMetadata> methods = FluentIterable.from(clazz.getAllMethods())
+        .filter(new Predicate<MethodMetadata>() {
+          @Override
+          public boolean apply(@Nullable MethodMetadata input) {
+            return input.modifiers().isAbstract();
+          }
+        })
+        .toSortedList(Ordering.<MethodMetadata>natural());
+    abstractMethods.putIfAbsent(clazz, methods);
+    return methods;
+  }
+
+  /**
+   * Prints the hit and miss counts as a note if {@link #STATS_OPTION} is set. Only the first call
+   * for a compilation prints anything, so every processor may call this when processing is over.
+   */
+  public void reportStats(ProcessingEnvironment env) {
+    if (!env.getOptions().containsKey(STATS_OPTION) || !reported.compareAndSet(false, true)) {
+      return;
+    }
+    Messager messager = env.getMessager();
+    messager.printMessage(
+        Diagnostic.Kind.NOTE,
+        String.format(
+            "Auto abstract method cache: %d hits, %d misses.",
+            methodHits.get(),
+            methodMisses.get()));
+  }
+}
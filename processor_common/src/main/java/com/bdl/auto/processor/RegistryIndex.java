@@ -0,0 +1,227 @@
+package com.bdl.auto.processor;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+import com.bdl.annotation.processing.model.TypeMetadata;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+/**
+ * An index of the classes generated in a compilation, for {@code com.bdl.auto.AutoRegistry} to
+ * find at runtime without reflection or classpath scanning.
+ *
+ * <p>The index is written when {@link #INDEX_OPTION} is set. Each round, every package with new
+ * generated classes gets an index class registering a factory for each of them, and when
+ * processing is over the index classes are listed in a service file. Index classes are named by a
+ * hash of their contents, so compilations that share a package, such as main and test sources, get
+ * distinct ones.
+ *
+ * <p>A single instance is shared by every Auto processor running in the same compilation.
+ *
+ * @author Ben Leitner
+ */
+public final class RegistryIndex {
+
+  /** Processor option that, when present, writes the index. */
+  public static final String INDEX_OPTION = "auto.registry";
+
+  /** The service file listing the index classes. */
+  static final String SERVICE_FILE = "META-INF/services/com.bdl.auto.AutoRegistry$Index";
+
+  private static final String AGGREGATING = "org.gradle.annotation.processing.aggregating";
+  private static final String ISOLATING = "org.gradle.annotation.processing.isolating";
+
+  private static final Map<Elements, RegistryIndex> INDEXES =
+      new WeakHashMap<Elements, RegistryIndex>();
+
+  private final Map<String, List<String>> registrations = Maps.newTreeMap();
+  private final Map<String, List<Element>> origins = Maps.newHashMap();
+  private final Set<String> indexClasses = Sets.newTreeSet();
+  private boolean finished;
+
+  private RegistryIndex() {}
+
+  /**
+   * Returns the index for the compilation that {@code env} belongs to, or {@code null} if
+   * {@link #INDEX_OPTION} is not set.
+   */
+  @Nullable
+  public static RegistryIndex forEnvironment(ProcessingEnvironment env) {
+    if (!env.getOptions().containsKey(INDEX_OPTION)) {
+      return null;
+    }
+    synchronized (INDEXES) {
+      RegistryIndex index = INDEXES.get(env.getElementUtils());
+      if (index == null) {
+        index = new RegistryIndex();
+        INDEXES.put(env.getElementUtils(), index);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Adds the Gradle incremental processing category to a processor's {@code options}: aggregating
+   * when the index is written, since it depends on every annotated type, and isolating otherwise.
+   * {@code env} is {@code null} if the processor has not been initialized yet.
+   */
+  public static Set<String> withIncrementalCategory(
+      Set<String> options, @Nullable ProcessingEnvironment env) {
+    boolean aggregating = env != null && env.getOptions().containsKey(INDEX_OPTION);
+    return ImmutableSet.<String>builder()
+        .addAll(options)
+        .add(aggregating ? AGGREGATING : ISOLATING)
+        .build();
+  }
+
+  /**
+   * Registers the generated implementation of {@code type}, created by {@code creation}, an
+   * expression using fully qualified names.
+   */
+  public synchronized void addImpl(
+      TypeMetadata type, String creation, Element originatingElement) {
+    add(type, originatingElement,
+        "    registry.registerImpl(" + type.fullyQualifiedPathName() + ".class,"
+            + " new AutoRegistry.ImplFactory() {\n"
+            + "      @Override\n"
+            + "      public Object create() {\n"
+            + "        return " + creation + ";\n"
+            + "      }\n"
+            + "    });\n");
+  }
+
+  /**
+   * Registers the generated delegate of {@code type}, created by {@code creation}, an expression
+   * using fully qualified names and the {@code Object} parameter {@code delegate}.
+   */
+  public synchronized void addDelegate(
+      TypeMetadata type, String creation, Element originatingElement) {
+    add(type, originatingElement,
+        "    registry.registerDelegate(" + type.fullyQualifiedPathName() + ".class,"
+            + " new AutoRegistry.DelegateFactory() {\n"
+            + "      @Override\n"
+            + "      public Object create(Object delegate) {\n"
+            + "        return " + creation + ";\n"
+            + "      }\n"
+            + "    });\n");
+  }
+
+  private void add(TypeMetadata type, Element originatingElement, String registration) {
+    String packageName = type.packageName();
+    List<String> packageRegistrations = registrations.get(packageName);
+    if (packageRegistrations == null) {
+      packageRegistrations = Lists.newArrayList();
+      registrations.put(packageName, packageRegistrations);
+      origins.put(packageName, Lists.<Element>newArrayList());
+    }
+    packageRegistrations.add(registration);
+    origins.get(packageName).add(originatingElement);
+  }
+
+  /**
+   * Writes an index class for each package with types added since the last call. Called by every
+   * processor at the end of each round.
+   */
+  public synchronized void flush(ProcessingEnvironment env) {
+    for (Map.Entry<String, List<String>> entry : registrations.entrySet()) {
+      String packageName = entry.getKey();
+      StringBuilder body = new StringBuilder();
+      for (String registration : entry.getValue()) {
+        body.append(registration);
+      }
+      String name = "Auto_Index_"
+          + Hashing.sha256().hashString(body, Charsets.UTF_8).toString().substring(0, 16);
+      String qualifiedName = packageName.isEmpty() ? name : packageName + "." + name;
+      List<Element> originatingElements = origins.get(packageName);
+      try {
+        Writer writer = env.getFiler()
+            .createSourceFile(
+                qualifiedName,
+                originatingElements.toArray(new Element[originatingElements.size()]))
+            .openWriter();
+        try {
+          writer.write(render(packageName, name, body));
+        } finally {
+          writer.close();
+        }
+        indexClasses.add(qualifiedName);
+      } catch (IOException ex) {
+        env.getMessager().printMessage(
+            Diagnostic.Kind.ERROR,
+            String.format("Could not write Auto registry index %s: %s", qualifiedName, ex));
+      }
+    }
+    registrations.clear();
+    origins.clear();
+  }
+
+  private static String render(String packageName, String name, CharSequence body) {
+    StringBuilder source = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    if (!packageName.equals("com.bdl.auto")) {
+      source.append("import com.bdl.auto.AutoRegistry;\n");
+    }
+    return source
+        .append("import javax.annotation.Generated;\n\n")
+        .append("/** AutoRegistry index of the classes generated in this package. */\n")
+        .append("@Generated(\"com.bdl.auto.processor.RegistryIndex\")\n")
+        .append("public final class ").append(name).append(" implements AutoRegistry.Index {\n\n")
+        .append("  @Override\n")
+        .append("  @SuppressWarnings({\"rawtypes\", \"unchecked\"})\n")
+        .append("  public void register(AutoRegistry registry) {\n")
+        .append(body)
+        .append("  }\n")
+        .append("}\n")
+        .toString();
+  }
+
+  /**
+   * Writes the service file listing every index class. Only the first call for a compilation
+   * does anything, so every processor may call this when processing is over.
+   */
+  public synchronized void finish(ProcessingEnvironment env) {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    if (indexClasses.isEmpty()) {
+      return;
+    }
+    try {
+      Writer writer = env.getFiler()
+          .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE)
+          .openWriter();
+      try {
+        for (String indexClass : indexClasses) {
+          writer.write(indexClass);
+          writer.write('\n');
+        }
+      } finally {
+        writer.close();
+      }
+    } catch (IOException ex) {
+      env.getMessager().printMessage(
+          Diagnostic.Kind.ERROR,
+          String.format("Could not write Auto registry services %s: %s", SERVICE_FILE, ex));
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.bdl.auto.processor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+
+/**
+ * Fork-join pool on which processors render generated sources in parallel.
+ *
+ * <p>Only rendering runs on the pool. Reading metadata from elements, and every call to the
+ * {@link javax.annotation.processing.Filer} or {@link javax.annotation.processing.Messager}, stays
+ * on the processing thread.
+ *
+ * @author Ben Leitner
+ */
+public final class RenderPool {
+
+  /** Processor option giving the number of threads to render with. Serial when absent or 1. */
+  public static final String PARALLEL_OPTION = "auto.parallel";
+
+  private final ForkJoinPool pool;
+
+  private RenderPool(int parallelism) {
+    pool = new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * Returns a pool with the parallelism requested by {@link #PARALLEL_OPTION}, or {@code null} if
+   * sources should be rendered serially.
+   */
+  @Nullable
+  public static RenderPool fromOptions(ProcessingEnvironment env) {
+    String value = env.getOptions().get(PARALLEL_OPTION);
+    if (value == null) {
+      return null;
+    }
+    int parallelism;
+    try {
+      parallelism = Integer.parseInt(value.trim());
+    } catch (NumberFormatException ex) {
+      parallelism = 0;
+    }
+    if (parallelism < 1) {
+      env.getMessager().printMessage(
+          Diagnostic.Kind.WARNING,
+          String.format(
+              "Ignoring -A%s=%s: expected a positive number of threads.", PARALLEL_OPTION, value));
+      return null;
+    }
+    return parallelism == 1 ? null : new RenderPool(parallelism);
+  }
+
+  public Future<?> submit(Runnable render) {
+    return pool.submit(render);
+  }
+
+  public void shutdown() {
+    pool.shutdown();
+  }
+}
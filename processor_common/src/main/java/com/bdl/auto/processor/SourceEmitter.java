@@ -0,0 +1,126 @@
+package com.bdl.auto.processor;
+
+import com.bdl.annotation.processing.model.Imports;
+import com.bdl.annotation.processing.model.ParameterMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Buffered sink for generated source code.
+ *
+ * <p>Tokens are appended directly to a buffer that is reused from one generated file to the next,
+ * and copied to the target {@link Writer} in bulk once the file is complete. An emitter is not
+ * thread-safe; each writer owns its own.
+ *
+ * @author Ben Leitner
+ */
+public final class SourceEmitter {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE);
+  private final char[] chunk = new char[CHUNK_SIZE];
+
+  /** Discards anything appended since the last {@link #writeTo(Writer)}. */
+  public SourceEmitter reset() {
+    buffer.setLength(0);
+    return this;
+  }
+
+  public SourceEmitter append(String text) {
+    buffer.append(text);
+    return this;
+  }
+
+  public SourceEmitter append(char c) {
+    buffer.append(c);
+    return this;
+  }
+
+  public SourceEmitter append(int value) {
+    buffer.append(value);
+    return this;
+  }
+
+  /** Ends the current line. */
+  public SourceEmitter newLine() {
+    buffer.append('\n');
+    return this;
+  }
+
+  /** Appends {@code text} as a complete line. */
+  public SourceEmitter line(String text) {
+    return append(text).newLine();
+  }
+
+  /**
+   * Appends the type parameter declaration for a type (e.g. {@code <T extends Foo, S>}), or
+   * nothing if the type has no parameters.
+   */
+  public SourceEmitter appendTypeParameters(List<TypeMetadata> params, Imports imports) {
+    if (params.isEmpty()) {
+      return this;
+    }
+    buffer.append('<');
+    for (int i = 0; i < params.size(); i++) {
+      if (i > 0) {
+        buffer.append(", ");
+      }
+      buffer.append(params.get(i).toString(imports, true));
+    }
+    buffer.append('>');
+    return this;
+  }
+
+  /** Appends type arguments naming {@code params}, without their bounds, e.g. {@code <K, V>}. */
+  public SourceEmitter appendTypeArguments(List<TypeMetadata> params, Imports imports) {
+    if (params.isEmpty()) {
+      return this;
+    }
+    buffer.append('<');
+    for (int i = 0; i < params.size(); i++) {
+      if (i > 0) {
+        buffer.append(", ");
+      }
+      buffer.append(params.get(i).toString(imports, false));
+    }
+    buffer.append('>');
+    return this;
+  }
+
+  /** Appends a comma separated list of parameter declarations, e.g. {@code int first, int second}. */
+  public SourceEmitter appendParameters(List<ParameterMetadata> parameters, Imports imports) {
+    for (int i = 0; i < parameters.size(); i++) {
+      if (i > 0) {
+        buffer.append(", ");
+      }
+      buffer.append(parameters.get(i).toString(imports));
+    }
+    return this;
+  }
+
+  /** Appends a comma separated list of parameter names, for passing the parameters along. */
+  public SourceEmitter appendArguments(List<ParameterMetadata> parameters) {
+    for (int i = 0; i < parameters.size(); i++) {
+      if (i > 0) {
+        buffer.append(", ");
+      }
+      buffer.append(parameters.get(i).name());
+    }
+    return this;
+  }
+
+  /** Copies everything appended so far to {@code writer} and empties the buffer. */
+  public void writeTo(Writer writer) throws IOException {
+    int length = buffer.length();
+    for (int start = 0; start < length; start += CHUNK_SIZE) {
+      int end = Math.min(start + CHUNK_SIZE, length);
+      buffer.getChars(start, end, chunk, 0);
+      writer.write(chunk, 0, end - start);
+    }
+    buffer.setLength(0);
+  }
+}
@@ -0,0 +1,216 @@
+package com.bdl.auto.processor;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Content hashes of generated sources, used to avoid rewriting sources that have not changed.
+ *
+ * <p>The hash of every generated source is kept in a manifest file named by
+ * {@link #FINGERPRINT_OPTION}. Each compilation merges the hashes of the sources it generated into
+ * the manifest, so a partial compilation keeps the entries of the sources it didn't touch.
+ *
+ * <p>Skipping is opt-in through {@link #SKIP_OPTION}. When it is set, a source that renders to the
+ * same hash as in the previous build and whose previous output is still in the generated sources
+ * directory is not written again. The build must then compile that directory along with the
+ * sources, as Maven does; build tools that delete any output that isn't created again, such as
+ * Gradle with incremental processing, must not set it. Otherwise every source is written through
+ * the {@link javax.annotation.processing.Filer} as usual.
+ *
+ * <p>A single instance is shared by every Auto processor running in the same compilation.
+ *
+ * @author Ben Leitner
+ */
+public final class SourceFingerprints {
+
+  /** Processor option giving the path of the fingerprint manifest. Fingerprinting is off when absent. */
+  public static final String FINGERPRINT_OPTION = "auto.fingerprints";
+
+  /**
+   * Processor option that turns on skipping unchanged sources whose previous output still exists.
+   * Set it only when that output is compiled along with the sources.
+   */
+  public static final String SKIP_OPTION = "auto.fingerprints.skip";
+
+  private static final Map<Elements, SourceFingerprints> INSTANCES =
+      new WeakHashMap<Elements, SourceFingerprints>();
+  private static final Splitter LINE_SPLITTER = Splitter.on(' ').omitEmptyStrings().trimResults();
+
+  private final File manifest;
+  private final Map<String, String> previous;
+  private final boolean skipping;
+  private final ConcurrentMap<String, String> current = Maps.newConcurrentMap();
+  private final AtomicInteger skipped = new AtomicInteger();
+  private final AtomicInteger written = new AtomicInteger();
+  private final AtomicBoolean finished = new AtomicBoolean();
+
+  private SourceFingerprints(File manifest, Map<String, String> previous, boolean skipping) {
+    this.manifest = manifest;
+    this.previous = previous;
+    this.skipping = skipping;
+  }
+
+  /**
+   * Returns the fingerprints for the compilation that {@code env} belongs to, or {@code null} if
+   * {@link #FINGERPRINT_OPTION} is not set.
+   */
+  @Nullable
+  public static SourceFingerprints forEnvironment(ProcessingEnvironment env) {
+    String path = env.getOptions().get(FINGERPRINT_OPTION);
+    if (path == null) {
+      return null;
+    }
+    synchronized (INSTANCES) {
+      SourceFingerprints fingerprints = INSTANCES.get(env.getElementUtils());
+      if (fingerprints == null) {
+        File manifest = new File(path);
+        boolean skipping = env.getOptions().containsKey(SKIP_OPTION);
+        fingerprints = new SourceFingerprints(manifest, read(manifest, env), skipping);
+        INSTANCES.put(env.getElementUtils(), fingerprints);
+      }
+      return fingerprints;
+    }
+  }
+
+  /**
+   * Returns a writer for the source file {@code name}. The content is buffered until the writer
+   * is closed, and only then written to the {@link javax.annotation.processing.Filer} if it has
+   * changed.
+   */
+  public Writer open(
+      final String name, final ProcessingEnvironment env, final Element originatingElement) {
+    return new StringWriter() {
+      @Override
+      public void close() throws IOException {
+        commit(name, getBuffer().toString(), env, originatingElement);
+      }
+    };
+  }
+
+  private void commit(
+      String name, String content, ProcessingEnvironment env, Element originatingElement)
+      throws IOException {
+    String hash = Hashing.sha256().hashString(content, Charsets.UTF_8).toString();
+    current.put(name, hash);
+    if (skipping
+        && hash.equals(previous.get(name))
+        && previousOutputExists(name, env)) {
+      skipped.incrementAndGet();
+      return;
+    }
+    Writer writer = env.getFiler().createSourceFile(name, originatingElement).openWriter();
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+    written.incrementAndGet();
+  }
+
+  /**
+   * Saves the manifest and prints the number of skipped and written sources as a note. Only the
+   * first call for a compilation does anything, so every processor may call this when processing
+   * is over.
+   */
+  public void finish(ProcessingEnvironment env) {
+    if (!finished.compareAndSet(false, true)) {
+      return;
+    }
+    // Sources that weren't generated this time keep their entries, since a partial compilation
+    // doesn't generate every source.
+    Map<String, String> latest = Maps.newTreeMap();
+    latest.putAll(previous);
+    latest.putAll(current);
+    if (!latest.equals(previous)) {
+      StringBuilder contents = new StringBuilder();
+      for (Map.Entry<String, String> entry : latest.entrySet()) {
+        contents.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+      }
+      try {
+        File parent = manifest.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+          throw new IOException("Could not create directory " + parent);
+        }
+        Files.write(contents, manifest, Charsets.UTF_8);
+      } catch (IOException ex) {
+        env.getMessager().printMessage(
+            Diagnostic.Kind.WARNING,
+            String.format("Could not save Auto fingerprints to %s: %s", manifest, ex.getMessage()));
+      }
+    }
+    env.getMessager().printMessage(
+        Diagnostic.Kind.NOTE,
+        String.format(
+            "Auto fingerprints: %d sources written, %d unchanged and skipped.",
+            written.get(),
+            skipped.get()));
+  }
+
+  /**
+   * Whether the previous output for the source file {@code name} is still in the generated sources
+   * directory. Only the file is looked for; the type is not looked up, so this neither completes
+   * it implicitly nor depends on the class or source path.
+   */
+  private static boolean previousOutputExists(String name, ProcessingEnvironment env) {
+    int dot = name.lastIndexOf('.');
+    try {
+      FileObject file = env.getFiler().getResource(
+          StandardLocation.SOURCE_OUTPUT,
+          dot < 0 ? "" : name.substring(0, dot),
+          name.substring(dot + 1) + JavaFileObject.Kind.SOURCE.extension);
+      InputStream in = file.openInputStream();
+      in.close();
+      return true;
+    } catch (IOException | IllegalArgumentException ex) {
+      // Not there, or the filer can't look in its own output.
+      return false;
+    }
+  }
+
+  /** Reads the manifest from the previous build. A missing or unreadable manifest is empty. */
+  private static Map<String, String> read(File manifest, ProcessingEnvironment env) {
+    if (!manifest.isFile()) {
+      return ImmutableSortedMap.of();
+    }
+    Map<String, String> hashes = Maps.newTreeMap();
+    try {
+      for (String line : Files.readLines(manifest, Charsets.UTF_8)) {
+        List<String> parts = LINE_SPLITTER.splitToList(line);
+        if (parts.size() == 2) {
+          hashes.put(parts.get(0), parts.get(1));
+        }
+      }
+    } catch (IOException ex) {
+      env.getMessager().printMessage(
+          Diagnostic.Kind.WARNING,
+          String.format("Could not read Auto fingerprints from %s: %s", manifest, ex.getMessage()));
+      return ImmutableSortedMap.of();
+    }
+    return hashes;
+  }
+}
@@ -0,0 +1,186 @@
+package com.bdl.auto.processor;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Queues;
+import com.google.common.io.Files;
+import com.google.common.primitives.Longs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+/**
+ * Per-type timings of the Auto processors over a single compilation.
+ *
+ * <p>Timing is enabled by {@link #REPORT_OPTION}, which also names the file the timings are written
+ * to as JSON, or by {@link MetadataCache#STATS_OPTION}. Either way, the slowest types are printed
+ * as a note at the end of processing. A single instance is shared by every Auto processor running
+ * in the same compilation.
+ *
+ * @author Ben Leitner
+ */
+public final class TimingReport {
+
+  /** Processor option giving the path to write the JSON timing report to. */
+  public static final String REPORT_OPTION = "auto.report";
+
+  /** The number of types listed in the summary printed at the end of processing. */
+  static final int SLOWEST_COUNT = 10;
+
+  private static final Map<Elements, TimingReport> REPORTS = new WeakHashMap<Elements, TimingReport>();
+
+  private static final Ordering<ElementTiming> SLOWEST_FIRST = new Ordering<ElementTiming>() {
+    @Override
+    public int compare(ElementTiming left, ElementTiming right) {
+      return Longs.compare(right.totalNanos(), left.totalNanos());
+    }
+  };
+
+  private final boolean enabled;
+  @Nullable private final String reportPath;
+  private final Queue<ElementTiming> timings = Queues.newConcurrentLinkedQueue();
+  private final AtomicBoolean finished = new AtomicBoolean();
+
+  TimingReport(boolean enabled, @Nullable String reportPath) {
+    this.enabled = enabled;
+    this.reportPath = reportPath;
+  }
+
+  /** Returns the report for the compilation that {@code env} belongs to. */
+  public static TimingReport forEnvironment(ProcessingEnvironment env) {
+    synchronized (REPORTS) {
+      TimingReport report = REPORTS.get(env.getElementUtils());
+      if (report == null) {
+        Map<String, String> options = env.getOptions();
+        String reportPath = options.get(REPORT_OPTION);
+        report = new TimingReport(
+            reportPath != null || options.containsKey(MetadataCache.STATS_OPTION), reportPath);
+        REPORTS.put(env.getElementUtils(), report);
+      }
+      return report;
+    }
+  }
+
+  /**
+   * Starts timing the generation of {@code type} by {@code processor}. When timing is not enabled
+   * the returned timing is simply discarded.
+   */
+  public ElementTiming start(String processor, String type) {
+    ElementTiming timing = new ElementTiming(processor, type);
+    if (enabled) {
+      timings.add(timing);
+    }
+    return timing;
+  }
+
+  /**
+   * Prints the slowest types as a note and writes the JSON report. Only the first call for a
+   * compilation does anything, so every processor may call this when processing is over.
+   */
+  public void finish(ProcessingEnvironment env) {
+    if (!enabled || !finished.compareAndSet(false, true)) {
+      return;
+    }
+    env.getMessager().printMessage(Diagnostic.Kind.NOTE, summary());
+    if (reportPath != null) {
+      try {
+        File file = new File(reportPath);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+          throw new IOException("Could not create directory " + parent);
+        }
+        Files.write(toJson(), file, Charsets.UTF_8);
+      } catch (IOException ex) {
+        env.getMessager().printMessage(
+            Diagnostic.Kind.WARNING,
+            String.format("Could not write Auto timing report to %s: %s", reportPath, ex.getMessage()));
+      }
+    }
+  }
+
+  /** A summary of the total time and the slowest types. */
+  String summary() {
+    List<ElementTiming> all = ImmutableList.copyOf(timings);
+    long total = 0;
+    for (ElementTiming timing : all) {
+      total += timing.totalNanos();
+    }
+    StringBuilder summary = new StringBuilder();
+    summary.append(String.format(
+        Locale.ROOT, "Auto processors took %.1f ms for %d types.", millis(total), all.size()));
+    List<ElementTiming> slowest = SLOWEST_FIRST.leastOf(all, SLOWEST_COUNT);
+    if (!slowest.isEmpty()) {
+      summary.append(" Slowest:");
+    }
+    for (ElementTiming timing : slowest) {
+      summary.append(String.format(
+          Locale.ROOT,
+          "%n  %s (%s): %.1f ms - metadata %.1f, imports %.1f, render %.1f, write %.1f;"
+              + " %d methods, %d constructors",
+          timing.type(),
+          timing.processor(),
+          millis(timing.totalNanos()),
+          millis(timing.metadataNanos()),
+          millis(timing.importsNanos()),
+          millis(timing.renderNanos()),
+          millis(timing.writeNanos()),
+          timing.methods(),
+          timing.constructors()));
+    }
+    return summary.toString();
+  }
+
+  /** The timings of every type, in the order they were processed, as JSON. */
+  String toJson() {
+    StringBuilder json = new StringBuilder("{\n  \"types\": [");
+    boolean first = true;
+    for (ElementTiming timing : timings) {
+      json.append(first ? "\n" : ",\n");
+      first = false;
+      json.append("    {\"type\": ");
+      appendString(json, timing.type());
+      json.append(", \"processor\": ");
+      appendString(json, timing.processor());
+      json.append(", \"metadataNanos\": ").append(timing.metadataNanos())
+          .append(", \"importsNanos\": ").append(timing.importsNanos())
+          .append(", \"renderNanos\": ").append(timing.renderNanos())
+          .append(", \"writeNanos\": ").append(timing.writeNanos())
+          .append(", \"totalNanos\": ").append(timing.totalNanos())
+          .append(", \"methods\": ").append(timing.methods())
+          .append(", \"constructors\": ").append(timing.constructors())
+          .append('}');
+    }
+    return json.append(first ? "]\n}\n" : "\n  ]\n}\n").toString();
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < ' ') {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+}
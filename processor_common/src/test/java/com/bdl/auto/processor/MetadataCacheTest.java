@@ -0,0 +1,60 @@
+package com.bdl.auto.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.bdl.annotation.processing.model.ClassMetadata;
+import com.bdl.annotation.processing.model.MethodMetadata;
+import com.google.common.collect.ImmutableList;
+import com.google.testing.compile.CompilationRule;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain MetadataCache} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class MetadataCacheTest {
+
+  @Rule public final CompilationRule compilation = new CompilationRule();
+
+  private Elements elements;
+
+  @Before
+  public void before() {
+    elements = compilation.getElements();
+  }
+
+  @Test
+  public void testAbstractMethodsAreCached() {
+    MetadataCache cache = MetadataCache.create();
+    ClassMetadata clazz = ClassMetadata.fromElement(elements.getTypeElement("java.lang.Runnable"));
+
+    ImmutableList<MethodMetadata> first = cache.abstractMethods(clazz);
+    ImmutableList<MethodMetadata> second = cache.abstractMethods(clazz);
+
+    assertThat(second).isSameAs(first);
+    assertThat(first).hasSize(1);
+    assertThat(first.get(0).name()).isEqualTo("run");
+  }
+
+  @Test
+  public void testAbstractMethodsAreCachedPerMetadataInstance() {
+    MetadataCache cache = MetadataCache.create();
+    TypeElement element = elements.getTypeElement("java.lang.Runnable");
+
+    ImmutableList<MethodMetadata> first =
+        cache.abstractMethods(ClassMetadata.fromElement(element));
+    ImmutableList<MethodMetadata> second =
+        cache.abstractMethods(ClassMetadata.fromElement(element));
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(second).hasSize(1);
+  }
+}
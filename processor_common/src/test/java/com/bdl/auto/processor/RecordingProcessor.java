@@ -0,0 +1,214 @@
+package com.bdl.auto.processor;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+
+/**
+ * A {@link Processor} that delegates to another processor with additional options, recording
+ * every source file created through the {@link Filer} along with its originating elements. Shared
+ * by the processor tests of every module.
+ *
+ * @author Ben Leitner
+ */
+public class RecordingProcessor implements Processor {
+
+  private final Processor delegate;
+  private final Map<String, String> options;
+  private final ImmutableListMultimap.Builder<String, String> origins =
+      ImmutableListMultimap.builder();
+  private final Map<String, StringWriter> sources = Maps.newLinkedHashMap();
+
+  public RecordingProcessor(Processor delegate) {
+    this(delegate, ImmutableMap.<String, String>of());
+  }
+
+  public RecordingProcessor(Processor delegate, Map<String, String> options) {
+    this.delegate = delegate;
+    this.options = options;
+  }
+
+  /** The qualified names of each generated source file's originating elements, keyed by name. */
+  public ListMultimap<String, String> originatingElements() {
+    return origins.build();
+  }
+
+  /** The contents of each generated source file, keyed by name, in the order they were created. */
+  public Map<String, String> generatedSources() {
+    Map<String, String> contents = Maps.newLinkedHashMap();
+    for (Map.Entry<String, StringWriter> entry : sources.entrySet()) {
+      contents.put(entry.getKey(), entry.getValue().toString());
+    }
+    return contents;
+  }
+
+  @Override
+  public Set<String> getSupportedOptions() {
+    return delegate.getSupportedOptions();
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return delegate.getSupportedAnnotationTypes();
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return delegate.getSupportedSourceVersion();
+  }
+
+  @Override
+  public void init(final ProcessingEnvironment env) {
+    final Filer filer = new RecordingFiler(env.getFiler());
+    delegate.init(new ProcessingEnvironment() {
+      @Override
+      public Map<String, String> getOptions() {
+        Map<String, String> merged = Maps.newHashMap(env.getOptions());
+        merged.putAll(options);
+        return merged;
+      }
+
+      @Override
+      public Messager getMessager() {
+        return env.getMessager();
+      }
+
+      @Override
+      public Filer getFiler() {
+        return filer;
+      }
+
+      @Override
+      public Elements getElementUtils() {
+        return env.getElementUtils();
+      }
+
+      @Override
+      public Types getTypeUtils() {
+        return env.getTypeUtils();
+      }
+
+      @Override
+      public SourceVersion getSourceVersion() {
+        return env.getSourceVersion();
+      }
+
+      @Override
+      public Locale getLocale() {
+        return env.getLocale();
+      }
+    });
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    return delegate.process(annotations, roundEnv);
+  }
+
+  @Override
+  public Iterable<? extends Completion> getCompletions(
+      Element element, AnnotationMirror annotation, ExecutableElement member, String userText) {
+    return delegate.getCompletions(element, annotation, member, userText);
+  }
+
+  private class RecordingFiler implements Filer {
+
+    private final Filer filer;
+
+    private RecordingFiler(Filer filer) {
+      this.filer = filer;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      for (Element element : originatingElements) {
+        origins.put(name.toString(), ((TypeElement) element).getQualifiedName().toString());
+      }
+      final StringWriter contents = new StringWriter();
+      sources.put(name.toString(), contents);
+      return new ForwardingJavaFileObject<JavaFileObject>(
+          filer.createSourceFile(name, originatingElements)) {
+        @Override
+        public Writer openWriter() throws IOException {
+          return new TeeWriter(super.openWriter(), contents);
+        }
+      };
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      return filer.createClassFile(name, originatingElements);
+    }
+
+    @Override
+    public FileObject createResource(
+        JavaFileManager.Location location,
+        CharSequence pkg,
+        CharSequence relativeName,
+        Element... originatingElements) throws IOException {
+      return filer.createResource(location, pkg, relativeName, originatingElements);
+    }
+
+    @Override
+    public FileObject getResource(
+        JavaFileManager.Location location,
+        CharSequence pkg,
+        CharSequence relativeName) throws IOException {
+      return filer.getResource(location, pkg, relativeName);
+    }
+  }
+
+  /** Writes through to the Filer's writer while keeping a copy of everything written. */
+  private static class TeeWriter extends Writer {
+
+    private final Writer writer;
+    private final StringWriter copy;
+
+    private TeeWriter(Writer writer, StringWriter copy) {
+      this.writer = writer;
+      this.copy = copy;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      writer.write(cbuf, off, len);
+      copy.write(cbuf, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.bdl.auto.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.bdl.annotation.processing.model.ParameterMetadata;
+import com.bdl.annotation.processing.model.TypeMetadata;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import java.io.StringWriter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain SourceEmitter} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class SourceEmitterTest {
+
+  @Test
+  public void testArguments() throws Exception {
+    SourceEmitter emitter = new SourceEmitter();
+    emitter.append("foo(")
+        .appendArguments(ImmutableList.of(
+            ParameterMetadata.of(TypeMetadata.INT, "first"),
+            ParameterMetadata.of(TypeMetadata.INT, "second")))
+        .line(");")
+        .append("bar(")
+        .appendArguments(ImmutableList.<ParameterMetadata>of())
+        .append(')');
+
+    assertThat(contents(emitter)).isEqualTo("foo(first, second);\nbar()");
+  }
+
+  @Test
+  public void testWriteToEmptiesBuffer() throws Exception {
+    SourceEmitter emitter = new SourceEmitter();
+    emitter.line("first");
+    contents(emitter);
+    emitter.line("second");
+
+    assertThat(contents(emitter)).isEqualTo("second\n");
+  }
+
+  @Test
+  public void testReset() throws Exception {
+    SourceEmitter emitter = new SourceEmitter();
+    emitter.line("discarded").reset().line("kept");
+
+    assertThat(contents(emitter)).isEqualTo("kept\n");
+  }
+
+  @Test
+  public void testLargeOutput() throws Exception {
+    String line = Strings.repeat("x", 999);
+    StringBuilder expected = new StringBuilder();
+    SourceEmitter emitter = new SourceEmitter();
+    for (int i = 0; i < 50; i++) {
+      emitter.line(line);
+      expected.append(line).append('\n');
+    }
+
+    assertThat(contents(emitter)).isEqualTo(expected.toString());
+  }
+
+  private static String contents(SourceEmitter emitter) throws Exception {
+    StringWriter writer = new StringWriter();
+    emitter.writeTo(writer);
+    return writer.toString();
+  }
+}
@@ -0,0 +1,70 @@
+package com.bdl.auto.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the {@linkplain TimingReport} class.
+ *
+ * @author Ben Leitner
+ */
+@RunWith(JUnit4.class)
+public class TimingReportTest {
+
+  @Test
+  public void testJson() {
+    TimingReport report = new TimingReport(true, null);
+    ElementTiming timing = report.start("AutoImpl", "test.Foo");
+    timing.addMetadata(1);
+    timing.addImports(2);
+    timing.addRender(3);
+    timing.addWrite(4);
+    timing.setCounts(5, 6);
+    report.start("AutoDelegate", "test.\"Quoted\"");
+
+    assertThat(report.toJson()).isEqualTo("{\n"
+        + "  \"types\": [\n"
+        + "    {\"type\": \"test.Foo\", \"processor\": \"AutoImpl\", \"metadataNanos\": 1,"
+        + " \"importsNanos\": 2, \"renderNanos\": 3, \"writeNanos\": 4, \"totalNanos\": 10,"
+        + " \"methods\": 5, \"constructors\": 6},\n"
+        + "    {\"type\": \"test.\\\"Quoted\\\"\", \"processor\": \"AutoDelegate\", \"metadataNanos\": 0,"
+        + " \"importsNanos\": 0, \"renderNanos\": 0, \"writeNanos\": 0, \"totalNanos\": 0,"
+        + " \"methods\": 0, \"constructors\": 0}\n"
+        + "  ]\n"
+        + "}\n");
+  }
+
+  @Test
+  public void testEmptyJson() {
+    assertThat(new TimingReport(true, null).toJson()).isEqualTo("{\n  \"types\": []\n}\n");
+  }
+
+  @Test
+  public void testSummaryListsSlowestFirst() {
+    TimingReport report = new TimingReport(true, null);
+    report.start("AutoImpl", "test.Fast").addRender(1000000);
+    report.start("AutoImpl", "test.Slow").addRender(3000000);
+    report.start("AutoDelegate", "test.Medium").addWrite(2000000);
+
+    String summary = report.summary();
+
+    assertThat(summary).startsWith("Auto processors took 6.0 ms for 3 types. Slowest:");
+    int slow = summary.indexOf("test.Slow (AutoImpl)");
+    int medium = summary.indexOf("test.Medium (AutoDelegate)");
+    int fast = summary.indexOf("test.Fast (AutoImpl)");
+    assertThat(slow).isGreaterThan(0);
+    assertThat(medium).isGreaterThan(slow);
+    assertThat(fast).isGreaterThan(medium);
+  }
+
+  @Test
+  public void testDisabledReportKeepsNothing() {
+    TimingReport report = new TimingReport(false, null);
+    report.start("AutoImpl", "test.Foo").addRender(1);
+
+    assertThat(report.toJson()).isEqualTo("{\n  \"types\": []\n}\n");
+  }
+}